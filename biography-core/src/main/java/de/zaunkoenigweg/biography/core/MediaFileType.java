@@ -8,17 +8,19 @@ import org.apache.commons.lang3.StringUtils;
 
 public enum MediaFileType {
     
-    JPEG("jpg", Kind.IMAGE),
-    QUICKTIME("mov", Kind.VIDEO),
-    AVI("avi", Kind.VIDEO),
-    MP4("mp4", Kind.VIDEO),
-    MPEG("mpg", Kind.VIDEO);
+    JPEG("jpg", "image/jpeg", Kind.IMAGE),
+    QUICKTIME("mov", "video/quicktime", Kind.VIDEO),
+    AVI("avi", "video/x-msvideo", Kind.VIDEO),
+    MP4("mp4", "video/mp4", Kind.VIDEO),
+    MPEG("mpg", "video/mpeg", Kind.VIDEO);
     
     private String fileExtension;
+    private String mimeType;
     private Kind kind;
     
-    private MediaFileType(String fileExtension, Kind kind) {
+    private MediaFileType(String fileExtension, String mimeType, Kind kind) {
         this.fileExtension = fileExtension;
+        this.mimeType = mimeType;
         this.kind = kind;
     }
 
@@ -50,6 +52,10 @@ public enum MediaFileType {
         return fileExtension;
     }
     
+    public String getMimeType() {
+        return mimeType;
+    }
+
     public Kind getKind() {
 		return kind;
 	}
@@ -2,10 +2,13 @@ package de.zaunkoenigweg.biography.core;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBuffer;
-import java.io.ByteArrayOutputStream;
+import java.awt.image.DataBufferByte;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.regex.Matcher;
@@ -13,6 +16,7 @@ import java.util.regex.Pattern;
 
 import javax.imageio.ImageIO;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 
 /**
@@ -22,6 +26,13 @@ public class Sha1 {
 
 	private static Pattern PATTERN = Pattern.compile("^\\p{XDigit}{40}$");
 
+	private static final int READ_BUFFER_SIZE = 1024 * 1024;
+
+	/**
+	 * read buffer of each thread, a heap buffer as direct memory is only released by the garbage collector
+	 */
+	private static final ThreadLocal<ByteBuffer> READ_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocate(READ_BUFFER_SIZE));
+
 	private String sha1;
 	
 	private Sha1(String sha1) {
@@ -80,25 +91,30 @@ public class Sha1 {
             return null;
         }
         
-        byte[] allBytes = null;
+        MessageDigest digest = DigestUtils.getSha1Digest();
+        boolean digested;
 
         switch (fileType.get()) {
         case JPEG:
-            allBytes = bufferedImageAsBinary(file);
+            digested = digestImageData(file, digest);
             break;
 
         case QUICKTIME:
         case MPEG:
         case MP4:
         case AVI:
-            allBytes = completeFileAsBinary(file);
+            digested = digestFileContent(file, digest);
             break;
 
         default:
             return null;
         }
 
-        return Sha1.of(DigestUtils.sha1Hex(allBytes));
+        if (!digested) {
+            return null;
+        }
+
+        return Sha1.of(Hex.encodeHexString(digest.digest()));
     }
     
 	public String value() {
@@ -106,32 +122,52 @@ public class Sha1 {
 	}
 
 
-    private static byte[] completeFileAsBinary(File file) {
-        try {
-            return Files.readAllBytes(file.toPath());
+    /**
+     * Digests the complete content of the file, reading it through the fixed size buffer of the current thread.
+     */
+    private static boolean digestFileContent(File file, MessageDigest digest) {
+        ByteBuffer buffer = READ_BUFFER.get();
+        buffer.clear();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+            return true;
         } catch (IOException e) {
-            return null;
+            return false;
         }
     };
 
-    private static byte[] bufferedImageAsBinary(File file) {
+    /**
+     * Digests the decoded pixel data of the image, so changes of the metadata do not change the hash.
+     * 
+     * The pixel data is digested directly from the backing array of the image raster.
+     */
+    private static boolean digestImageData(File file, MessageDigest digest) {
         try {
             BufferedImage image = ImageIO.read(file);
+            if(image==null) {
+                return false;
+            }
             DataBuffer dataBuffer = image.getRaster().getDataBuffer();
             if(dataBuffer.getNumBanks()!=1) {
-                return null;
+                return false;
             }
             if(dataBuffer.getDataType()!=DataBuffer.TYPE_BYTE) {
-                return null;
+                return false;
             }
-            int size = dataBuffer.getSize();
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(size);
-            for (int i = 0; i < dataBuffer.getSize(); i++) {
-                byteArrayOutputStream.write(dataBuffer.getElem(i));
+            if(dataBuffer instanceof DataBufferByte) {
+                digest.update(((DataBufferByte)dataBuffer).getData(), dataBuffer.getOffset(), dataBuffer.getSize());
+            } else {
+                for (int i = 0; i < dataBuffer.getSize(); i++) {
+                    digest.update((byte)dataBuffer.getElem(i));
+                }
             }
-            return byteArrayOutputStream.toByteArray();
+            return true;
         } catch (IOException e) {
-            return null;
+            return false;
         }
 
     };
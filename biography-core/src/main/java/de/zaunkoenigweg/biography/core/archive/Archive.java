@@ -1,12 +1,24 @@
 package de.zaunkoenigweg.biography.core.archive;
 
 import java.io.File;
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.LongSummaryStatistics;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
@@ -36,17 +48,8 @@ public class Archive {
      */
     public List<File> mediaFolders() {
 
-        if (!archiveFolder.exists() || !archiveFolder.isDirectory()) {
-            return Collections.emptyList();
-        }
-
-        return Arrays.stream(archiveFolder.listFiles())
-                .filter(Archive::isValidYearFolder)
-                .sorted()
-                .map(File::listFiles)
-                .flatMap(Arrays::stream)
-                .filter(Archive::isValidMonthFolder)
-                .sorted()
+        return mediaFolderPaths().stream()
+                .map(Path::toFile)
                 .collect(Collectors.toList());
     }
 	
@@ -58,47 +61,210 @@ public class Archive {
      */
     public List<File> mediaFiles() {
 
-        return mediaFolders().stream()
-                .map(File::listFiles)
-                .flatMap(Arrays::stream)
-                .filter(file -> MediaFileName.isValid(file.getName()))
-                .sorted()
-                .collect(Collectors.toList());
+        return mediaFileStream().collect(Collectors.toList());
+    }
+    
+    /**
+     * Streams all files in the media folders of the archive, ordered by date,
+     * oldest files first.
+     * 
+     * In contrast to {@link #mediaFiles()} the folders are read lazily, one at a time,
+     * so only the file names of the current media folder are held in memory.
+     * 
+     * @return lazy stream of media files.
+     */
+    public Stream<File> mediaFileStream() {
+
+        return entries().map(ArchiveEntry::toFile);
+    }
+    
+    /**
+     * Streams all media files of the archive along with their file attributes, ordered by date,
+     * oldest files first.
+     * 
+     * The media folders are read lazily, one at a time, with a directory stream. The attributes
+     * of a file are read when the entry is consumed, with a single file system call.
+     * The stream can be consumed in parallel, it is split by media folders.
+     * 
+     * @return lazy stream of archive entries.
+     */
+    public Stream<ArchiveEntry> entries() {
+
+        return mediaFolderPaths().stream().flatMap(Archive::entries);
+    }
+    
+    /**
+     * Counts the media files in the archive, i.e. the files streamed by {@link #entries()}.
+     * 
+     * No {@link File} objects or entries are created.
+     * 
+     * @return number of media files.
+     */
+    public long count() {
+
+        return mediaFolderPaths().stream()
+                .mapToLong(mediaFolder -> {
+                    try (DirectoryStream<Path> mediaFiles = Files.newDirectoryStream(mediaFolder, path -> isMediaFile(path) && Files.isRegularFile(path))) {
+                        long count = 0;
+                        for (Iterator<Path> iterator = mediaFiles.iterator(); iterator.hasNext(); iterator.next()) {
+                            count++;
+                        }
+                        return count;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .sum();
+    }
+    
+    /**
+     * Collects statistics of the archive (number of media folders and files, total size).
+     * 
+     * @return archive statistics.
+     */
+    public Statistics statistics() {
+
+        List<Path> mediaFolders = mediaFolderPaths();
+        LongSummaryStatistics sizes = mediaFolders.stream()
+                .flatMap(Archive::entries)
+                .mapToLong(ArchiveEntry::getSize)
+                .summaryStatistics();
+        return new Statistics(mediaFolders.size(), sizes.getCount(), sizes.getSum());
     }
     
     public File getArchiveFolder() {
 		return archiveFolder;
 	}
 
+	/**
+     * Lists all media folders, ordered by date, oldest folders first.
+     */
+    private List<Path> mediaFolderPaths() {
+
+        Path archivePath = archiveFolder.toPath();
+
+        if (!Files.isDirectory(archivePath)) {
+            return Collections.emptyList();
+        }
+
+        List<Path> mediaFolders = new ArrayList<>();
+        for (Path yearFolder : sortedChildren(archivePath, Archive::isValidYearFolder)) {
+            mediaFolders.addAll(sortedChildren(yearFolder, Archive::isValidMonthFolder));
+        }
+        return mediaFolders;
+    }
+
+    /**
+     * Streams the media files of the given media folder, ordered by name.
+     */
+    private static Stream<ArchiveEntry> entries(Path mediaFolder) {
+        return sortedChildren(mediaFolder, Archive::isMediaFile).stream()
+                .map(Archive::toEntry)
+                .flatMap(Optional::stream)
+                .filter(entry -> entry.getAttributes().isRegularFile());
+    }
+
+    private static List<Path> sortedChildren(Path folder, DirectoryStream.Filter<Path> filter) {
+        List<Path> children = new ArrayList<>();
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(folder, filter)) {
+            directoryStream.forEach(children::add);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        children.sort(Comparator.comparing(path -> path.getFileName().toString()));
+        return children;
+    }
+
+    /**
+     * Reads the attributes of the given media file.
+     * 
+     * @return entry, empty if the file has been deleted since the media folder was listed.
+     */
+    private static Optional<ArchiveEntry> toEntry(Path path) {
+        try {
+            return Optional.of(new ArchiveEntry(path, Files.readAttributes(path, BasicFileAttributes.class)));
+        } catch (NoSuchFileException e) {
+            LOG.debug(String.format("Media file '%s' has been deleted while reading the archive.", path));
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Is the given path a media file name?
+     */
+    private static boolean isMediaFile(Path path) {
+        return MediaFileName.isValid(path.getFileName().toString());
+    }
+
 	/**
      * Does the name of the given folder represent a valid year?
      */
-    private static boolean isValidYearFolder(File folder) {
+    private static boolean isValidYearFolder(Path folder) {
 
-        if (folder == null || !folder.isDirectory()) {
+        if (folder == null) {
             return false;
         }
 
-        if (!StringUtils.isNumeric(folder.getName())) {
+        String name = folder.getFileName().toString();
+
+        if (!StringUtils.isNumeric(name)) {
             return false;
         }
 
-        int number = Integer.parseInt(folder.getName());
-        return (1000 <= number) && (number <= 9999);
+        int number = Integer.parseInt(name);
+        return (1000 <= number) && (number <= 9999) && Files.isDirectory(folder);
     }
 
     /**
      * Does the name of the given file represent a valid month?
      */
-    private static boolean isValidMonthFolder(File folder) {
+    private static boolean isValidMonthFolder(Path folder) {
 
-        if (folder == null || !folder.isDirectory()) {
+        if (folder == null) {
             return false;
         }
 
+        String name = folder.getFileName().toString();
+
         return IntStream.range(1, 13)
                 .mapToObj(number -> String.format("%02d", number))
-                .anyMatch(month -> month.equals(folder.getName()));
+                .anyMatch(month -> month.equals(name))
+                && Files.isDirectory(folder);
+    }
+
+    public static class Statistics {
+
+        private int mediaFolders;
+        private long mediaFiles;
+        private long totalSize;
+
+        private Statistics(int mediaFolders, long mediaFiles, long totalSize) {
+            this.mediaFolders = mediaFolders;
+            this.mediaFiles = mediaFiles;
+            this.totalSize = totalSize;
+        }
+
+        public int getMediaFolders() {
+            return mediaFolders;
+        }
+
+        public long getMediaFiles() {
+            return mediaFiles;
+        }
+
+        /**
+         * @return total size of all media files in bytes
+         */
+        public long getTotalSize() {
+            return totalSize;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("media folders #: %d, media files #: %d, total size: %d bytes", mediaFolders, mediaFiles, totalSize);
+        }
     }
 	
 }
@@ -0,0 +1,54 @@
+package de.zaunkoenigweg.biography.core.archive;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Media file in the archive along with its file attributes, as read during the traversal of the archive.
+ *
+ * The attributes are a snapshot taken when the entry was read, so callers need no further file system calls
+ * to get size or modification time.
+ */
+public class ArchiveEntry {
+
+    private Path path;
+    private BasicFileAttributes attributes;
+
+    ArchiveEntry(Path path, BasicFileAttributes attributes) {
+        this.path = path;
+        this.attributes = attributes;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public BasicFileAttributes getAttributes() {
+        return attributes;
+    }
+
+    public String getFileName() {
+        return path.getFileName().toString();
+    }
+
+    public long getSize() {
+        return attributes.size();
+    }
+
+    /**
+     * @return last modification time in milliseconds since the epoch, as {@link File#lastModified()}
+     */
+    public long getLastModified() {
+        return attributes.lastModifiedTime().toMillis();
+    }
+
+    public File toFile() {
+        return path.toFile();
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+}
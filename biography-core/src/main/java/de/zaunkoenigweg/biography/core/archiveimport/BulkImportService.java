@@ -2,17 +2,35 @@ package de.zaunkoenigweg.biography.core.archiveimport;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.stereotype.Component;
 
 import de.zaunkoenigweg.biography.core.MediaFileType;
+import de.zaunkoenigweg.biography.core.index.IndexingService;
 import de.zaunkoenigweg.biography.metadata.exif.ExifDataService;
 import de.zaunkoenigweg.biography.metadata.exif.ExifData;
 
@@ -23,26 +41,58 @@ import de.zaunkoenigweg.biography.metadata.exif.ExifData;
  * an anti-pattern, but as this small WebApp is meant to be a single 
  * user application this is okay ;-)
  * 
+ * Resumable uploads that have not received a chunk for {@value #UPLOAD_EXPIRY_HOURS} hours are
+ * considered abandoned, they are removed along with their part files.
+ * 
  * @author mail@nikolaus-winter.de
  */
 @Component
-public class BulkImportService {
+public class BulkImportService implements DisposableBean {
 
     private final static Log LOG = LogFactory.getLog(BulkImportService.class);
 
+    private static final long UPLOAD_EXPIRY_HOURS = 24;
+
+    private static final String PART_FILE_EXTENSION = ".part";
+
     private ImportService archiveImportService;
+    private ThumbnailService thumbnailService;
+    private IndexingService indexingService;
     // TODO: use different instance of ExifDataService to keep control over cache!
     private ExifDataService exifDataService;
     private File importFolder;
+    private int importParallelism;
+    private int indexBatchSize;
+    private Semaphore uploadPermits;
+    private ExecutorService uploadProcessor;
+    private Map<UUID, ChunkedUpload> chunkedUploads = new ConcurrentHashMap<>();
+    private Map<UUID, CompletableFuture<Boolean>> completionsInFlight = new ConcurrentHashMap<>();
+    private ScheduledThreadPoolExecutor uploadExpirer;
 
     private BulkImportJob importJob;
 
-    public BulkImportService(ImportService archiveImportService, ExifDataService exifDataService, File importFolder) {
+    public BulkImportService(ImportService archiveImportService, ThumbnailService thumbnailService, IndexingService indexingService, ExifDataService exifDataService, File importFolder,
+            Integer importParallelism, Integer indexBatchSize, Integer uploadParallelism) {
         this.archiveImportService = archiveImportService;
+        this.thumbnailService = thumbnailService;
+        this.indexingService = indexingService;
         this.exifDataService = exifDataService;
         this.importFolder = importFolder;
+        this.importParallelism = importParallelism;
+        this.indexBatchSize = indexBatchSize;
+        this.uploadPermits = new Semaphore(uploadParallelism);
+        this.uploadProcessor = Executors.newFixedThreadPool(uploadParallelism);
+        this.uploadExpirer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "upload-expirer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // part files of uploads abandoned before a restart are removed as well
+        this.uploadExpirer.scheduleWithFixedDelay(() -> expireUploads(TimeUnit.HOURS.toMillis(UPLOAD_EXPIRY_HOURS)), 0, 1, TimeUnit.HOURS);
         LOG.info("ArchiveBulkImportService started.");
         LOG.info(String.format("importFolder=%s", this.importFolder));
+        LOG.info(String.format("importParallelism=%d", this.importParallelism));
+        LOG.info(String.format("uploadParallelism=%d", uploadParallelism));
     }
 
     /**
@@ -62,6 +112,8 @@ public class BulkImportService {
     /**
      * Starts the current import job.
      * 
+     * The files are imported in the background by an {@link ImportPipeline}.
+     * 
      * @return Could the job be started? If not, it is already running.
      */
     public boolean startImport() {
@@ -69,16 +121,18 @@ public class BulkImportService {
             return false;
         }
         importJob.setRunning(true);
+        List<ImportItem> items = importJob.getImportFiles().stream()
+            .filter(ImportFile::isReadyForImport)
+            .map(importFile -> new ImportItem(file(importFile), importFile.getDatetimeOriginal().get(), 
+                            importFile.getAlbum().orElse(null), importFile.getDescription().orElse(null), importFile::setImportResult))
+            .collect(Collectors.toList());
         new Thread(() -> {
-            importJob.getImportFiles().stream()
-                .filter(ImportFile::isReadyForImport)
-                .forEach(importFile -> {
-                    ImportResult importResult = archiveImportService.importFile(file(importFile), importFile.getDatetimeOriginal().get(), 
-                                    importFile.getAlbum().orElse(null), importFile.getDescription().orElse(null));
-                    importFile.setImportResult(importResult);
-                });
-            importJob.setRunning(false);
-        }).start();
+            try {
+                new ImportPipeline(archiveImportService, indexingService, importParallelism, indexBatchSize).run(items);
+            } finally {
+                importJob.setRunning(false);
+            }
+        }, "bulk-import").start();
         return true;
     }
     
@@ -111,15 +165,23 @@ public class BulkImportService {
             e.printStackTrace();
         }
         this.importJob = new BulkImportJob();
+        this.chunkedUploads.clear();
     }
     
     
     /**
-     * Creates new {@link BulkImportJob} and initializes it with the current state/content of the import folder.
+     * Stores an uploaded file in the import folder and adds it to the current import job.
+     * 
+     * The content is streamed to disk, its ID (a name based UUID of the content) is computed on the fly.
+     * At most {@code uploadParallelism} uploads are stored at the same time, further uploads wait.
+     * The thumbnail and the EXIF data of the file are processed in the background, so the upload returns
+     * as soon as the file is stored.
+     * 
+     * @param originalFilename name of the uploaded file, determines the media file type
+     * @param content content of the uploaded file, is not closed
+     * @return Has the file been stored?
      */
-    // TODO null safety, error message
-    public boolean upload(String originalFilename, byte[] bytes) {
-        UUID uuid = UUID.nameUUIDFromBytes(bytes);
+    public boolean upload(String originalFilename, InputStream content) {
         Optional<MediaFileType> mediaFileType = MediaFileType.of(originalFilename);
         
         if(!mediaFileType.isPresent()) {
@@ -127,27 +189,239 @@ public class BulkImportService {
             return false;
         }
         
-        File file = file(uuid, mediaFileType.get());
-        
+        UUID uuid;
         try {
-            FileUtils.writeByteArrayToFile(file, bytes, false);
+            uploadPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        try {
+            uuid = store(content, mediaFileType.get());
         } catch (IOException e) {
             LOG.error("File could not be stored in import folder.", e);
+            return false;
+        } finally {
+            uploadPermits.release();
         }
 
-        this.archiveImportService.generateImportThumbnails(file, uuid);
+        register(uuid, originalFilename, mediaFileType.get());
+        
+        return true;
+    }
 
-        ImportFile importFile = new ImportFile(uuid, originalFilename, mediaFileType.get());
+    /**
+     * Initiates a resumable upload in chunks.
+     * 
+     * @param originalFilename name of the uploaded file, determines the media file type
+     * @param size size of the file in bytes
+     * @return upload, empty if the file has an unknown media file type or cannot be created
+     */
+    public Optional<ChunkedUpload> initiateUpload(String originalFilename, long size) {
+        Optional<MediaFileType> mediaFileType = MediaFileType.of(originalFilename);
         
-        ExifData exifData = exifDataService.readExifData(file);
-        if(exifData!=null) {
-            importFile.setDatetimeOriginal(exifData.getDateTimeOriginal());
-            importFile.setDescription(exifData.getDescription().orElse(exifData.getUserComment().orElse(null)));
+        if(!mediaFileType.isPresent() || size <= 0) {
+            LOG.info(String.format("Upload of '%s' (%d bytes) rejected.", originalFilename, size));
+            return Optional.empty();
         }
-
-        this.importJob.put(importFile);
         
-        return true;
+        UUID id = UUID.randomUUID();
+        File uploadsFolder = uploadsFolder();
+        try {
+            Files.createDirectories(uploadsFolder.toPath());
+            ChunkedUpload upload = new ChunkedUpload(id, originalFilename, mediaFileType.get(), size, new File(uploadsFolder, id + PART_FILE_EXTENSION));
+            chunkedUploads.put(id, upload);
+            return Optional.of(upload);
+        } catch (IOException e) {
+            LOG.error("Upload file could not be created in import folder.", e);
+            return Optional.empty();
+        }
+    }
+
+    public Optional<ChunkedUpload> getChunkedUpload(UUID id) {
+        return Optional.ofNullable(chunkedUploads.get(id));
+    }
+
+    /**
+     * Writes a chunk of a resumable upload, see {@link ChunkedUpload#writeChunk(long, InputStream, String)}.
+     * Chunks count as uploads for the {@code uploadParallelism}.
+     */
+    public void uploadChunk(ChunkedUpload upload, long offset, InputStream content, String sha1) throws IOException {
+        try {
+            uploadPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Upload has been interrupted.", e);
+        }
+        try {
+            upload.writeChunk(offset, content, sha1);
+        } finally {
+            uploadPermits.release();
+        }
+    }
+
+    /**
+     * Completes a resumable upload. The file is moved to the import folder and added to the current import job.
+     * 
+     * Concurrent calls for the same upload complete it once, all of them get the same result.
+     * 
+     * @return Has the upload been completed? If not, chunks are missing, the upload has been aborted
+     * or the file cannot be stored.
+     */
+    public boolean completeUpload(ChunkedUpload upload) {
+        if(!upload.isComplete()) {
+            return false;
+        }
+        CompletableFuture<Boolean> completion = new CompletableFuture<>();
+        CompletableFuture<Boolean> completionInFlight = completionsInFlight.putIfAbsent(upload.getId(), completion);
+        if (completionInFlight != null) {
+            return completionInFlight.join();
+        }
+        try {
+            // only the call that removes the upload stores it, it may have been completed or aborted in the meantime
+            boolean completed = chunkedUploads.remove(upload.getId(), upload) ? store(upload) : upload.isStored();
+            completion.complete(completed);
+            return completed;
+        } catch (RuntimeException e) {
+            completion.completeExceptionally(e);
+            throw e;
+        } finally {
+            completionsInFlight.remove(upload.getId(), completion);
+        }
+    }
+
+    public void abortUpload(ChunkedUpload upload) {
+        chunkedUploads.remove(upload.getId());
+        FileUtils.deleteQuietly(upload.getPartFile());
+    }
+
+    /**
+     * Removes the resumable uploads whose part files have not been written for the given time,
+     * including part files without an upload (e.g. from before a restart).
+     */
+    void expireUploads(long maxIdleMillis) {
+        File[] partFiles = uploadsFolder().listFiles((folder, name) -> name.endsWith(PART_FILE_EXTENSION));
+        if (partFiles == null) {
+            return;
+        }
+        long expiry = System.currentTimeMillis() - maxIdleMillis;
+        for (File partFile : partFiles) {
+            if (partFile.lastModified() > expiry) {
+                continue;
+            }
+            try {
+                UUID id = UUID.fromString(StringUtils.removeEnd(partFile.getName(), PART_FILE_EXTENSION));
+                ChunkedUpload upload = chunkedUploads.get(id);
+                // an upload that is being completed is not abandoned
+                if (upload != null && (completionsInFlight.containsKey(id) || !chunkedUploads.remove(id, upload))) {
+                    continue;
+                }
+            } catch (IllegalArgumentException e) {
+                // not the part file of an upload
+            }
+            LOG.info(String.format("Abandoned upload %s is removed.", partFile.getName()));
+            FileUtils.deleteQuietly(partFile);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        uploadProcessor.shutdownNow();
+        uploadExpirer.shutdownNow();
+    }
+
+    /**
+     * Moves the complete file of the upload to the import folder and adds it to the current import job.
+     * If that fails, the upload can be completed again.
+     */
+    private boolean store(ChunkedUpload upload) {
+        try {
+            UUID uuid;
+            try (InputStream content = Files.newInputStream(upload.getPartFile().toPath())) {
+                uuid = nameUUIDFromMd5(DigestUtils.md5(content));
+            }
+            Files.move(upload.getPartFile().toPath(), file(uuid, upload.getMediaFileType()).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            upload.setStored();
+            register(uuid, upload.getOriginalFileName(), upload.getMediaFileType());
+            return true;
+        } catch (IOException e) {
+            LOG.error("Uploaded file could not be stored in import folder.", e);
+            chunkedUploads.put(upload.getId(), upload);
+            return false;
+        }
+    }
+
+    private File uploadsFolder() {
+        return new File(this.importFolder, "uploads");
+    }
+
+    /**
+     * Streams the content into the import folder.
+     * 
+     * @return ID of the file
+     */
+    private UUID store(InputStream content, MediaFileType mediaFileType) throws IOException {
+        File tempFile = File.createTempFile("upload-", ".tmp", this.importFolder);
+        try {
+            MessageDigest md5 = DigestUtils.getMd5Digest();
+            Files.copy(new DigestInputStream(content, md5), tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            UUID uuid = nameUUIDFromMd5(md5.digest());
+            Files.move(tempFile.toPath(), file(uuid, mediaFileType).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return uuid;
+        } finally {
+            FileUtils.deleteQuietly(tempFile);
+        }
+    }
+
+    /**
+     * Adds the uploaded file to the current import job and processes it in the background.
+     */
+    private void register(UUID uuid, String originalFilename, MediaFileType mediaFileType) {
+        ImportFile importFile = new ImportFile(uuid, originalFilename, mediaFileType);
+        getImportJob().put(importFile);
+        uploadProcessor.execute(() -> process(importFile));
+    }
+
+    /**
+     * Generates the thumbnail and reads the EXIF data of an uploaded file. Values the user has entered in the meantime are kept.
+     */
+    private void process(ImportFile importFile) {
+        File file = file(importFile);
+        try {
+            this.thumbnailService.generateImportThumbnails(file, importFile.getUuid());
+            
+            ExifData exifData = exifDataService.readExifData(file);
+            if(exifData!=null) {
+                if(!importFile.getDatetimeOriginal().isPresent()) {
+                    importFile.setDatetimeOriginal(exifData.getDateTimeOriginal());
+                }
+                if(!importFile.getDescription().isPresent()) {
+                    importFile.setDescription(exifData.getDescription().orElse(exifData.getUserComment().orElse(null)));
+                }
+            }
+        } catch (RuntimeException e) {
+            LOG.error(String.format("Uploaded file %s could not be processed.", file), e);
+        }
+    }
+
+    /**
+     * Same as {@link UUID#nameUUIDFromBytes(byte[])}, but from the MD5 digest computed while streaming,
+     * so the IDs are the same as for files that have been uploaded before.
+     */
+    static UUID nameUUIDFromMd5(byte[] md5) {
+        md5[6] &= 0x0f;  // clear version
+        md5[6] |= 0x30;  // set to version 3
+        md5[8] &= 0x3f;  // clear variant
+        md5[8] |= 0x80;  // set to IETF variant
+        long mostSignificantBits = 0;
+        long leastSignificantBits = 0;
+        for (int i = 0; i < 8; i++) {
+            mostSignificantBits = (mostSignificantBits << 8) | (md5[i] & 0xff);
+        }
+        for (int i = 8; i < 16; i++) {
+            leastSignificantBits = (leastSignificantBits << 8) | (md5[i] & 0xff);
+        }
+        return new UUID(mostSignificantBits, leastSignificantBits);
     }
     
     private File file(ImportFile importFile) {
@@ -0,0 +1,148 @@
+package de.zaunkoenigweg.biography.core.archiveimport;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import com.google.common.collect.ImmutableRangeSet;
+import com.google.common.collect.Range;
+import com.google.common.collect.RangeSet;
+import com.google.common.collect.TreeRangeSet;
+
+import de.zaunkoenigweg.biography.core.MediaFileType;
+
+/**
+ * Upload of a file in chunks, which can be resumed after an interruption.
+ *
+ * The chunks are written in place into a part file, which has the size of the complete file.
+ * Chunks can be sent in any order, concurrently and repeatedly. A chunk only counts as received,
+ * if its SHA-1 checksum matches, so the client can query the received ranges and send the missing ones.
+ */
+public class ChunkedUpload {
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private UUID id;
+    private String originalFileName;
+    private MediaFileType mediaFileType;
+    private long size;
+    private File partFile;
+    private RangeSet<Long> receivedRanges = TreeRangeSet.create();
+    private volatile boolean stored;
+
+    ChunkedUpload(UUID id, String originalFileName, MediaFileType mediaFileType, long size, File partFile) throws IOException {
+        this.id = id;
+        this.originalFileName = originalFileName;
+        this.mediaFileType = mediaFileType;
+        this.size = size;
+        this.partFile = partFile;
+        try (RandomAccessFile file = new RandomAccessFile(partFile, "rw")) {
+            file.setLength(size);
+        }
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public String getOriginalFileName() {
+        return originalFileName;
+    }
+
+    public MediaFileType getMediaFileType() {
+        return mediaFileType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    File getPartFile() {
+        return partFile;
+    }
+
+    /**
+     * @return received byte ranges (closed-open), ordered and coalesced
+     */
+    public synchronized Set<Range<Long>> getReceivedRanges() {
+        return ImmutableRangeSet.copyOf(receivedRanges).asRanges();
+    }
+
+    public synchronized boolean isComplete() {
+        return receivedRanges.encloses(Range.closedOpen(0L, size));
+    }
+
+    /**
+     * @return Has the complete file been moved to the import folder?
+     */
+    boolean isStored() {
+        return stored;
+    }
+
+    void setStored() {
+        this.stored = true;
+    }
+
+    /**
+     * Writes the chunk at the given offset. If the chunk fails, its range is (no longer) received.
+     *
+     * @param offset position of the chunk in the file
+     * @param content content of the chunk, is not closed
+     * @param sha1 SHA-1 of the chunk (hex)
+     * @throws IllegalArgumentException if the chunk exceeds the file or the checksum does not match
+     * @throws IOException if the chunk cannot be read or written
+     */
+    void writeChunk(long offset, InputStream content, String sha1) throws IOException {
+
+        if (offset < 0 || offset > size) {
+            throw new IllegalArgumentException(String.format("Offset %d is out of range [0, %d].", offset, size));
+        }
+
+        MessageDigest digest = DigestUtils.getSha1Digest();
+        byte[] buffer = new byte[WRITE_BUFFER_SIZE];
+        long position = offset;
+
+        try (FileChannel channel = FileChannel.open(partFile.toPath(), StandardOpenOption.WRITE)) {
+            int read;
+            while ((read = content.read(buffer)) != -1) {
+                if (position + read > size) {
+                    throw new IllegalArgumentException(String.format("Chunk at offset %d exceeds the file size %d.", offset, size));
+                }
+                digest.update(buffer, 0, read);
+                ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                while (bytes.hasRemaining()) {
+                    position += channel.write(bytes, position);
+                }
+            }
+            if (!Hex.encodeHexString(digest.digest()).equalsIgnoreCase(sha1)) {
+                throw new IllegalArgumentException(String.format("Checksum of chunk at offset %d does not match.", offset));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // a failed chunk may have overwritten data received before
+            markMissing(offset, position);
+            throw e;
+        }
+
+        if (position > offset) {
+            synchronized (this) {
+                receivedRanges.add(Range.closedOpen(offset, position));
+            }
+        }
+    }
+
+    private synchronized void markMissing(long from, long to) {
+        if (to > from) {
+            receivedRanges.remove(Range.closedOpen(from, to));
+        }
+    }
+}
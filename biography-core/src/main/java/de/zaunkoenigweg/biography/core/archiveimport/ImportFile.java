@@ -16,10 +16,11 @@ public class ImportFile {
     private UUID uuid;
     private String originalFileName;
     private MediaFileType mediaFileType;
-    private LocalDateTime datetimeOriginal;
-    private String description;
-    private String album;
-    private ImportResult importResult;
+    // set by background threads (upload processing, import)
+    private volatile LocalDateTime datetimeOriginal;
+    private volatile String description;
+    private volatile String album;
+    private volatile ImportResult importResult;
     
     // TODO assert not null
     public ImportFile(UUID uuid, String originalFileName, MediaFileType mediaFileType) {
@@ -0,0 +1,82 @@
+package de.zaunkoenigweg.biography.core.archiveimport;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+import de.zaunkoenigweg.biography.core.MediaFileName;
+
+/**
+ * State of a single file passing through the stages of an import.
+ *
+ * The input is given on creation, each stage of {@link ImportService} adds its output.
+ * When the import of the file is finished (successfully or not), the result is reported to the callback.
+ */
+class ImportItem {
+
+    private File file;
+    private LocalDateTime dateTimeOriginalFallback;
+    private String album;
+    private String description;
+    private Consumer<ImportResult> onResult;
+
+    private MediaFileName mediaFileName;
+    private File archiveFile;
+    private ImportResult result;
+
+    ImportItem(File file, LocalDateTime dateTimeOriginalFallback, String album, String description, Consumer<ImportResult> onResult) {
+        this.file = file;
+        this.dateTimeOriginalFallback = dateTimeOriginalFallback;
+        this.album = album;
+        this.description = description;
+        this.onResult = onResult;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    LocalDateTime getDateTimeOriginalFallback() {
+        return dateTimeOriginalFallback;
+    }
+
+    String getAlbum() {
+        return album;
+    }
+
+    String getDescription() {
+        return description;
+    }
+
+    MediaFileName getMediaFileName() {
+        return mediaFileName;
+    }
+
+    File getArchiveFile() {
+        return archiveFile;
+    }
+
+    void setArchiveFile(MediaFileName mediaFileName, File archiveFile) {
+        this.mediaFileName = mediaFileName;
+        this.archiveFile = archiveFile;
+    }
+
+    ImportResult getResult() {
+        return result;
+    }
+
+    /**
+     * Finishes the import of this file with the given result.
+     *
+     * @return always {@code false}, so a failing stage can finish the item and report failure in one go.
+     */
+    boolean fail(ImportResult result) {
+        finish(result);
+        return false;
+    }
+
+    void finish(ImportResult result) {
+        this.result = result;
+        onResult.accept(result);
+    }
+}
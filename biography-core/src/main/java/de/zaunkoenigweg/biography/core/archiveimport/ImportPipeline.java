@@ -0,0 +1,260 @@
+package de.zaunkoenigweg.biography.core.archiveimport;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.zaunkoenigweg.biography.core.index.IndexingService;
+
+/**
+ * Imports many files concurrently in stages.
+ *
+ * Each stage of {@link ImportService} (hashing, copying, metadata writing, thumbnailing) has its own workers,
+ * so e.g. copying a file (I/O bound) overlaps with hashing the next files and generating the thumbnails
+ * of the previous ones (CPU bound). The stages are connected by bounded queues, a stage that is ahead
+ * is blocked until the next stage catches up, so the number of files in flight is bounded.
+ * Within the metadata stage, the EXIF data is still written one file at a time, as the
+ * {@link de.zaunkoenigweg.biography.metadata.exif.ExifDataService} serializes all exiftool calls.
+ *
+ * The last stage collects the imported files and indexes them in batches of {@code indexBatchSize} files,
+ * with one commit per batch.
+ *
+ * A pipeline is used for a single run.
+ */
+class ImportPipeline {
+
+    private final static Log LOG = LogFactory.getLog(ImportPipeline.class);
+
+    private static final ImportItem END_OF_ITEMS = new ImportItem(null, null, null, null, result -> {});
+
+    /**
+     * Copying is I/O bound, more than a few concurrent copies do not pay off.
+     */
+    private static final int STORING_THREADS = 2;
+
+    private ImportService importService;
+    private IndexingService indexingService;
+    private int parallelism;
+    private int indexBatchSize;
+
+    private ThreadPoolExecutor preparing;
+    private ThreadPoolExecutor storing;
+    private ThreadPoolExecutor writingMetadata;
+    private ThreadPoolExecutor thumbnailing;
+    private BlockingQueue<ImportItem> indexQueue;
+
+    /**
+     * archive files claimed by the items of this run, so identical files in one import are stored only once
+     */
+    private Set<File> claimedArchiveFiles = ConcurrentHashMap.newKeySet();
+
+    ImportPipeline(ImportService importService, IndexingService indexingService, int parallelism, int indexBatchSize) {
+        this.importService = importService;
+        this.indexingService = indexingService;
+        this.parallelism = parallelism;
+        this.indexBatchSize = indexBatchSize;
+    }
+
+    /**
+     * Imports the given items and blocks until all of them are finished.
+     */
+    void run(Collection<ImportItem> items) {
+
+        preparing = stage(parallelism);
+        storing = stage(Math.min(STORING_THREADS, parallelism));
+        writingMetadata = stage(parallelism);
+        thumbnailing = stage(parallelism);
+        indexQueue = new ArrayBlockingQueue<>(2 * indexBatchSize);
+
+        Thread indexer = new Thread(this::index, "import-indexer");
+        indexer.start();
+
+        try {
+            items.forEach(item -> preparing.execute(guarded(item, this::prepare)));
+        } finally {
+            // each stage only feeds the next one, so the stages can be drained in order
+            drain(preparing);
+            drain(storing);
+            drain(writingMetadata);
+            drain(thumbnailing);
+            putUninterruptibly(indexQueue, END_OF_ITEMS);
+            joinUninterruptibly(indexer);
+        }
+    }
+
+    private void prepare(ImportItem item) {
+        if (!importService.prepare(item)) {
+            return;
+        }
+        if (!claimedArchiveFiles.add(item.getArchiveFile())) {
+            item.fail(ImportResult.FILE_ALREADY_ARCHIVED);
+            return;
+        }
+        storing.execute(guarded(item, this::store));
+    }
+
+    private void store(ImportItem item) {
+        if (importService.store(item)) {
+            writingMetadata.execute(guarded(item, this::writeMetadata));
+        }
+    }
+
+    private void writeMetadata(ImportItem item) {
+        if (importService.writeMetadata(item)) {
+            thumbnailing.execute(guarded(item, this::generateThumbnails));
+        }
+    }
+
+    private void generateThumbnails(ImportItem item) {
+        try {
+            importService.generateThumbnails(item);
+        } catch (RuntimeException e) {
+            LOG.error(String.format("Thumbnails for file %s could not be generated.", item.getArchiveFile()), e);
+        }
+        putUninterruptibly(indexQueue, item);
+    }
+
+    /**
+     * Wraps the stage of the item, so an unexpected error finishes the item instead of losing it.
+     */
+    private static Runnable guarded(ImportItem item, Consumer<ImportItem> stage) {
+        return () -> {
+            try {
+                stage.accept(item);
+            } catch (RuntimeException e) {
+                LOG.error(String.format("Import of file %s failed.", item.getFile()), e);
+                item.fail(ImportResult.FILE_CANNOT_BE_STORED);
+            }
+        };
+    }
+
+    /**
+     * Last stage: Takes the stored items from the queue and indexes them in batches until the end marker is reached.
+     */
+    private void index() {
+        List<ImportItem> batch = new ArrayList<>(indexBatchSize);
+        ImportItem item;
+        while ((item = takeUninterruptibly(indexQueue)) != END_OF_ITEMS) {
+            batch.add(item);
+            if (batch.size() == indexBatchSize) {
+                index(batch);
+                batch = new ArrayList<>(indexBatchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            index(batch);
+        }
+    }
+
+    /**
+     * Indexes the batch. The files are in the archive, so they are imported successfully, even if the index
+     * cannot be updated (the index can be synchronized later).
+     */
+    private void index(List<ImportItem> batch) {
+        try {
+            indexingService.reIndex(batch.stream().map(ImportItem::getArchiveFile).collect(Collectors.toList()));
+        } catch (RuntimeException e) {
+            LOG.error(String.format("Batch of %d imported files could not be indexed.", batch.size()), e);
+        }
+        batch.forEach(item -> item.finish(ImportResult.SUCCESS));
+    }
+
+    /**
+     * Creates a stage with a bounded queue. If the queue is full, the submitting thread is blocked.
+     */
+    private static ThreadPoolExecutor stage(int threads) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(2 * threads),
+                (task, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("Import stage has been shut down.");
+                    }
+                    putUninterruptibly(executor.getQueue(), task);
+                });
+    }
+
+    private static void drain(ExecutorService stage) {
+        stage.shutdown();
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    stage.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static <T> void putUninterruptibly(BlockingQueue<T> queue, T element) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    queue.put(element);
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static <T> T takeUninterruptibly(BlockingQueue<T> queue) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return queue.take();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    thread.join();
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -2,13 +2,10 @@ package de.zaunkoenigweg.biography.core.archiveimport;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.time.LocalDateTime;
 import java.util.HashSet;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.UUID;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -20,50 +17,52 @@ import de.zaunkoenigweg.biography.core.MediaFileName;
 import de.zaunkoenigweg.biography.core.MediaFileType;
 import de.zaunkoenigweg.biography.core.Sha1;
 import de.zaunkoenigweg.biography.core.archive.Archive;
-import de.zaunkoenigweg.biography.core.index.IndexingService;
 import de.zaunkoenigweg.biography.metadata.Album;
 import de.zaunkoenigweg.biography.metadata.BiographyMetadata;
 import de.zaunkoenigweg.biography.metadata.MetadataService;
 import de.zaunkoenigweg.biography.metadata.exif.ExifData;
 import de.zaunkoenigweg.biography.metadata.exif.ExifDataService;
-import de.zaunkoenigweg.lexi4j.thumbnails.ThumbnailGenerator;
-import de.zaunkoenigweg.lexi4j.thumbnails.ThumbnailGeneratorException;
 
+/**
+ * Imports a single media file into the archive.
+ * 
+ * The import consists of stages, which are run by the {@link ImportPipeline} for many files concurrently.
+ * Each stage reports its failure to the {@link ImportItem} and returns if the import of the item can be continued.
+ */
 @Component
 public class ImportService {
 
     private final static Log LOG = LogFactory.getLog(ImportService.class);
 
     private MetadataService metadataService;
-    private IndexingService indexingService;
     private ExifDataService exifDataService;
+    private ThumbnailService thumbnailService;
     private Archive archive;
-    private File importFolder;
 
-    public ImportService(MetadataService metadataService, IndexingService indexingService, ExifDataService exifDataService, Archive archive, File importFolder) {
+    public ImportService(MetadataService metadataService, ExifDataService exifDataService, ThumbnailService thumbnailService, Archive archive) {
         this.metadataService = metadataService;
-        this.indexingService = indexingService;
         this.exifDataService = exifDataService;
+        this.thumbnailService = thumbnailService;
         this.archive = archive;
-        this.importFolder = importFolder;
         LOG.info("ArchiveImportService started.");
-        LOG.info(String.format("importFolder=%s", this.importFolder));
     }
 
     /**
-     * Imports given media file.
-     * @param album
+     * First stage: Determines the archive file name of the item (EXIF data and SHA-1).
+     * @return Can the import of the item be continued?
      */
-    ImportResult importFile(File file, LocalDateTime dateTimeOriginalFallback, String album, String description) {
+    boolean prepare(ImportItem item) {
+
+        File file = item.getFile();
 
         if (!file.exists() || file.isDirectory()) {
-            return ImportResult.FILE_NOT_FOUND;
+            return item.fail(ImportResult.FILE_NOT_FOUND);
         }
 
         Optional<MediaFileType> mediaFileType = MediaFileType.of(file);
 
         if (!mediaFileType.isPresent()) {
-            return ImportResult.UNKNOWN_MEDIA_FILE_TYPE;
+            return item.fail(ImportResult.UNKNOWN_MEDIA_FILE_TYPE);
         }
         
         LocalDateTime dateTimeOriginal = null;
@@ -73,24 +72,24 @@ public class ImportService {
             ExifData exifData = exifDataService.readExifData(file);
 
             if (exifData == null) {
-                return ImportResult.NO_EXIF_DATA_PRESENT;
+                return item.fail(ImportResult.NO_EXIF_DATA_PRESENT);
             }
             
             dateTimeOriginal = exifData.getDateTimeOriginal();
             
             if (dateTimeOriginal == null) {
-                if(dateTimeOriginalFallback==null) {
-                    return ImportResult.NO_TIMESTAMP_DETECTED;
+                if(item.getDateTimeOriginalFallback()==null) {
+                    return item.fail(ImportResult.NO_TIMESTAMP_DETECTED);
                 }
-                dateTimeOriginal = dateTimeOriginalFallback;
+                dateTimeOriginal = item.getDateTimeOriginalFallback();
             }
             
         } else {
 
-            if(dateTimeOriginalFallback==null) {
-                return ImportResult.NO_EXIF_DATA_SUPPORTED;
+            if(item.getDateTimeOriginalFallback()==null) {
+                return item.fail(ImportResult.NO_EXIF_DATA_SUPPORTED);
             }
-            dateTimeOriginal = dateTimeOriginalFallback;
+            dateTimeOriginal = item.getDateTimeOriginalFallback();
             
         }
         
@@ -101,28 +100,49 @@ public class ImportService {
         File archiveFile = mediaFileName.archiveFile(archive.getArchiveFolder());
 
         if (archiveFile.exists()) {
-            return ImportResult.FILE_ALREADY_ARCHIVED;
+            return item.fail(ImportResult.FILE_ALREADY_ARCHIVED);
         }
 
+        item.setArchiveFile(mediaFileName, archiveFile);
+        return true;
+    }
+
+    /**
+     * Second stage: Copies the file into the archive.
+     * @return Can the import of the item be continued?
+     */
+    boolean store(ImportItem item) {
         try {
-            FileUtils.copyFile(file, archiveFile);
+            FileUtils.copyFile(item.getFile(), item.getArchiveFile());
+            return true;
         } catch (IOException e) {
             LOG.error("File cannot be stored in archive.", e);
+            FileUtils.deleteQuietly(item.getArchiveFile());
+            return item.fail(ImportResult.FILE_CANNOT_BE_STORED);
         }
+    }
 
+    /**
+     * Third stage: Writes the biography metadata into the archive file (or its JSON file).
+     * @return Can the import of the item be continued?
+     */
+    boolean writeMetadata(ImportItem item) {
+        File archiveFile = item.getArchiveFile();
         try {
-            setBiographyMetadata(archiveFile, dateTimeOriginal, sha1, album, description);
+            setBiographyMetadata(archiveFile, item.getMediaFileName().getDateTimeOriginal(), item.getMediaFileName().getSha1(), item.getAlbum(), item.getDescription());
+            return true;
         } catch (RuntimeException e) {
             LOG.error("Error while setting biography metadata on file " + archiveFile, e);
             FileUtils.deleteQuietly(archiveFile);
-            return ImportResult.FILE_CANNOT_BE_STORED;
+            return item.fail(ImportResult.FILE_CANNOT_BE_STORED);
         }
-        
-        this.generateThumbnails(archiveFile);
-        
-        indexingService.reIndex(archiveFile);
+    }
 
-        return ImportResult.SUCCESS;
+    /**
+     * Fourth stage: Generates the thumbnails. Missing thumbnails do not fail the import, they can be generated later.
+     */
+    void generateThumbnails(ImportItem item) {
+        thumbnailService.generateThumbnails(item.getArchiveFile());
     }
 
     private void setBiographyMetadata(File file, LocalDateTime dateTimeOriginal, Sha1 sha1,
@@ -145,89 +165,5 @@ public class ImportService {
                 "b" + MediaFileName.of(file.getName()).getSha1() + ".json");
         metadataService.writeMetadataToJsonFile(jsonFile, metadata);
     }
-    
-    /**
-     * Generate thumbnail files for given archive file if they don't exist.
-     * @param archive file, must have a valid {@code MediaFileName}.
-     * @return Have the thumbnails been created?
-     */
-    public boolean generateThumbnails(File file) {
-    	
-    	Objects.requireNonNull(file);
-    	MediaFileName mediaFileName = MediaFileName.of(file.getName());
-    	
-    	File thumbnailsFolder = new File(this.archive.getArchiveFolder(), "thumbnails");
-    	
-    	File thumbsFolder200 = new File(thumbnailsFolder, ThumbnailSize.t200.folderName);
-    	File thumbsFolder300 = new File(thumbnailsFolder, ThumbnailSize.t300.folderName);
-
-		File file200 = mediaFileName.thumbnailFile(thumbsFolder200);
-		File file300 = mediaFileName.thumbnailFile(thumbsFolder300);
-
-		if(file200.exists() && file300.exists()) {
-			return false;
-		}
-    	
-        generateThumbnail(file, ThumbnailSize.t200, file200);
-        generateThumbnail(file, ThumbnailSize.t300, file300);
-    	
-    	return true;
-    }
-
-    public void generateImportThumbnails(File file, UUID uuid) {
-        File thumbnailsFolder = new File(this.importFolder, "thumbnails");
-        File thumbnailFile = new File(thumbnailsFolder, String.format("%s.jpg", uuid.toString()));
-        generateThumbnail(file, ThumbnailSize.t200, thumbnailFile);
-    }
-
-    private void generateThumbnail(File sourceFile, ThumbnailSize size, File targetFile) {
-        
-        Optional<MediaFileType> mediaFileType = MediaFileType.of(sourceFile);
-        if(!mediaFileType.isPresent()) {
-            return;
-        }
-        
-        try {
-            Files.createDirectories(targetFile.getParentFile().toPath());
-        } catch (IOException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-            return;
-        }
-        
-        if(mediaFileType.get().getKind() == MediaFileType.Kind.VIDEO) {
-        	try {
-				ThumbnailGenerator.generateThumbnailFromVideo(sourceFile, targetFile, size.height);
-			} catch (ThumbnailGeneratorException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
-        	return;
-        }
-        
-        if(mediaFileType.get().getKind() == MediaFileType.Kind.IMAGE) {
-            try {
-                ThumbnailGenerator.generateThumbnailFromImage(sourceFile, targetFile, size.height);
-            } catch (ThumbnailGeneratorException e) {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
-            }
-            return;
-        }
-    }
-    
-    static enum ThumbnailSize {
-    	
-    	t200("200", 200), 
-    	t300("300", 300);
-    	
-    	private String folderName;
-    	private int height;
-    	
-		private ThumbnailSize(String folderName, int height) {
-			this.folderName = folderName;
-			this.height = height;
-		}
-    }
 
 }
@@ -0,0 +1,173 @@
+package de.zaunkoenigweg.biography.core.archiveimport;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.stereotype.Component;
+
+import de.zaunkoenigweg.biography.core.MediaFileName;
+import de.zaunkoenigweg.biography.core.MediaFileType;
+import de.zaunkoenigweg.biography.core.archive.Archive;
+
+/**
+ * Generates and locates the thumbnails of the archive files.
+ *
+ * The thumbnails are stored in {@code thumbnails/<size>/yyyy/MM} in the archive folder.
+ * The pregenerated sizes are generated on import (or by the batch), the other sizes of the
+ * ladder are generated on first request. Concurrent requests for the same missing thumbnail
+ * share a single generation.
+ */
+@Component
+public class ThumbnailService {
+
+    private final static Log LOG = LogFactory.getLog(ThumbnailService.class);
+
+    /**
+     * size of the thumbnails shown for the files in the import folder
+     */
+    private static final int IMPORT_THUMBNAIL_SIZE = 200;
+
+    private Archive archive;
+    private File importFolder;
+    private ThumbnailSizes thumbnailSizes;
+    private File thumbnailsFolder;
+
+    private Map<File, CompletableFuture<Boolean>> generationsInFlight = new ConcurrentHashMap<>();
+
+    public ThumbnailService(Archive archive, File importFolder, ThumbnailSizes thumbnailSizes) {
+        this.archive = archive;
+        this.importFolder = importFolder;
+        this.thumbnailSizes = thumbnailSizes;
+        this.thumbnailsFolder = new File(archive.getArchiveFolder(), "thumbnails");
+        LOG.info("ThumbnailService started.");
+        LOG.info(String.format("thumbnailSizes=%s", this.thumbnailSizes));
+    }
+
+    public ThumbnailSizes getThumbnailSizes() {
+        return thumbnailSizes;
+    }
+
+    /**
+     * Determines the thumbnail file of the given size, regardless if it exists.
+     */
+    public File thumbnailFile(MediaFileName mediaFileName, int size) {
+        return mediaFileName.thumbnailFile(new File(this.thumbnailsFolder, Integer.toString(size)));
+    }
+
+    /**
+     * Gets the thumbnail of the given size, generating it if it does not exist yet.
+     *
+     * @param mediaFileName name of the archive file or its thumbnail (thumbnails are always JPEGs)
+     * @param size thumbnail size, must be part of the ladder
+     * @return thumbnail file, empty if the size is not supported, there is no such archive file or the thumbnail cannot be generated
+     */
+    public Optional<File> thumbnail(MediaFileName mediaFileName, int size) {
+
+        if (!thumbnailSizes.contains(size)) {
+            return Optional.empty();
+        }
+
+        File thumbnailFile = thumbnailFile(mediaFileName, size);
+        if (thumbnailFile.exists()) {
+            return Optional.of(thumbnailFile);
+        }
+
+        Optional<File> sourceFile = sourceFile(mediaFileName);
+        if (!sourceFile.isPresent()) {
+            return Optional.empty();
+        }
+
+        CompletableFuture<Boolean> generation = new CompletableFuture<>();
+        CompletableFuture<Boolean> generationInFlight = generationsInFlight.putIfAbsent(thumbnailFile, generation);
+        if (generationInFlight != null) {
+            return generationInFlight.join() ? Optional.of(thumbnailFile) : Optional.empty();
+        }
+        try {
+            // the thumbnail may have been completed in the meantime
+            boolean generated = thumbnailFile.exists() || generateThumbnails(sourceFile.get(), new TreeMap<>(Collections.singletonMap(size, thumbnailFile)));
+            generation.complete(generated);
+            return generated ? Optional.of(thumbnailFile) : Optional.empty();
+        } catch (RuntimeException e) {
+            generation.completeExceptionally(e);
+            throw e;
+        } finally {
+            generationsInFlight.remove(thumbnailFile, generation);
+        }
+    }
+
+    /**
+     * Generate the pregenerated thumbnail files for given archive file if they don't exist.
+     *
+     * The source is decoded once for all missing sizes.
+     * @param file archive file, must have a valid {@code MediaFileName}.
+     * @return Have the thumbnails been created?
+     */
+    public boolean generateThumbnails(File file) {
+
+        Objects.requireNonNull(file);
+        MediaFileName mediaFileName = MediaFileName.of(file.getName());
+
+        NavigableMap<Integer, File> missingThumbnails = new TreeMap<>();
+        for (int size : thumbnailSizes.getPregeneratedSizes()) {
+            File thumbnailFile = thumbnailFile(mediaFileName, size);
+            if (!thumbnailFile.exists()) {
+                missingThumbnails.put(size, thumbnailFile);
+            }
+        }
+
+        if (missingThumbnails.isEmpty()) {
+            return false;
+        }
+
+        return generateThumbnails(file, missingThumbnails);
+    }
+
+    public void generateImportThumbnails(File file, UUID uuid) {
+        File thumbnailsFolder = new File(this.importFolder, "thumbnails");
+        File thumbnailFile = new File(thumbnailsFolder, String.format("%s.jpg", uuid.toString()));
+        generateThumbnails(file, new TreeMap<>(Collections.singletonMap(IMPORT_THUMBNAIL_SIZE, thumbnailFile)));
+    }
+
+    private boolean generateThumbnails(File sourceFile, NavigableMap<Integer, File> targetFilesByHeight) {
+
+        Optional<MediaFileType> mediaFileType = MediaFileType.of(sourceFile);
+        if (!mediaFileType.isPresent()) {
+            return false;
+        }
+
+        try {
+            Thumbnails.generate(sourceFile, mediaFileType.get(), targetFilesByHeight);
+            return true;
+        } catch (IOException e) {
+            LOG.error(String.format("Thumbnails for file %s could not be generated.", sourceFile), e);
+            return false;
+        }
+    }
+
+    /**
+     * Finds the archive file for the given name. As thumbnails are requested by their (JPEG) name,
+     * the archive file may be of another media type.
+     */
+    private Optional<File> sourceFile(MediaFileName mediaFileName) {
+        File archiveFile = mediaFileName.archiveFile(archive.getArchiveFolder());
+        if (archiveFile.exists()) {
+            return Optional.of(archiveFile);
+        }
+        return MediaFileType.all()
+                .filter(type -> type != mediaFileName.getType())
+                .map(type -> MediaFileName.of(type, mediaFileName.getDateTimeOriginal(), mediaFileName.getSha1()).archiveFile(archive.getArchiveFolder()))
+                .filter(File::exists)
+                .findFirst();
+    }
+}
@@ -0,0 +1,61 @@
+package de.zaunkoenigweg.biography.core.archiveimport;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Ladder of thumbnail sizes (heights in pixels).
+ *
+ * All sizes of the ladder can be requested, the pregenerated sizes are generated when a file is imported,
+ * all others lazily on first request. The gallery size is the size shown in the galleries of the UI.
+ */
+public class ThumbnailSizes {
+
+    private NavigableSet<Integer> sizes;
+    private NavigableSet<Integer> pregeneratedSizes;
+    private int gallerySize;
+
+    public ThumbnailSizes(int[] sizes, int[] pregeneratedSizes, int gallerySize) {
+        this.sizes = toSet(sizes);
+        this.pregeneratedSizes = toSet(pregeneratedSizes);
+        this.gallerySize = gallerySize;
+        if (this.sizes.isEmpty() || this.sizes.first() <= 0) {
+            throw new IllegalArgumentException(String.format("The thumbnail sizes must be positive, but are %s.", this.sizes));
+        }
+        if (!this.sizes.containsAll(this.pregeneratedSizes)) {
+            throw new IllegalArgumentException(String.format("The pregenerated thumbnail sizes %s must be a subset of the thumbnail sizes %s.",
+                    this.pregeneratedSizes, this.sizes));
+        }
+        if (!this.sizes.contains(gallerySize)) {
+            throw new IllegalArgumentException(String.format("The gallery thumbnail size %d must be one of the thumbnail sizes %s.", gallerySize, this.sizes));
+        }
+    }
+
+    public boolean contains(int size) {
+        return sizes.contains(size);
+    }
+
+    public NavigableSet<Integer> getSizes() {
+        return sizes;
+    }
+
+    public NavigableSet<Integer> getPregeneratedSizes() {
+        return pregeneratedSizes;
+    }
+
+    public int getGallerySize() {
+        return gallerySize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (pregenerated: %s, gallery: %d)", sizes, pregeneratedSizes, gallerySize);
+    }
+
+    private static NavigableSet<Integer> toSet(int[] sizes) {
+        return Collections.unmodifiableNavigableSet(Arrays.stream(sizes).boxed().collect(Collectors.toCollection(TreeSet::new)));
+    }
+}
@@ -0,0 +1,179 @@
+package de.zaunkoenigweg.biography.core.archiveimport;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.UUID;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import de.zaunkoenigweg.biography.core.MediaFileType;
+import de.zaunkoenigweg.lexi4j.thumbnails.ThumbnailGenerator;
+import de.zaunkoenigweg.lexi4j.thumbnails.ThumbnailGeneratorException;
+
+/**
+ * Generates the thumbnails of a media file in all requested sizes from a single decode of the source.
+ *
+ * Images are decoded with ImageIO, large images are subsampled while decoding, so only a fraction of the
+ * pixels is ever materialized. For videos the frame is extracted once (in the largest size) and all sizes are
+ * derived from it.
+ *
+ * Each size is scaled down from the next larger one, which keeps the quality of the bilinear scaling
+ * without touching the full resolution image more than once.
+ *
+ * Large thumbnails (e.g. for the lightbox on high-DPI screens) are written as progressive JPEGs.
+ *
+ * All thumbnails are written atomically, an existing thumbnail file is always complete.
+ */
+final class Thumbnails {
+
+    /**
+     * The image is decoded with at least this multiple of the largest thumbnail height,
+     * so the downscaling still has enough pixels for a smooth result.
+     */
+    private static final int SUBSAMPLING_HEADROOM = 2;
+
+    private static final float JPEG_QUALITY = 0.85f;
+
+    /**
+     * Thumbnails from this height on are written as progressive JPEGs, which are more compact for larger images
+     * and can be rendered before they are fully loaded.
+     */
+    private static final int PROGRESSIVE_MIN_HEIGHT = 800;
+
+    private Thumbnails() {
+    }
+
+    /**
+     * Generates the thumbnails.
+     *
+     * @param sourceFile image or video file
+     * @param mediaFileType type of the source file
+     * @param targetFilesByHeight thumbnail files by their height
+     * @throws IOException if the source cannot be decoded or a thumbnail cannot be written
+     */
+    static void generate(File sourceFile, MediaFileType mediaFileType, NavigableMap<Integer, File> targetFilesByHeight) throws IOException {
+
+        if (targetFilesByHeight.isEmpty()) {
+            return;
+        }
+
+        for (File targetFile : targetFilesByHeight.values()) {
+            Files.createDirectories(targetFile.getParentFile().toPath());
+        }
+
+        BufferedImage source;
+        if (mediaFileType.getKind() == MediaFileType.Kind.VIDEO) {
+            // the frame is extracted to a temporary file, the thumbnail itself must only appear when it is complete
+            Map.Entry<Integer, File> largest = targetFilesByHeight.lastEntry();
+            File frameFile = tempFile(largest.getValue(), ".jpg");
+            try {
+                ThumbnailGenerator.generateThumbnailFromVideo(sourceFile, frameFile, largest.getKey());
+                source = read(frameFile, largest.getKey());
+            } catch (ThumbnailGeneratorException e) {
+                throw new IOException(String.format("Frame of video %s could not be extracted.", sourceFile), e);
+            } finally {
+                Files.deleteIfExists(frameFile.toPath());
+            }
+        } else {
+            source = read(sourceFile, targetFilesByHeight.lastKey());
+        }
+
+        BufferedImage image = source;
+        for (Map.Entry<Integer, File> target : targetFilesByHeight.descendingMap().entrySet()) {
+            image = scale(image, target.getKey());
+            write(image, target.getValue());
+        }
+    }
+
+    /**
+     * Decodes the image, subsampled to no less than {@link #SUBSAMPLING_HEADROOM} times the given height.
+     */
+    static BufferedImage read(File file, int height) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            if (input == null) {
+                throw new IOException(String.format("Image %s cannot be opened.", file));
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException(String.format("Image %s has an unsupported format.", file));
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int subsampling = Math.max(1, reader.getHeight(0) / (height * SUBSAMPLING_HEADROOM));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scales the image down to the given height, keeping the aspect ratio. Images that are not higher are returned as is.
+     */
+    static BufferedImage scale(BufferedImage image, int height) {
+        if (image.getHeight() <= height) {
+            return image;
+        }
+        int width = Math.max(1, Math.round((float) image.getWidth() * height / image.getHeight()));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    /**
+     * Writes the thumbnail to a temporary file and moves it to its target, so the target is either missing or complete.
+     */
+    private static void write(BufferedImage image, File file) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        File tempFile = tempFile(file, ".tmp");
+        try {
+            try (ImageOutputStream output = ImageIO.createImageOutputStream(tempFile)) {
+                writer.setOutput(output);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+                if (image.getHeight() >= PROGRESSIVE_MIN_HEIGHT) {
+                    param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+                }
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    /**
+     * Name of a temporary file next to the given file, unique, so concurrent generations of the same thumbnail do not collide.
+     */
+    private static File tempFile(File file, String suffix) {
+        return new File(file.getParentFile(), String.format("%s.%s%s", file.getName(), UUID.randomUUID(), suffix));
+    }
+}
@@ -0,0 +1,59 @@
+package de.zaunkoenigweg.biography.core.archivemetadata;
+
+import java.io.File;
+
+import de.zaunkoenigweg.biography.core.MediaFileName;
+import de.zaunkoenigweg.biography.core.archivemetadata.ArchiveValidationService.ValidationResult;
+import de.zaunkoenigweg.biography.metadata.BiographyMetadata;
+import de.zaunkoenigweg.biography.metadata.exif.ExifData;
+
+/**
+ * Result of the inspection of an archived media file.
+ *
+ * Contains the validation result and everything that was read from the file to validate it,
+ * so callers do not have to read it again.
+ *
+ * Depending on how far the validation got, some of the data may be missing ({@code null}):
+ * The media file name is only set if the name is valid, the EXIF data only for file types
+ * supporting EXIF, the metadata only if it could be read.
+ */
+public class ArchiveFileInspection {
+
+    private File file;
+    private ValidationResult validationResult;
+    private MediaFileName mediaFileName;
+    private ExifData exifData;
+    private BiographyMetadata metadata;
+
+    ArchiveFileInspection(File file, ValidationResult validationResult, MediaFileName mediaFileName, ExifData exifData, BiographyMetadata metadata) {
+        this.file = file;
+        this.validationResult = validationResult;
+        this.mediaFileName = mediaFileName;
+        this.exifData = exifData;
+        this.metadata = metadata;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public ValidationResult getValidationResult() {
+        return validationResult;
+    }
+
+    public boolean isValid() {
+        return ValidationResult.OK == validationResult;
+    }
+
+    public MediaFileName getMediaFileName() {
+        return mediaFileName;
+    }
+
+    public ExifData getExifData() {
+        return exifData;
+    }
+
+    public BiographyMetadata getMetadata() {
+        return metadata;
+    }
+}
@@ -2,7 +2,6 @@ package de.zaunkoenigweg.biography.core.archivemetadata;
 
 import java.io.File;
 import java.util.Collections;
-import java.util.Optional;
 import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
@@ -11,7 +10,6 @@ import org.apache.commons.logging.LogFactory;
 import org.springframework.stereotype.Component;
 
 import de.zaunkoenigweg.biography.core.MediaFileName;
-import de.zaunkoenigweg.biography.core.MediaFileType;
 import de.zaunkoenigweg.biography.metadata.Album;
 import de.zaunkoenigweg.biography.metadata.BiographyMetadata;
 import de.zaunkoenigweg.biography.metadata.MetadataService;
@@ -21,7 +19,8 @@ import de.zaunkoenigweg.biography.metadata.exif.ExifDataService;
  * This service offers methods to read/write the metadata of archived media files.
  *
  * The methods that edit or read the metadata test consistency/validity of the file before they
- * change anything by calling {@link ArchiveValidationService#isValid(File)}.
+ * change anything by calling {@link ArchiveValidationService#inspect(File)}. The data read
+ * during the inspection is reused, so the file's EXIF data is read only once.
  * If the files are not valid, the method throws a {@link IllegalStateException}. 
  * 
  * The changes are performed in a way that should guarantee consistency/validity.
@@ -45,16 +44,7 @@ public class ArchiveMetadataService {
 	}
 
     public BiographyMetadata getMetadata(File file) {
-    	throwIfUnvalid(file);
-    	Optional<MediaFileType> mediaFileType = MediaFileType.of(file);
-    	if(!mediaFileType.isPresent()) {
-    		throw new IllegalStateException(String.format("The file type '%s' is not known.", file.getAbsolutePath()));
-    	}
-		if(ExifDataService.supports(mediaFileType.get())) {
-			return metadataService.readMetadataFromExif(file);
-    	} else {
-    		return metadataService.readMetadataFromJsonFile(getMetadataJsonFile(file));
-    	}
+    	return inspectValid(file).getMetadata();
     }
     
     public String getDescription(File file) {
@@ -63,31 +53,13 @@ public class ArchiveMetadataService {
     }
     
     public void setDescription(File file, String description) {
-    	BiographyMetadata metadata = getMetadata(file);
-    	metadata = metadata.withDescription(description);
-    	Optional<MediaFileType> mediaFileType = MediaFileType.of(file);
-    	if(!mediaFileType.isPresent()) {
-    		throw new IllegalStateException(String.format("The file type '%s' is not known.", file.getAbsolutePath()));
-    	}
-		if(ExifDataService.supports(mediaFileType.get())) {
-			metadataService.writeMetadataIntoExif(file, metadata);
-    	} else {
-    		metadataService.writeMetadataToJsonFile(getMetadataJsonFile(file), metadata);
-    	}
+    	ArchiveFileInspection inspection = inspectValid(file);
+    	writeMetadata(inspection, inspection.getMetadata().withDescription(description));
     }
     
     public void removeAlbums(File file, Set<Album> albums) {
-    	BiographyMetadata metadata = getMetadata(file);
-    	metadata = metadata.withReducedAlbums(albums);
-    	Optional<MediaFileType> mediaFileType = MediaFileType.of(file);
-    	if(!mediaFileType.isPresent()) {
-    		throw new IllegalStateException(String.format("The file type '%s' is not known.", file.getAbsolutePath()));
-    	}
-		if(ExifDataService.supports(mediaFileType.get())) {
-			metadataService.writeMetadataIntoExif(file, metadata);
-    	} else {
-    		metadataService.writeMetadataToJsonFile(getMetadataJsonFile(file), metadata);
-    	}
+    	ArchiveFileInspection inspection = inspectValid(file);
+    	writeMetadata(inspection, inspection.getMetadata().withReducedAlbums(albums));
     }
     
     public void removeAlbum(File file, Album album) {
@@ -95,31 +67,57 @@ public class ArchiveMetadataService {
     }
     
     public void addAlbums(File file, Set<Album> albums) {
-    	BiographyMetadata metadata = getMetadata(file);
-    	metadata = metadata.withMergedAlbums(albums);
-    	Optional<MediaFileType> mediaFileType = MediaFileType.of(file);
-    	if(!mediaFileType.isPresent()) {
-    		throw new IllegalStateException(String.format("The file type '%s' is not known.", file.getAbsolutePath()));
-    	}
-		if(ExifDataService.supports(mediaFileType.get())) {
-			metadataService.writeMetadataIntoExif(file, metadata);
-    	} else {
-    		metadataService.writeMetadataToJsonFile(getMetadataJsonFile(file), metadata);
-    	}
+    	ArchiveFileInspection inspection = inspectValid(file);
+    	writeMetadata(inspection, inspection.getMetadata().withMergedAlbums(albums));
     }
     
     public void addAlbum(File file, Album album) {
     	addAlbums(file, Collections.singleton(album));
     }
     
+    /**
+     * Applies the edit to the metadata of the file. The metadata is only written, if the edit changes it,
+     * so e.g. adding an album to a file that is already in the album costs no exiftool write.
+     * 
+     * Different files can be edited concurrently. The EXIF data is written one file at a time though,
+     * as {@link de.zaunkoenigweg.biography.metadata.exif.ExifDataService} serializes all exiftool calls.
+     * 
+     * @param file archive file
+     * @param edit change of the metadata
+     * @return Has the metadata been changed?
+     */
+    public boolean edit(File file, MetadataEdit edit) {
+    	ArchiveFileInspection inspection = inspectValid(file);
+    	BiographyMetadata metadata = edit.applyTo(inspection.getMetadata());
+    	if(metadata.equals(inspection.getMetadata())) {
+    		return false;
+    	}
+    	writeMetadata(inspection, metadata);
+    	return true;
+    }
+    
+    /**
+     * Writes the metadata of an inspected file, reusing the EXIF data read during the inspection.
+     */
+    private void writeMetadata(ArchiveFileInspection inspection, BiographyMetadata metadata) {
+    	File file = inspection.getFile();
+		if(ExifDataService.supports(inspection.getMediaFileName().getType())) {
+			metadataService.writeMetadataIntoExif(file, inspection.getExifData(), metadata);
+    	} else {
+    		metadataService.writeMetadataToJsonFile(getMetadataJsonFile(file), metadata);
+    	}
+    }
+    
     private File getMetadataJsonFile(File file) {
     	return new File(file.getParent(), String.format("b%s.json", MediaFileName.of(file.getName()).getSha1()));
     }
     
-    private void throwIfUnvalid(File file) {
-    	if(!archiveValidationService.isValid(file)) {
+    private ArchiveFileInspection inspectValid(File file) {
+    	ArchiveFileInspection inspection = archiveValidationService.inspect(file);
+    	if(!inspection.isValid()) {
     		throw new IllegalStateException(String.format("The file '%s' is not valid.", file.getAbsolutePath()));
     	}
+    	return inspection;
     }
     
     
@@ -3,6 +3,7 @@ package de.zaunkoenigweg.biography.core.archivemetadata;
 import java.io.File;
 import java.time.temporal.ChronoUnit;
 import java.util.Objects;
+import java.util.Optional;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
@@ -52,62 +53,94 @@ public class ArchiveValidationService {
      * @return validation result
      */
     public ValidationResult validate(File file) {
+    	return inspect(file).getValidationResult();
+    }
+
+    /**
+     * Inspects Biography media file in archive.
+     * 
+     * The file is validated and the data read for validation is returned along with the validation result.
+     * The EXIF data is read only once, the Biography metadata is taken from its user comment.
+     * 
+     * @param file Biography media file, must not be {@code null}
+     * @return inspection result
+     */
+    public ArchiveFileInspection inspect(File file) {
     	
     	Objects.requireNonNull(file, "The archive file must not be null.");
 
-    	if(!file.exists() || file.isDirectory()) {
-    		return ValidationResult.FILE_DOES_NOT_EXIST;
+    	if(!file.isFile()) {
+    		return new ArchiveFileInspection(file, ValidationResult.FILE_DOES_NOT_EXIST, null, null, null);
     	}
     	
     	if(!MediaFileName.isValid(file.getName())) {
-    		return ValidationResult.FILENAME_NOT_VALID;
+    		return new ArchiveFileInspection(file, ValidationResult.FILENAME_NOT_VALID, null, null, null);
     	}
     	
     	MediaFileName mediaFileName = MediaFileName.of(file.getName());
     	
     	if(!file.equals(mediaFileName.archiveFile(archiveFolder))) {
-    		return ValidationResult.FILE_IS_NOT_IN_CORRECT_ARCHIVE_FILDER;
+    		return new ArchiveFileInspection(file, ValidationResult.FILE_IS_NOT_IN_CORRECT_ARCHIVE_FILDER, mediaFileName, null, null);
     	}
     	
+        ExifData exifData = null;
         BiographyMetadata metadata;
 
         if (ExifDataService.supports(mediaFileName.getType())) {
-            metadata = metadataService.readMetadataFromExif(file);
+            exifData = exifDataService.readExifData(file);
+            metadata = metadataService.readMetadataFromExif(exifData);
         } else {
             metadata = metadataService.readMetadataFromJsonFile(getMetadataJsonFile(file, mediaFileName));
         }
 
         if(metadata==null) {
-        	return ValidationResult.FILE_HAS_NO_METADATA;
+        	return new ArchiveFileInspection(file, ValidationResult.FILE_HAS_NO_METADATA, mediaFileName, exifData, null);
         }
     	
         if(!mediaFileName.getDateTimeOriginal().equals(metadata.getDateTimeOriginal().truncatedTo(ChronoUnit.SECONDS))) {
-        	return ValidationResult.DATETIME_ORIGINAL_INCONSISTENT;
+        	return new ArchiveFileInspection(file, ValidationResult.DATETIME_ORIGINAL_INCONSISTENT, mediaFileName, exifData, metadata);
         }
     	
-        if (ExifDataService.supports(mediaFileName.getType())) {
-        	ExifData exifData = exifDataService.readExifData(file);
-        	
+        if (exifData!=null) {
         	if (!metadata.getDateTimeOriginal().equals(exifData.getDateTimeOriginal())) {
-        		return ValidationResult.METADATA_INCONSISTENT;
+        		return new ArchiveFileInspection(file, ValidationResult.METADATA_INCONSISTENT, mediaFileName, exifData, metadata);
         	}
         	
         	String metadataDescription = StringUtils.trimToEmpty(metadata.getDescription());
         	String exifDataDescription = StringUtils.trimToEmpty(exifData.getDescription().orElse(""));
         	
         	if (!metadataDescription.equals(exifDataDescription)) {
-        		return ValidationResult.METADATA_INCONSISTENT;
+        		return new ArchiveFileInspection(file, ValidationResult.METADATA_INCONSISTENT, mediaFileName, exifData, metadata);
         	}
         }
 
         if(!mediaFileName.getSha1().equals(metadata.getSha1())) {
-        	return ValidationResult.HASHCODE_INCONSISTENT;
+        	return new ArchiveFileInspection(file, ValidationResult.HASHCODE_INCONSISTENT, mediaFileName, exifData, metadata);
         }
         
-    	return ValidationResult.OK;
+    	return new ArchiveFileInspection(file, ValidationResult.OK, mediaFileName, exifData, metadata);
+    }
+
+    /**
+     * Gets the JSON file holding the Biography metadata of an archive media file without EXIF support (e.g. a video).
+     * The metadata in the JSON file can change without the media file being modified.
+     * 
+     * @param file Biography media file, must not be {@code null}
+     * @return JSON metadata file (which may not exist), empty if the metadata is stored in the EXIF data
+     *         or the file name is not valid
+     */
+    public static Optional<File> metadataJsonFile(File file) {
+        if (!MediaFileName.isValid(file.getName())) {
+            return Optional.empty();
+        }
+        MediaFileName mediaFileName = MediaFileName.of(file.getName());
+        if (ExifDataService.supports(mediaFileName.getType())) {
+            return Optional.empty();
+        }
+        return Optional.of(getMetadataJsonFile(file, mediaFileName));
     }
 
-    private File getMetadataJsonFile(File file, MediaFileName mediaFileName) {
+    private static File getMetadataJsonFile(File file, MediaFileName mediaFileName) {
         return new File(file.getParent(),
                 String.format("b%s.json", mediaFileName.getSha1()));
     }
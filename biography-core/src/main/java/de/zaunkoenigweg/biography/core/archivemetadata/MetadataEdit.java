@@ -0,0 +1,47 @@
+package de.zaunkoenigweg.biography.core.archivemetadata;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+import de.zaunkoenigweg.biography.metadata.Album;
+import de.zaunkoenigweg.biography.metadata.BiographyMetadata;
+
+/**
+ * Change of the Biography metadata, that can be applied to many media files.
+ *
+ * @see ArchiveMetadataService#edit(java.io.File, MetadataEdit)
+ */
+public class MetadataEdit {
+
+    private String description;
+    private UnaryOperator<BiographyMetadata> change;
+
+    private MetadataEdit(String description, UnaryOperator<BiographyMetadata> change) {
+        this.description = description;
+        this.change = change;
+    }
+
+    public static MetadataEdit addAlbum(Album album) {
+        Set<Album> albums = Collections.singleton(album);
+        return new MetadataEdit(String.format("add album '%s'", album.getTitle()), metadata -> metadata.withMergedAlbums(albums));
+    }
+
+    public static MetadataEdit removeAlbum(Album album) {
+        Set<Album> albums = Collections.singleton(album);
+        return new MetadataEdit(String.format("remove album '%s'", album.getTitle()), metadata -> metadata.withReducedAlbums(albums));
+    }
+
+    public static MetadataEdit setDescription(String description) {
+        return new MetadataEdit(String.format("set description '%s'", description), metadata -> metadata.withDescription(description));
+    }
+
+    BiographyMetadata applyTo(BiographyMetadata metadata) {
+        return change.apply(metadata);
+    }
+
+    @Override
+    public String toString() {
+        return description;
+    }
+}
@@ -0,0 +1,269 @@
+package de.zaunkoenigweg.biography.core.archivemetadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import de.zaunkoenigweg.biography.core.archive.ArchiveEntry;
+import de.zaunkoenigweg.biography.core.archivemetadata.ArchiveValidationService.ValidationResult;
+
+/**
+ * Persistent results of the archive validation.
+ *
+ * The result of each media file is stored along with size and modification time of the file at validation time,
+ * as well as the modification time of its JSON metadata file, if it has one (see
+ * {@link ArchiveValidationService#metadataJsonFile(File)}). As long as the file and its metadata are unchanged,
+ * the stored result is reused, so a validation run only validates new and changed
+ * files. The results are kept in memory and written to the results file (JSON) at checkpoints: at most every
+ * {@value #CHECKPOINT_INTERVAL_SECONDS} seconds during a run, at its end and on shutdown. A run that has been
+ * interrupted resumes from the last checkpoint.
+ *
+ * The validation can be called concurrently.
+ */
+@Component
+public class ValidationResultStore implements DisposableBean {
+
+    private final static Log LOG = LogFactory.getLog(ValidationResultStore.class);
+
+    private static final Gson GSON = new Gson();
+
+    private static final long CHECKPOINT_INTERVAL_SECONDS = 30;
+
+    private ArchiveValidationService archiveValidationService;
+    private File validationResultsFile;
+
+    /**
+     * results per file name
+     */
+    private Map<String, StoredResult> results = new ConcurrentHashMap<>();
+
+    private volatile boolean dirty;
+    private volatile long lastCheckpoint = System.nanoTime();
+
+    public ValidationResultStore(ArchiveValidationService archiveValidationService, File validationResultsFile) {
+        this.archiveValidationService = archiveValidationService;
+        this.validationResultsFile = validationResultsFile;
+        load();
+        LOG.info("ValidationResultStore started.");
+        LOG.info(String.format("validationResultsFile=%s", this.validationResultsFile));
+        LOG.info(String.format("%d stored validation results.", results.size()));
+    }
+
+    /**
+     * Validates the archive entry, unless there is a stored result for the unchanged file.
+     *
+     * @param entry archive entry
+     * @param force validate even if the file is unchanged
+     * @return stored or new result
+     */
+    public StoredResult validate(ArchiveEntry entry, boolean force) {
+        if (!force && isUpToDate(entry)) {
+            return results.get(entry.getFileName());
+        }
+        // read before the validation, a change during the validation must lead to a new validation
+        Long metadataJsonFileLastModified = metadataJsonFileLastModified(entry);
+        ValidationResult validationResult = archiveValidationService.validate(entry.toFile());
+        StoredResult result = new StoredResult(entry, metadataJsonFileLastModified, validationResult, System.currentTimeMillis());
+        results.put(entry.getFileName(), result);
+        dirty = true;
+        if (isCheckpointDue()) {
+            synchronized (this) {
+                // another worker may just have written the checkpoint
+                if (isCheckpointDue()) {
+                    checkpoint();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param entry archive entry
+     * @return Is there a stored result for the unchanged file?
+     */
+    public boolean isUpToDate(ArchiveEntry entry) {
+        StoredResult result = results.get(entry.getFileName());
+        return result != null && result.isValidFor(entry, metadataJsonFileLastModified(entry));
+    }
+
+    /**
+     * @return modification time of the JSON metadata file of the entry, {@code null} if it has none or it does not exist
+     */
+    private static Long metadataJsonFileLastModified(ArchiveEntry entry) {
+        return ArchiveValidationService.metadataJsonFile(entry.toFile())
+                .filter(File::isFile)
+                .map(File::lastModified)
+                .orElse(null);
+    }
+
+    /**
+     * Removes the results of files that are no longer in the archive.
+     *
+     * @param fileNames names of all media files in the archive
+     * @return number of removed results
+     */
+    public int retainAll(Set<String> fileNames) {
+        int size = results.size();
+        results.keySet().retainAll(fileNames);
+        int removed = size - results.size();
+        if (removed > 0) {
+            dirty = true;
+        }
+        return removed;
+    }
+
+    /**
+     * @return number of stored results per validation result, all validation results are contained.
+     */
+    public Map<ValidationResult, Long> countByResult() {
+        Map<ValidationResult, Long> counts = new EnumMap<>(ValidationResult.class);
+        Arrays.stream(ValidationResult.values()).forEach(result -> counts.put(result, 0L));
+        results.values().forEach(result -> counts.merge(result.getResult(), 1L, Long::sum));
+        return counts;
+    }
+
+    /**
+     * @return stored results of the files that are not valid, ordered by path
+     */
+    public List<StoredResult> failures() {
+        return results.values().stream()
+                .filter(result -> result.getResult() != ValidationResult.OK)
+                .sorted(Comparator.comparing(StoredResult::getPath))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Writes the results to the results file, if there are unsaved results.
+     */
+    public synchronized void checkpoint() {
+        lastCheckpoint = System.nanoTime();
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        List<StoredResult> snapshot = new ArrayList<>(results.values());
+        try {
+            FileUtils.forceMkdir(validationResultsFile.getAbsoluteFile().getParentFile());
+            File tempFile = Files.createTempFile(validationResultsFile.getAbsoluteFile().getParentFile().toPath(), validationResultsFile.getName(), ".tmp").toFile();
+            try (Writer writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+                GSON.toJson(snapshot, writer);
+            }
+            Files.move(tempFile.toPath(), validationResultsFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOG.debug(String.format("Checkpoint: %d validation results written.", snapshot.size()));
+        } catch (IOException e) {
+            dirty = true;
+            LOG.error(String.format("Validation results could not be written to %s.", validationResultsFile.getAbsolutePath()), e);
+        }
+    }
+
+    private boolean isCheckpointDue() {
+        return System.nanoTime() - lastCheckpoint >= TimeUnit.SECONDS.toNanos(CHECKPOINT_INTERVAL_SECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        checkpoint();
+    }
+
+    private void load() {
+        if (!validationResultsFile.exists()) {
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(validationResultsFile.toPath(), StandardCharsets.UTF_8)) {
+            StoredResult[] storedResults = GSON.fromJson(reader, StoredResult[].class);
+            if (storedResults != null) {
+                Arrays.stream(storedResults)
+                        // incomplete results (e.g. from a hand-edited file) are validated again
+                        .filter(result -> result.fileName != null && result.path != null && result.result != null)
+                        .forEach(result -> results.put(result.fileName, result));
+            }
+        } catch (IOException | JsonParseException e) {
+            // the results are revalidated with the next run
+            LOG.warn(String.format("Validation results could not be read from %s.", validationResultsFile.getAbsolutePath()), e);
+        }
+    }
+
+    /**
+     * Validation result of one media file, as stored in the results file.
+     */
+    public static class StoredResult {
+
+        private String fileName;
+        private String path;
+        private long size;
+        private long lastModified;
+        private Long metadataJsonFileLastModified;
+        private ValidationResult result;
+        private long validatedAt;
+
+        /**
+         * This constructor is just used to create a stored result through Gson.
+         */
+        @SuppressWarnings("unused")
+        private StoredResult() {
+        }
+
+        private StoredResult(ArchiveEntry entry, Long metadataJsonFileLastModified, ValidationResult result, long validatedAt) {
+            this.fileName = entry.getFileName();
+            this.path = entry.getPath().toString();
+            this.size = entry.getSize();
+            this.lastModified = entry.getLastModified();
+            this.metadataJsonFileLastModified = metadataJsonFileLastModified;
+            this.result = result;
+            this.validatedAt = validatedAt;
+        }
+
+        private boolean isValidFor(ArchiveEntry entry, Long metadataJsonFileLastModified) {
+            return size == entry.getSize() && lastModified == entry.getLastModified() && path.equals(entry.getPath().toString())
+                    && Objects.equals(this.metadataJsonFileLastModified, metadataJsonFileLastModified);
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return modification time of the file at validation time
+         */
+        public Instant getLastModified() {
+            return Instant.ofEpochMilli(lastModified);
+        }
+
+        public ValidationResult getResult() {
+            return result;
+        }
+
+        public Instant getValidatedAt() {
+            return Instant.ofEpochMilli(validatedAt);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package de.zaunkoenigweg.biography.core.index;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.zaunkoenigweg.biography.core.MediaFileName;
+
+/**
+ * Number of media files per day, held in memory for the calendar navigation.
+ *
+ * The counts of a year are a primitive array indexed by day of year, so the counts of years, months and days are
+ * computed without any query. The histogram is read from the index with a single facet query over all days. When the
+ * index has been changed, only the months of the changed media files are counted again. Only valid media files are
+ * indexed, so the datetime/original of a changed media file can be taken from its file name, even if it has been
+ * deleted.
+ *
+ * Reads do not lock, changes replace the arrays of the affected years. Each change increments the version of the
+ * histogram, which identifies its state. Dropping the histogram is a change as well, the counts read afterwards may
+ * differ from the dropped ones.
+ */
+class CalendarHistogram {
+
+    private final static Log LOG = LogFactory.getLog(CalendarHistogram.class);
+
+    private static final int MAX_DAYS_PER_YEAR = 366;
+
+    private IndexBackend indexBackend;
+
+    /**
+     * counts per year, indexed by day of year - 1, {@code null} if the histogram must be read from the index
+     */
+    private volatile NavigableMap<Integer, int[]> countsByYear;
+
+    /**
+     * distinguishes the versions of different runs
+     */
+    private long epoch = System.currentTimeMillis();
+    private AtomicLong version = new AtomicLong();
+
+    CalendarHistogram(IndexBackend indexBackend) {
+        this.indexBackend = indexBackend;
+    }
+
+    /**
+     * Gets the version of the histogram. A version that has been read before the counts is never newer than the counts.
+     * 
+     * @return version, unique across runs
+     */
+    String getVersion() {
+        return String.format("%x-%d", epoch, version.get());
+    }
+
+    Stream<Pair<Year, Long>> getYearCounts() {
+        return counts().entrySet().stream()
+                .map(year -> Pair.of(Year.of(year.getKey()), sum(year.getValue(), 0, MAX_DAYS_PER_YEAR)))
+                .filter(count -> count.getRight() > 0);
+    }
+
+    Stream<Pair<YearMonth, Long>> getMonthCounts(Year year) {
+        int[] days = counts().get(year.getValue());
+        if (days == null) {
+            return Stream.empty();
+        }
+        return IntStream.rangeClosed(1, 12)
+                .mapToObj(year::atMonth)
+                .map(yearMonth -> Pair.of(yearMonth, sum(days, firstDayIndex(yearMonth), lastDayIndex(yearMonth) + 1)))
+                .filter(count -> count.getRight() > 0);
+    }
+
+    Stream<Pair<LocalDate, Long>> getDayCounts(YearMonth yearMonth) {
+        int[] days = counts().get(yearMonth.getYear());
+        if (days == null) {
+            return Stream.empty();
+        }
+        return IntStream.rangeClosed(1, yearMonth.lengthOfMonth())
+                .mapToObj(yearMonth::atDay)
+                .filter(date -> days[date.getDayOfYear() - 1] > 0)
+                .map(date -> Pair.of(date, (long) days[date.getDayOfYear() - 1]));
+    }
+
+    Optional<YearMonth> getMostRecentYearMonth() {
+        for (Map.Entry<Integer, int[]> year : counts().descendingMap().entrySet()) {
+            int[] days = year.getValue();
+            for (int dayIndex = MAX_DAYS_PER_YEAR - 1; dayIndex >= 0; dayIndex--) {
+                if (days[dayIndex] > 0) {
+                    return Optional.of(YearMonth.from(LocalDate.ofYearDay(year.getKey(), dayIndex + 1)));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Reads the complete histogram from the index.
+     */
+    synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        try {
+            NavigableMap<Integer, int[]> counts = new TreeMap<>();
+            indexBackend.countBy(Index.FIELD_DATE_LONG_POINT).forEach((date, count) -> {
+                LocalDate localDate = Index.longPointToLocalDate(date.toString());
+                counts.computeIfAbsent(localDate.getYear(), year -> new int[MAX_DAYS_PER_YEAR])[localDate.getDayOfYear() - 1] = count.intValue();
+            });
+            countsByYear = Collections.unmodifiableNavigableMap(counts);
+            version.incrementAndGet();
+            LOG.info(String.format("Calendar histogram of %d years read in %d ms.", counts.size(), System.currentTimeMillis() - start));
+        } catch (IOException e) {
+            countsByYear = null;
+            version.incrementAndGet();
+            LOG.error("Calendar histogram could not be read from the index.", e);
+        }
+    }
+
+    /**
+     * Counts the months of the given media files again. Must be called after changes of these media files have been made
+     * visible in the index.
+     *
+     * @param fileNames names of added, changed or deleted media files
+     */
+    synchronized void update(Collection<String> fileNames) {
+        NavigableMap<Integer, int[]> current = countsByYear;
+        if (current == null) {
+            // is read completely on next use
+            return;
+        }
+        SortedSet<YearMonth> months = new TreeSet<>();
+        fileNames.stream()
+                .filter(MediaFileName::isValid)
+                .map(fileName -> YearMonth.from(MediaFileName.of(fileName).getDateTimeOriginal()))
+                .forEach(months::add);
+        if (months.isEmpty()) {
+            return;
+        }
+        try {
+            NavigableMap<Integer, int[]> counts = new TreeMap<>(current);
+            Set<Integer> copiedYears = new HashSet<>();
+            for (YearMonth month : months) {
+                int[] days = counts.get(month.getYear());
+                if (days == null) {
+                    days = new int[MAX_DAYS_PER_YEAR];
+                } else if (!copiedYears.contains(month.getYear())) {
+                    // the current arrays may be read concurrently
+                    days = days.clone();
+                }
+                copiedYears.add(month.getYear());
+                counts.put(month.getYear(), days);
+                for (int dayIndex = firstDayIndex(month); dayIndex <= lastDayIndex(month); dayIndex++) {
+                    days[dayIndex] = 0;
+                }
+                int[] daysOfMonth = days;
+                indexBackend.countBy(Index.FIELD_DATE_LONG_POINT, Index.FIELD_YEAR_MONTH_LONG_POINT, Long.parseLong(Index.yearMonthToLongPoint(month))).forEach((date, count) -> {
+                    daysOfMonth[Index.longPointToLocalDate(date.toString()).getDayOfYear() - 1] = count.intValue();
+                });
+            }
+            countsByYear = Collections.unmodifiableNavigableMap(counts);
+            version.incrementAndGet();
+        } catch (IOException e) {
+            countsByYear = null;
+            version.incrementAndGet();
+            LOG.error(String.format("Calendar histogram of %s could not be updated, it is read again on next use.", months), e);
+        }
+    }
+
+    /**
+     * Drops the histogram, it is read from the index on next use.
+     */
+    synchronized void invalidate() {
+        countsByYear = null;
+        version.incrementAndGet();
+    }
+
+    private NavigableMap<Integer, int[]> counts() {
+        NavigableMap<Integer, int[]> counts = countsByYear;
+        if (counts == null) {
+            counts = readIfInvalid();
+        }
+        return counts != null ? counts : Collections.emptyNavigableMap();
+    }
+
+    private synchronized NavigableMap<Integer, int[]> readIfInvalid() {
+        // another reader may just have read the histogram
+        if (countsByYear == null) {
+            rebuild();
+        }
+        return countsByYear;
+    }
+
+    private static int firstDayIndex(YearMonth yearMonth) {
+        return yearMonth.atDay(1).getDayOfYear() - 1;
+    }
+
+    private static int lastDayIndex(YearMonth yearMonth) {
+        return yearMonth.atEndOfMonth().getDayOfYear() - 1;
+    }
+
+    private static long sum(int[] days, int from, int to) {
+        long sum = 0;
+        for (int dayIndex = from; dayIndex < to; dayIndex++) {
+            sum += days[dayIndex];
+        }
+        return sum;
+    }
+}
@@ -18,6 +18,7 @@ class Index {
     static final String FIELD_YEAR_MONTH_LONG_POINT = "yearMonthLongPoint";
     static final String FIELD_DATE_LONG_POINT = "dateLongPoint";
     static final String FIELD_DATETIME_LONG_POINT = "dateTimeLongPoint";
+    static final String FIELD_LAST_MODIFIED = "lastModified";
 
     static final DateTimeFormatter YEAR_MONTH_LONG_POINT_FORMATTER = DateTimeFormatter.ofPattern("yyyyMM");
     static final DateTimeFormatter LOCAL_DATE_LONG_POINT_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
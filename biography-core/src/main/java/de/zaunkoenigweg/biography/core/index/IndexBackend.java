@@ -0,0 +1,139 @@
+package de.zaunkoenigweg.biography.core.index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import de.zaunkoenigweg.biography.core.index.SearchService.QueryMode;
+
+/**
+ * Storage engine of the Biography index.
+ * 
+ * The fields of the index are defined in {@link Index} and correspond to the Solr schema in
+ * {@code biography-solr/conf/schema.xml}. Changes become visible for searches after {@link #commit()} or {@link #softCommit()}.
+ * 
+ * Implementations must be thread-safe.
+ */
+public interface IndexBackend extends Closeable {
+
+    /**
+     * Deletes all documents from the index.
+     */
+    void deleteAll() throws IOException;
+
+    /**
+     * Adds the given documents to the index, existing documents with the same file name are replaced.
+     */
+    void add(Collection<IndexDocument> documents) throws IOException;
+
+    /**
+     * Deletes the documents with the given file names from the index.
+     */
+    void delete(Collection<String> fileNames) throws IOException;
+
+    /**
+     * Gets the file names of all indexed media files together with their modification time when they were indexed.
+     * 
+     * @return modification time (milliseconds since the epoch, 0 if unknown) per file name
+     */
+    Map<String, Long> lastModifiedByFileName() throws IOException;
+
+    /**
+     * Makes all changes durable and visible for searches.
+     */
+    void commit() throws IOException;
+
+    /**
+     * Makes all changes visible for searches, but not necessarily durable. Much cheaper than {@link #commit()}.
+     */
+    void softCommit() throws IOException;
+
+    /**
+     * Finds media files whose description contains the given tokens.
+     * 
+     * @param tokens search tokens
+     * @param mode must the media files match any or all of the tokens?
+     * @param maxResults maximum number of results
+     * @return media files
+     */
+    List<MediaFile> findByDescription(List<String> tokens, QueryMode mode, int maxResults) throws IOException;
+
+    /**
+     * Finds media files of the given day, ordered by datetime/original and file name.
+     */
+    List<MediaFile> findByDate(LocalDate date, int maxResults) throws IOException;
+
+    /**
+     * Finds media files in the given album.
+     */
+    List<MediaFile> findByAlbum(String album, int maxResults) throws IOException;
+
+    /**
+     * Gets a page of the media files whose description contains the given tokens.
+     * 
+     * The pages are ordered by datetime/original and file name, so they are stable while the index is changed.
+     * 
+     * @param tokens search tokens
+     * @param mode must the media files match any or all of the tokens?
+     * @param cursor cursor of the page, {@code null} for the first page
+     * @param pageSize maximum number of media files in the page
+     * @return page
+     * @throws IllegalArgumentException if the cursor is not valid
+     */
+    MediaFilePage findByDescription(List<String> tokens, QueryMode mode, String cursor, int pageSize) throws IOException;
+
+    /**
+     * Gets a page of the media files of the given day.
+     * 
+     * @see #findByDescription(List, QueryMode, String, int)
+     */
+    MediaFilePage findByDate(LocalDate date, String cursor, int pageSize) throws IOException;
+
+    /**
+     * Gets a page of the media files in the given album.
+     * 
+     * @see #findByDescription(List, QueryMode, String, int)
+     */
+    MediaFilePage findByAlbum(String album, String cursor, int pageSize) throws IOException;
+
+    /**
+     * Gets the media files next to the given position of the timeline of all media files, which is ordered by
+     * datetime/original and file name. The media files are found by a range on the datetime/original and sorted
+     * by doc values, so the costs do not depend on the position.
+     * 
+     * @param key position, which is not contained in the result
+     * @param forward media files after the position, otherwise before it
+     * @param limit maximum number of media files
+     * @return media files adjacent to the position, ordered by datetime/original and file name (also if not forward)
+     */
+    List<MediaFile> findTimeline(TimelineKey key, boolean forward, int limit) throws IOException;
+
+    /**
+     * Counts the media files per value of the given numeric (long point) field.
+     * 
+     * @param facetField numeric field to be counted
+     * @return counts per field value, values without media files are omitted.
+     */
+    Map<Long, Long> countBy(String facetField) throws IOException;
+
+    /**
+     * Counts the media files per value of the given numeric (long point) field,
+     * considering only media files where {@code filterField} has the value {@code filterValue}.
+     * 
+     * @param facetField numeric field to be counted
+     * @param filterField numeric field to filter by
+     * @param filterValue value of filter field
+     * @return counts per field value, values without media files are omitted.
+     */
+    Map<Long, Long> countBy(String facetField, String filterField, long filterValue) throws IOException;
+
+    /**
+     * Gets all albums with size and date range.
+     * 
+     * @return albums in no particular order
+     */
+    List<Album> albums() throws IOException;
+}
@@ -0,0 +1,66 @@
+package de.zaunkoenigweg.biography.core.index;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Biography media file as it is written into the index, independent of the index backend.
+ */
+public class IndexDocument {
+
+    private String fileName;
+    private String description;
+    private Set<String> albums;
+    private LocalDateTime dateTimeOriginal;
+    private long lastModified;
+
+    IndexDocument(String fileName, String description, Set<String> albums, LocalDateTime dateTimeOriginal, long lastModified) {
+        this.fileName = Objects.requireNonNull(fileName);
+        this.description = description;
+        this.albums = albums != null ? albums : Collections.emptySet();
+        this.dateTimeOriginal = Objects.requireNonNull(dateTimeOriginal);
+        this.lastModified = lastModified;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Set<String> getAlbums() {
+        return albums;
+    }
+
+    public LocalDateTime getDateTimeOriginal() {
+        return dateTimeOriginal;
+    }
+
+    /**
+     * @return modification time of the media file (or its JSON metadata file, if it is later) when it was indexed,
+     *         in milliseconds since the epoch.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    long getYearLongPoint() {
+        return dateTimeOriginal.getYear();
+    }
+
+    long getYearMonthLongPoint() {
+        return dateTimeOriginal.getYear() * 100 + dateTimeOriginal.getMonthValue();
+    }
+
+    long getDateLongPoint() {
+        return Long.valueOf(Index.localDateToLongPoint(dateTimeOriginal.toLocalDate()));
+    }
+
+    long getDateTimeLongPoint() {
+        return Long.valueOf(Index.localDateTimeToLongPoint(dateTimeOriginal));
+    }
+}
@@ -0,0 +1,309 @@
+package de.zaunkoenigweg.biography.core.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import de.zaunkoenigweg.biography.core.archivemetadata.ArchiveFileInspection;
+import de.zaunkoenigweg.biography.core.archivemetadata.ArchiveValidationService;
+
+/**
+ * Collects the updates of single media files (descriptions, albums) and writes them to the index in the background.
+ *
+ * Updates of the same media file are coalesced, the file is read only once when the queue is flushed.
+ * The queue is flushed every {@code indexFlushInterval} milliseconds with a soft commit, which makes the changes
+ * visible for searches, but not durable. The changes are made durable by a hard commit at most every
+ * {@code indexCommitInterval} milliseconds and on shutdown. Until then, a crash loses the index changes
+ * (not the metadata in the archive), they are restored by the next index synchronization.
+ *
+ * Callers that need to read their own writes can wait until their update is visible, which triggers an immediate flush.
+ */
+@Component
+public class IndexUpdateQueue implements DisposableBean {
+
+    private final static Log LOG = LogFactory.getLog(IndexUpdateQueue.class);
+
+    private IndexBackend indexBackend;
+    private SearchService searchService;
+    private ArchiveValidationService archiveValidationService;
+    private long commitIntervalNanos;
+
+    private ScheduledThreadPoolExecutor flusher;
+
+    /**
+     * pending updates per file name in order of arrival, guarded by {@code this}
+     */
+    private Map<String, PendingUpdate> pendingUpdates = new LinkedHashMap<>();
+
+    /**
+     * only accessed by the flusher thread
+     */
+    private boolean uncommittedChanges;
+    private long lastCommit = System.nanoTime();
+
+    private AtomicLong enqueued = new AtomicLong();
+    private AtomicLong coalesced = new AtomicLong();
+    private AtomicLong flushes = new AtomicLong();
+    private AtomicLong failedFlushes = new AtomicLong();
+    private AtomicLong flushedDocuments = new AtomicLong();
+    private AtomicLong flushNanos = new AtomicLong();
+    private AtomicLong maxFlushNanos = new AtomicLong();
+    private AtomicLong commits = new AtomicLong();
+
+    public IndexUpdateQueue(IndexBackend indexBackend, SearchService searchService, ArchiveValidationService archiveValidationService, Integer indexFlushInterval, Integer indexCommitInterval) {
+        if (indexFlushInterval == null || indexFlushInterval < 1) {
+            throw new IllegalArgumentException(String.format("Invalid index flush interval: %s", indexFlushInterval));
+        }
+        if (indexCommitInterval == null || indexCommitInterval < indexFlushInterval) {
+            throw new IllegalArgumentException(String.format("Invalid index commit interval: %s", indexCommitInterval));
+        }
+        this.indexBackend = indexBackend;
+        this.searchService = searchService;
+        this.archiveValidationService = archiveValidationService;
+        this.commitIntervalNanos = TimeUnit.MILLISECONDS.toNanos(indexCommitInterval);
+        this.flusher = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "index-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flush, indexFlushInterval, indexFlushInterval, TimeUnit.MILLISECONDS);
+        LOG.info("IndexUpdateQueue started.");
+        LOG.info(String.format("indexFlushInterval=%d", indexFlushInterval));
+        LOG.info(String.format("indexCommitInterval=%d", indexCommitInterval));
+    }
+
+    /**
+     * Queues the update of the given media file.
+     *
+     * @param archiveFile media file in the archive
+     * @return completed as soon as the update is visible for searches
+     */
+    public CompletableFuture<Void> enqueue(File archiveFile) {
+        enqueued.incrementAndGet();
+        synchronized (this) {
+            PendingUpdate update = pendingUpdates.get(archiveFile.getName());
+            if (update != null) {
+                coalesced.incrementAndGet();
+                return update.visible;
+            }
+            update = new PendingUpdate(archiveFile);
+            pendingUpdates.put(archiveFile.getName(), update);
+            return update.visible;
+        }
+    }
+
+    /**
+     * Queues the update of the given media file and waits until it is visible for searches.
+     *
+     * @param archiveFile media file in the archive
+     * @param timeout max time to wait in milliseconds
+     * @return Is the update visible? {@code false} if the flush failed or took too long.
+     */
+    public boolean enqueueAndWait(File archiveFile, long timeout) {
+        CompletableFuture<Void> visible = enqueue(archiveFile);
+        flusher.execute(this::flush);
+        try {
+            visible.get(timeout, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            LOG.warn(String.format("Update of file '%s' is not visible yet.", archiveFile.getName()));
+            return false;
+        }
+    }
+
+    public Statistics getStatistics() {
+        int queueDepth;
+        synchronized (this) {
+            queueDepth = pendingUpdates.size();
+        }
+        return new Statistics(queueDepth, enqueued.get(), coalesced.get(), flushes.get(), failedFlushes.get(),
+                flushedDocuments.get(), flushNanos.get(), maxFlushNanos.get(), commits.get());
+    }
+
+    /**
+     * Flushes the pending updates and commits them.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(1, TimeUnit.MINUTES);
+        flush();
+        commit();
+        LOG.info("IndexUpdateQueue stopped.");
+    }
+
+    /**
+     * Writes the pending updates to the index and makes them visible. Runs in the flusher thread only
+     * (or after it has been stopped).
+     */
+    void flush() {
+
+        Map<String, PendingUpdate> updates;
+        synchronized (this) {
+            updates = pendingUpdates;
+            pendingUpdates = new LinkedHashMap<>();
+        }
+
+        if (!updates.isEmpty()) {
+            long start = System.nanoTime();
+            try {
+                writeAndSoftCommit(updates);
+                uncommittedChanges = true;
+                updates.values().forEach(update -> update.visible.complete(null));
+                flushedDocuments.addAndGet(updates.size());
+            } catch (IOException | RuntimeException e) {
+                failedFlushes.incrementAndGet();
+                LOG.error(String.format("%d updates could not be written to the index, they are retried.", updates.size()), e);
+                requeue(updates);
+            } finally {
+                long duration = System.nanoTime() - start;
+                flushes.incrementAndGet();
+                flushNanos.addAndGet(duration);
+                maxFlushNanos.accumulateAndGet(duration, Math::max);
+            }
+        }
+
+        if (uncommittedChanges && System.nanoTime() - lastCommit >= commitIntervalNanos) {
+            commit();
+        }
+    }
+
+    private void writeAndSoftCommit(Map<String, PendingUpdate> updates) throws IOException {
+        List<IndexDocument> documents = new ArrayList<>(updates.size());
+        List<String> invalidFiles = new ArrayList<>();
+        for (PendingUpdate update : updates.values()) {
+            ArchiveFileInspection inspection = archiveValidationService.inspect(update.archiveFile);
+            if (inspection.isValid()) {
+                documents.add(IndexingService.toIndexDocument(inspection));
+            } else {
+                LOG.warn(String.format("The file '%s' is not valid and is removed from the index.", update.archiveFile.getAbsolutePath()));
+                invalidFiles.add(update.archiveFile.getName());
+            }
+        }
+        if (!documents.isEmpty()) {
+            indexBackend.add(documents);
+        }
+        indexBackend.delete(invalidFiles);
+        indexBackend.softCommit();
+        searchService.indexChanged(updates.keySet());
+    }
+
+    /**
+     * Puts failed updates back into the queue, unless the file has been updated again in the meantime.
+     * The waiting callers are not notified, their updates become visible with a later flush (or they time out).
+     */
+    private synchronized void requeue(Map<String, PendingUpdate> updates) {
+        Map<String, PendingUpdate> requeued = new LinkedHashMap<>(updates);
+        pendingUpdates.forEach((fileName, update) -> {
+            PendingUpdate failed = requeued.remove(fileName);
+            if (failed != null) {
+                update.visible.thenRun(() -> failed.visible.complete(null));
+            }
+        });
+        requeued.putAll(pendingUpdates);
+        pendingUpdates = requeued;
+    }
+
+    private void commit() {
+        if (!uncommittedChanges) {
+            return;
+        }
+        try {
+            indexBackend.commit();
+            uncommittedChanges = false;
+            lastCommit = System.nanoTime();
+            commits.incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            LOG.error("Index changes could not be committed.", e);
+        }
+    }
+
+    private static class PendingUpdate {
+
+        private File archiveFile;
+        private CompletableFuture<Void> visible = new CompletableFuture<>();
+
+        private PendingUpdate(File archiveFile) {
+            this.archiveFile = archiveFile;
+        }
+    }
+
+    public static class Statistics {
+
+        private int queueDepth;
+        private long enqueued;
+        private long coalesced;
+        private long flushes;
+        private long failedFlushes;
+        private long flushedDocuments;
+        private long flushNanos;
+        private long maxFlushNanos;
+        private long commits;
+
+        private Statistics(int queueDepth, long enqueued, long coalesced, long flushes, long failedFlushes,
+                long flushedDocuments, long flushNanos, long maxFlushNanos, long commits) {
+            this.queueDepth = queueDepth;
+            this.enqueued = enqueued;
+            this.coalesced = coalesced;
+            this.flushes = flushes;
+            this.failedFlushes = failedFlushes;
+            this.flushedDocuments = flushedDocuments;
+            this.flushNanos = flushNanos;
+            this.maxFlushNanos = maxFlushNanos;
+            this.commits = commits;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public long getEnqueued() {
+            return enqueued;
+        }
+
+        public long getCoalesced() {
+            return coalesced;
+        }
+
+        public long getFlushes() {
+            return flushes;
+        }
+
+        public long getFailedFlushes() {
+            return failedFlushes;
+        }
+
+        public long getFlushedDocuments() {
+            return flushedDocuments;
+        }
+
+        public double getAverageFlushMillis() {
+            return flushes > 0 ? flushNanos / 1e6 / flushes : 0.0;
+        }
+
+        public double getMaxFlushMillis() {
+            return maxFlushNanos / 1e6;
+        }
+
+        public long getCommits() {
+            return commits;
+        }
+    }
+}
@@ -3,21 +3,31 @@ package de.zaunkoenigweg.biography.core.index;
 import java.io.File;
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.solr.client.solrj.SolrClient;
-import org.apache.solr.client.solrj.SolrServerException;
-import org.apache.solr.client.solrj.impl.HttpSolrClient;
-import org.apache.solr.client.solrj.response.UpdateResponse;
-import org.apache.solr.common.SolrInputDocument;
 import org.springframework.stereotype.Component;
 
 import de.zaunkoenigweg.biography.core.archive.Archive;
-import de.zaunkoenigweg.biography.core.archivemetadata.ArchiveMetadataService;
+import de.zaunkoenigweg.biography.core.archive.ArchiveEntry;
+import de.zaunkoenigweg.biography.core.archivemetadata.ArchiveFileInspection;
 import de.zaunkoenigweg.biography.core.archivemetadata.ArchiveValidationService;
 import de.zaunkoenigweg.biography.metadata.Album;
 import de.zaunkoenigweg.biography.metadata.BiographyMetadata;
@@ -30,110 +40,378 @@ public class IndexingService {
 
 	private final static Log LOG = LogFactory.getLog(IndexingService.class);
 
-    private String solrIndexUrl;
+	/**
+	 * Markers in the document queue during {@link #rebuildIndex(Consumer)}.
+	 */
+	private static final IndexDocument SKIPPED_DOCUMENT = new IndexDocument("", null, null, LocalDateTime.MIN, 0L);
+	private static final IndexDocument END_OF_DOCUMENTS = new IndexDocument("", null, null, LocalDateTime.MAX, 0L);
+
+	private static final int MAX_BATCH_ATTEMPTS = 3;
+
+    private IndexBackend indexBackend;
+    private SearchService searchService;
+    private int indexBatchSize;
     private Archive archive;
-	private ArchiveMetadataService archiveMetadataService;
 	private ArchiveValidationService archiveValidationService;
 
-	public IndexingService(String solrIndexUrl, Archive archive, ArchiveMetadataService archiveMetadataService, ArchiveValidationService archiveValidationService) {
-		this.solrIndexUrl = solrIndexUrl;
+	public IndexingService(IndexBackend indexBackend, SearchService searchService, Integer indexBatchSize, Archive archive, ArchiveValidationService archiveValidationService) {
+		if (indexBatchSize == null || indexBatchSize < 1) {
+			throw new IllegalArgumentException(String.format("Invalid index batch size: %s", indexBatchSize));
+		}
+		this.indexBackend = indexBackend;
+		this.searchService = searchService;
+		this.indexBatchSize = indexBatchSize;
 		this.archive = archive;
-		this.archiveMetadataService = archiveMetadataService;
 		this.archiveValidationService = archiveValidationService;
 		LOG.info("IndexingService started.");
-		LOG.info(String.format("solrIndexUrl=%s", this.solrIndexUrl));
+		LOG.info(String.format("indexBatchSize=%d", this.indexBatchSize));
 	}
 
 	/**
-	 * Maps archived media file to Solr document. The archive file must be valid
-	 * {@link ArchiveValidationService#isValid(File)}
+	 * Maps inspected archive media file to index document. The archive file must be valid
+	 * {@link ArchiveFileInspection#isValid()}
 	 * 
-	 * @param archiveFile
+	 * @param inspection
 	 * @return
 	 */
-	private final SolrInputDocument toSolrDocument(File archiveFile) {
+	static IndexDocument toIndexDocument(ArchiveFileInspection inspection) {
+
+		File archiveFile = inspection.getFile();
 
-		LOG.trace(String.format("Mapping file '%s' to JSON document.", archiveFile.getName()));
+		LOG.trace(String.format("Mapping file '%s' to index document.", archiveFile.getName()));
 
-		BiographyMetadata biographyMetadata = archiveMetadataService.getMetadata(archiveFile);
+		BiographyMetadata biographyMetadata = inspection.getMetadata();
 
 		Set<String> albumTitles = null;
 
 		albumTitles = biographyMetadata.getAlbums().stream().map(Album::getTitle).collect(Collectors.toSet());
 
-		LocalDateTime dateTime = biographyMetadata.getDateTimeOriginal();
-
-		SolrInputDocument document = new SolrInputDocument();
-		document.addField(Index.FIELD_ID, archiveFile.getName());
-		document.addField(Index.FIELD_DESCRIPTION, biographyMetadata.getDescription());
-		document.addField(Index.FIELD_ALBUMS, albumTitles);
-		document.addField(Index.FIELD_DATETIME_ORIGINAL, dateTime.toString());
-		document.addField(Index.FIELD_DATE_LONG_POINT, Long.valueOf(Index.localDateToLongPoint(dateTime.toLocalDate())));
-		document.addField(Index.FIELD_DATETIME_LONG_POINT, Long.valueOf(Index.localDateTimeToLongPoint(dateTime)));
-		document.addField(Index.FIELD_YEAR_LONG_POINT, dateTime.getYear());
-		document.addField(Index.FIELD_YEAR_MONTH_LONG_POINT, dateTime.getYear() * 100 + dateTime.getMonthValue());
-		return document;
+		return new IndexDocument(archiveFile.getName(), biographyMetadata.getDescription(), albumTitles, biographyMetadata.getDateTimeOriginal(), lastModified(archiveFile, archiveFile.lastModified()));
 	};
+
+	/**
+	 * Gets the modification time that is stored in the index for an archive file:
+	 * The later modification time of the media file and its JSON metadata file, if it has one.
+	 * The metadata of a video can be edited without touching the video itself.
+	 * 
+	 * @param archiveFile archive media file
+	 * @param fileLastModified modification time of the media file itself
+	 * @return modification time of the media file including its metadata
+	 */
+	static long lastModified(File archiveFile, long fileLastModified) {
+		return ArchiveValidationService.metadataJsonFile(archiveFile)
+				.map(metadataJsonFile -> Math.max(fileLastModified, metadataJsonFile.lastModified()))
+				.orElse(fileLastModified);
+	}
 	
 
 	/**
-	 * Creates an index of all Media Files
+	 * Creates an index of all Media Files.
+	 * 
+	 * The archive is streamed folder by folder. The media files are validated and mapped to index documents
+	 * in parallel, the documents are written to the index backend in batches of {@code indexBatchSize} documents.
+	 * The number of documents in flight is bounded, so the memory consumption does not depend on the size
+	 * of the archive. A failed batch is retried {@value #MAX_BATCH_ATTEMPTS} times at most. The index is
+	 * committed once at the very end.
+	 * 
+	 * @param console console output stream
+	 */
+	public void rebuildIndex(Consumer<String> console) {
+
+		try {
+
+			console.accept(String.format("%d media files in archive.", archive.count()));
+
+			indexBackend.deleteAll();
+
+			RebuildStatistics result = indexFiles(archive.mediaFileStream(), fileName -> {}, console);
+
+			indexBackend.commit();
+			searchService.indexChanged();
+
+			String summary = String.format("Indexed files #: %d, skipped files #: %d, failed files #: %d", result.indexed, result.skipped, result.failed);
+			LOG.info(summary);
+			console.accept(summary);
+
+		} catch (IOException | InterruptedException | ExecutionException e) {
+			LOG.error("Index could not be rebuilt.", e);
+			console.accept(String.format("Index could not be rebuilt: %s", e.getMessage()));
+		}
+	}
+
+	/**
+	 * Synchronizes the index with the archive incrementally.
+	 * 
+	 * The archive is compared to the index by file name and modification time of the media files,
+	 * including their JSON metadata files (see {@link #lastModified(File, long)}).
+	 * New files are added, changed files are re-indexed and files that no longer exist (or are no longer valid)
+	 * are removed from the index. Unchanged files are not read at all. In contrast to {@link #rebuildIndex(Consumer)}
+	 * the index is not cleared, so it can be queried during the whole synchronization.
+	 * 
+	 * @param console console output stream
+	 * @return synchronization statistics, {@code null} if the synchronization failed.
 	 */
-	public void rebuildIndex() {
+	public SyncStatistics synchronizeIndex(Consumer<String> console) {
 
 		try {
 
-			SolrClient solr = new HttpSolrClient.Builder(solrIndexUrl).build();
+			Map<String, Long> indexedFiles = indexBackend.lastModifiedByFileName();
+			console.accept(String.format("%d files in index.", indexedFiles.size()));
+
+			SyncStatistics statistics = new SyncStatistics();
+			Set<String> updatedFiles = ConcurrentHashMap.newKeySet();
+			Set<String> filesToBeDeleted = ConcurrentHashMap.newKeySet();
+
+			Stream<File> changedFiles = archive.entries().filter(entry -> {
+				Long indexedLastModified = indexedFiles.remove(entry.getFileName());
+				if (indexedLastModified == null) {
+					statistics.added++;
+					return true;
+				}
+				if (indexedLastModified.longValue() != lastModified(entry.toFile(), entry.getLastModified())) {
+					statistics.updated++;
+					updatedFiles.add(entry.getFileName());
+					return true;
+				}
+				statistics.unchanged++;
+				return false;
+			}).map(ArchiveEntry::toFile);
+
+			// changed files that are no longer valid must be removed from the index
+			RebuildStatistics result = indexFiles(changedFiles, fileName -> {
+				if (updatedFiles.contains(fileName)) {
+					filesToBeDeleted.add(fileName);
+				}
+			}, console);
+
+			filesToBeDeleted.addAll(indexedFiles.keySet());
+			indexBackend.delete(filesToBeDeleted);
+			statistics.deleted = filesToBeDeleted.size();
+			statistics.skipped = result.skipped;
+			statistics.failed = result.failed;
+
+			indexBackend.commit();
+			searchService.indexChanged();
+
+			LOG.info(statistics);
+			console.accept(statistics.toString());
+			return statistics;
+
+		} catch (IOException | InterruptedException | ExecutionException e) {
+			LOG.error("Index could not be synchronized.", e);
+			console.accept(String.format("Index could not be synchronized: %s", e.getMessage()));
+			return null;
+		}
+	}
+
+	/**
+	 * Validates and maps the given files in parallel and writes them to the index in batches.
+	 * The changes are not committed.
+	 * 
+	 * @param files files to be indexed
+	 * @param skippedFiles is called with the name of each file that is not valid and therefore skipped
+	 * @param console console output stream
+	 * @return statistics
+	 */
+	private RebuildStatistics indexFiles(Stream<File> files, Consumer<String> skippedFiles, Consumer<String> console) throws InterruptedException, ExecutionException {
+
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		BlockingQueue<IndexDocument> documents = new ArrayBlockingQueue<>(2 * indexBatchSize);
+		ThreadPoolExecutor mappers = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(2 * parallelism), new ThreadPoolExecutor.CallerRunsPolicy());
+		ExecutorService sender = Executors.newSingleThreadExecutor();
+
+		Future<RebuildStatistics> statistics = sender.submit(() -> sendInBatches(documents, console));
+
+		try {
+			files.forEach(file -> mappers.execute(() -> {
+				// every file must be accounted for, even if it cannot be read at all
+				IndexDocument document = SKIPPED_DOCUMENT;
+				try {
+					ArchiveFileInspection inspection = archiveValidationService.inspect(file);
+					if (inspection.isValid()) {
+						document = toIndexDocument(inspection);
+					} else {
+						console.accept(String.format("File '%s' is not valid and is skipped.", file.getName()));
+						skippedFiles.accept(file.getName());
+					}
+				} catch (RuntimeException e) {
+					LOG.error(String.format("File '%s' could not be mapped to an index document.", file.getAbsolutePath()), e);
+					console.accept(String.format("ERROR: File '%s' could not be read and is skipped: %s", file.getName(), e.getMessage()));
+					skippedFiles.accept(file.getName());
+				} finally {
+					putUninterruptibly(documents, document);
+				}
+			}));
+		} finally {
+			mappers.shutdown();
+			awaitUninterruptibly(mappers);
+			putUninterruptibly(documents, END_OF_DOCUMENTS);
+			sender.shutdown();
+		}
 
-			UpdateResponse deleteByQuery = solr.deleteByQuery("*:*");
-			LOG.info(String.format("Deleted all rows in %s -> Status %d", solrIndexUrl,
-					deleteByQuery.getStatus()));
+		return statistics.get();
+	}
 
-			List<File> mediaFiles = archive.mediaFiles();
+	/**
+	 * Takes the mapped documents from the queue and writes them to the index in batches until the end marker is reached.
+	 */
+	private RebuildStatistics sendInBatches(BlockingQueue<IndexDocument> documents, Consumer<String> console) throws InterruptedException {
+		RebuildStatistics statistics = new RebuildStatistics();
+		List<IndexDocument> batch = new ArrayList<>(indexBatchSize);
+		IndexDocument document;
+		while ((document = documents.take()) != END_OF_DOCUMENTS) {
+			if (document == SKIPPED_DOCUMENT) {
+				statistics.skipped++;
+				continue;
+			}
+			batch.add(document);
+			if (batch.size() == indexBatchSize) {
+				sendBatch(batch, statistics, console);
+				batch = new ArrayList<>(indexBatchSize);
+			}
+		}
+		if (!batch.isEmpty()) {
+			sendBatch(batch, statistics, console);
+		}
+		return statistics;
+	}
 
-			List<SolrInputDocument> documents = mediaFiles.stream().filter(archiveValidationService::isValid).map(this::toSolrDocument).collect(Collectors.toList());
-			
+	private void sendBatch(List<IndexDocument> batch, RebuildStatistics statistics, Consumer<String> console) throws InterruptedException {
+		for (int attempt = 1; attempt <= MAX_BATCH_ATTEMPTS; attempt++) {
 			try {
-				UpdateResponse response = solr.add(documents);
-				LOG.info(response);
-			} catch (IOException | SolrServerException e) {
-				LOG.error("Document could not be written to Solr.");
-				LOG.error(e);
+				indexBackend.add(batch);
+				statistics.indexed += batch.size();
+				console.accept(String.format("%d files indexed.", statistics.indexed));
+				return;
+			} catch (IOException | RuntimeException e) {
+				LOG.warn(String.format("Batch of %d documents could not be written to the index (attempt %d of %d).", batch.size(), attempt, MAX_BATCH_ATTEMPTS), e);
+				if (attempt < MAX_BATCH_ATTEMPTS) {
+					Thread.sleep(attempt * 1000L);
+				}
 			}
-			
+		}
+		LOG.error(String.format("Batch of %d documents could not be written to the index, giving up.", batch.size()));
+		console.accept(String.format("ERROR: %d files could not be indexed.", batch.size()));
+		statistics.failed += batch.size();
+	}
 
-			solr.commit();
+	private static <T> void putUninterruptibly(BlockingQueue<T> queue, T element) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					queue.put(element);
+					return;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
 
-		} catch (SolrServerException | IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+	private static void awaitUninterruptibly(ExecutorService executorService) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+					return;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
 		}
 	}
 
-    /**
-     * Re-indexes the given media file.
-     */
-    public void reIndex(File archiveFile) {
+	/**
+	 * Counters of a rebuild run, only written by the sending thread.
+	 */
+	private static class RebuildStatistics {
+		private int indexed;
+		private int skipped;
+		private int failed;
+	}
 
-        try {
+	/**
+	 * Result of {@link IndexingService#synchronizeIndex(Consumer)}.
+	 */
+	public static class SyncStatistics {
+		private int added;
+		private int updated;
+		private int deleted;
+		private int unchanged;
+		private int skipped;
+		private int failed;
+
+		public int getAdded() {
+			return added;
+		}
+
+		public int getUpdated() {
+			return updated;
+		}
+
+		public int getDeleted() {
+			return deleted;
+		}
 
-            SolrClient solr = new HttpSolrClient.Builder(solrIndexUrl).build();
+		public int getUnchanged() {
+			return unchanged;
+		}
+
+		public int getSkipped() {
+			return skipped;
+		}
 
-            SolrInputDocument solrDocument = toSolrDocument(archiveFile);
-            
-            try {
-            	UpdateResponse response = solr.add(solrDocument);
-            	LOG.info(response);
-            } catch (IOException | SolrServerException e) {
-            	LOG.error("Document could not be written to Solr.");
-            	LOG.error(e);
+		public int getFailed() {
+			return failed;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Added files #: %d, updated files #: %d, deleted files #: %d, unchanged files #: %d, skipped files #: %d, failed files #: %d",
+					added, updated, deleted, unchanged, skipped, failed);
+		}
+	}
+
+    /**
+     * Re-indexes the given media files with a single commit. Files that are not valid are skipped.
+     * 
+     * @return number of indexed files, 0 if the files could not be written to the index.
+     */
+    public int reIndex(Collection<File> archiveFiles) {
+
+        List<IndexDocument> documents = new ArrayList<>(archiveFiles.size());
+        for (File archiveFile : archiveFiles) {
+            ArchiveFileInspection inspection = archiveValidationService.inspect(archiveFile);
+            if (inspection.isValid()) {
+                documents.add(toIndexDocument(inspection));
+            } else {
+                LOG.warn(String.format("The file '%s' is not valid and is not indexed.", archiveFile.getAbsolutePath()));
             }
+        }
 
-            solr.commit();
+        if (documents.isEmpty()) {
+            return 0;
+        }
 
-        } catch (SolrServerException | IOException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+        try {
+            indexBackend.add(documents);
+            indexBackend.commit();
+            searchService.indexChanged(documents.stream().map(IndexDocument::getFileName).collect(Collectors.toList()));
+            return documents.size();
+        } catch (IOException e) {
+            LOG.error(String.format("%d documents could not be written to the index.", documents.size()), e);
+            return 0;
         }
     }
 }
@@ -0,0 +1,450 @@
+package de.zaunkoenigweg.biography.core.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.classic.ParseException;
+import org.apache.lucene.queryparser.classic.QueryParser;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+import de.zaunkoenigweg.biography.core.index.SearchService.QueryMode;
+
+/**
+ * Index backend using an embedded Lucene index.
+ * 
+ * The index is stored in the given folder and uses the same fields as the Solr schema:
+ * Long points with doc values for the date fields, a multi-valued string field with sorted set doc values
+ * for the albums. Facets are counted directly from the doc values. Searches use near-real-time readers
+ * provided by a {@link SearcherManager}.
+ */
+public class LuceneIndexBackend implements IndexBackend {
+
+    private final static Log LOG = LogFactory.getLog(LuceneIndexBackend.class);
+
+    private static final Sort PAGE_SORT = new Sort(
+            new SortField(Index.FIELD_DATETIME_LONG_POINT, SortField.Type.LONG),
+            new SortField(Index.FIELD_ID, SortField.Type.STRING));
+
+    private static final Sort REVERSE_PAGE_SORT = new Sort(
+            new SortField(Index.FIELD_DATETIME_LONG_POINT, SortField.Type.LONG, true),
+            new SortField(Index.FIELD_ID, SortField.Type.STRING, true));
+
+    private Directory directory;
+    private Analyzer analyzer;
+    private IndexWriter indexWriter;
+    private SearcherManager searcherManager;
+    private boolean closed;
+
+    public LuceneIndexBackend(File indexFolder) throws IOException {
+        Objects.requireNonNull(indexFolder, "The index folder must not be null.");
+        this.directory = FSDirectory.open(indexFolder.toPath());
+        this.analyzer = new StandardAnalyzer();
+        this.indexWriter = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+        this.searcherManager = new SearcherManager(indexWriter, null);
+        LOG.info("LuceneIndexBackend started.");
+        LOG.info(String.format("indexFolder=%s", indexFolder));
+    }
+
+    @Override
+    public void deleteAll() throws IOException {
+        indexWriter.deleteAll();
+        LOG.info("Deleted all documents.");
+    }
+
+    @Override
+    public void add(Collection<IndexDocument> documents) throws IOException {
+        for (IndexDocument document : documents) {
+            indexWriter.updateDocument(new Term(Index.FIELD_ID, document.getFileName()), toLuceneDocument(document));
+        }
+    }
+
+    @Override
+    public void delete(Collection<String> fileNames) throws IOException {
+        for (String fileName : fileNames) {
+            indexWriter.deleteDocuments(new Term(Index.FIELD_ID, fileName));
+        }
+    }
+
+    @Override
+    public Map<String, Long> lastModifiedByFileName() throws IOException {
+        Map<String, Long> lastModifiedByFileName = new HashMap<>();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            for (LeafReaderContext context : searcher.getIndexReader().leaves()) {
+                SortedDocValues fileNames = DocValues.getSorted(context.reader(), Index.FIELD_ID);
+                NumericDocValues lastModified = DocValues.getNumeric(context.reader(), Index.FIELD_LAST_MODIFIED);
+                Bits liveDocs = context.reader().getLiveDocs();
+                for (int doc = 0; doc < context.reader().maxDoc(); doc++) {
+                    if (liveDocs == null || liveDocs.get(doc)) {
+                        lastModifiedByFileName.put(fileNames.get(doc).utf8ToString(), lastModified.get(doc));
+                    }
+                }
+            }
+        } finally {
+            searcherManager.release(searcher);
+        }
+        return lastModifiedByFileName;
+    }
+
+    @Override
+    public void commit() throws IOException {
+        indexWriter.commit();
+        // the caller expects the committed changes to be searchable, so wait for a refresh in progress
+        searcherManager.maybeRefreshBlocking();
+    }
+
+    /**
+     * Opens a near-real-time reader on the uncommitted changes.
+     */
+    @Override
+    public void softCommit() throws IOException {
+        searcherManager.maybeRefreshBlocking();
+    }
+
+    @Override
+    public List<MediaFile> findByDescription(List<String> tokens, QueryMode mode, int maxResults) throws IOException {
+        Query query = descriptionQuery(tokens, mode);
+        return query != null ? search(query, maxResults) : new ArrayList<>();
+    }
+
+    @Override
+    public MediaFilePage findByDescription(List<String> tokens, QueryMode mode, String cursor, int pageSize) throws IOException {
+        Query query = descriptionQuery(tokens, mode);
+        return query != null ? searchPage(query, cursor, pageSize) : MediaFilePage.empty();
+    }
+
+    @Override
+    public MediaFilePage findByDate(LocalDate date, String cursor, int pageSize) throws IOException {
+        return searchPage(LongPoint.newExactQuery(Index.FIELD_DATE_LONG_POINT, Long.valueOf(Index.localDateToLongPoint(date))), cursor, pageSize);
+    }
+
+    @Override
+    public MediaFilePage findByAlbum(String album, String cursor, int pageSize) throws IOException {
+        return searchPage(new TermQuery(new Term(Index.FIELD_ALBUMS, album)), cursor, pageSize);
+    }
+
+    /**
+     * @return description query, {@code null} if the tokens cannot be parsed
+     */
+    private Query descriptionQuery(List<String> tokens, QueryMode mode) {
+        String queryString = tokens.stream()
+                .map(QueryParser::escape)
+                .map(token -> String.format("%s%s", mode==QueryMode.ALL ? "+" : "", token))
+                .collect(Collectors.joining(" "));
+        try {
+            return new QueryParser(Index.FIELD_DESCRIPTION, analyzer).parse(queryString);
+        } catch (ParseException e) {
+            LOG.warn(String.format("Invalid search query '%s'.", queryString), e);
+            return null;
+        }
+    }
+
+    @Override
+    public List<MediaFile> findByDate(LocalDate date, int maxResults) throws IOException {
+        return search(LongPoint.newExactQuery(Index.FIELD_DATE_LONG_POINT, Long.valueOf(Index.localDateToLongPoint(date))), maxResults, PAGE_SORT);
+    }
+
+    @Override
+    public List<MediaFile> findByAlbum(String album, int maxResults) throws IOException {
+        return search(new TermQuery(new Term(Index.FIELD_ALBUMS, album)), maxResults);
+    }
+
+    @Override
+    public List<MediaFile> findTimeline(TimelineKey key, boolean forward, int limit) throws IOException {
+        // the range restricts the candidates through the points, searchAfter skips the position itself
+        Query query = forward
+                ? LongPoint.newRangeQuery(Index.FIELD_DATETIME_LONG_POINT, key.getDateTimeLongPoint(), Long.MAX_VALUE)
+                : LongPoint.newRangeQuery(Index.FIELD_DATETIME_LONG_POINT, Long.MIN_VALUE, key.getDateTimeLongPoint());
+        FieldDoc after = new FieldDoc(-1, Float.NaN, new Object[] { key.getDateTimeLongPoint(), new BytesRef(key.getFileName()) });
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            // see searchPage(Query, String, int)
+            after.doc = searcher.getIndexReader().maxDoc() - 1;
+            List<MediaFile> mediaFiles = new ArrayList<>();
+            for (ScoreDoc scoreDoc : searcher.searchAfter(after, query, limit, forward ? PAGE_SORT : REVERSE_PAGE_SORT).scoreDocs) {
+                mediaFiles.add(toMediaFile(searcher.doc(scoreDoc.doc)));
+            }
+            if (!forward) {
+                Collections.reverse(mediaFiles);
+            }
+            return mediaFiles;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    @Override
+    public Map<Long, Long> countBy(String facetField) throws IOException {
+        return countBy(facetField, new MatchAllDocsQuery());
+    }
+
+    @Override
+    public Map<Long, Long> countBy(String facetField, String filterField, long filterValue) throws IOException {
+        return countBy(facetField, LongPoint.newExactQuery(filterField, filterValue));
+    }
+
+    private Map<Long, Long> countBy(String facetField, Query query) throws IOException {
+        Map<Long, Long> counts = new TreeMap<>();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            searcher.search(query, new SimpleCollector() {
+
+                private NumericDocValues values;
+
+                @Override
+                protected void doSetNextReader(LeafReaderContext context) throws IOException {
+                    values = DocValues.getNumeric(context.reader(), facetField);
+                }
+
+                @Override
+                public void collect(int doc) throws IOException {
+                    counts.merge(values.get(doc), 1L, Long::sum);
+                }
+
+                @Override
+                public boolean needsScores() {
+                    return false;
+                }
+            });
+        } finally {
+            searcherManager.release(searcher);
+        }
+        return counts;
+    }
+
+    @Override
+    public List<Album> albums() throws IOException {
+        AlbumCollector collector = new AlbumCollector();
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            searcher.search(new MatchAllDocsQuery(), collector);
+            collector.mergeSegment();
+        } finally {
+            searcherManager.release(searcher);
+        }
+        return collector.albums.entrySet().stream()
+                .map(album -> new Album(album.getKey(), album.getValue()[0],
+                        Index.longPointToLocalDate(Long.toString(album.getValue()[1])),
+                        Index.longPointToLocalDate(Long.toString(album.getValue()[2]))))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Collects count, begin and end date per album from the doc values.
+     * 
+     * The values are aggregated per album ordinal within a segment and merged by album title
+     * when the next segment starts (and once more after the search, see {@link #mergeSegment()}).
+     */
+    private static class AlbumCollector extends SimpleCollector {
+
+        // count, begin, end per album title
+        private Map<String, long[]> albums = new HashMap<>();
+
+        private SortedSetDocValues albumValues;
+        private NumericDocValues dateValues;
+        // count, begin, end per album ordinal of the current segment
+        private long[][] segmentAlbums;
+
+        @Override
+        protected void doSetNextReader(LeafReaderContext context) throws IOException {
+            mergeSegment();
+            albumValues = DocValues.getSortedSet(context.reader(), Index.FIELD_ALBUMS);
+            dateValues = DocValues.getNumeric(context.reader(), Index.FIELD_DATE_LONG_POINT);
+            segmentAlbums = new long[(int) albumValues.getValueCount()][];
+        }
+
+        @Override
+        public void collect(int doc) throws IOException {
+            long date = dateValues.get(doc);
+            albumValues.setDocument(doc);
+            for (long ord = albumValues.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = albumValues.nextOrd()) {
+                long[] album = segmentAlbums[(int) ord];
+                if (album == null) {
+                    segmentAlbums[(int) ord] = new long[] { 1, date, date };
+                } else {
+                    album[0]++;
+                    album[1] = Math.min(album[1], date);
+                    album[2] = Math.max(album[2], date);
+                }
+            }
+        }
+
+        void mergeSegment() {
+            if (segmentAlbums == null) {
+                return;
+            }
+            for (int ord = 0; ord < segmentAlbums.length; ord++) {
+                long[] segmentAlbum = segmentAlbums[ord];
+                if (segmentAlbum == null) {
+                    continue;
+                }
+                albums.merge(albumValues.lookupOrd(ord).utf8ToString(), segmentAlbum, (album, other) -> new long[] {
+                        album[0] + other[0], Math.min(album[1], other[1]), Math.max(album[2], other[2]) });
+            }
+            segmentAlbums = null;
+        }
+
+        @Override
+        public boolean needsScores() {
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        searcherManager.close();
+        indexWriter.close();
+        directory.close();
+        LOG.info("LuceneIndexBackend closed.");
+    }
+
+    private List<MediaFile> search(Query query, int maxResults) throws IOException {
+        return search(query, maxResults, null);
+    }
+
+    /**
+     * @param sort sort order, {@code null} for relevance
+     */
+    private List<MediaFile> search(Query query, int maxResults, Sort sort) throws IOException {
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            List<MediaFile> mediaFiles = new ArrayList<>();
+            TopDocs topDocs = sort != null ? searcher.search(query, maxResults, sort) : searcher.search(query, maxResults);
+            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                mediaFiles.add(toMediaFile(searcher.doc(scoreDoc.doc)));
+            }
+            return mediaFiles;
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Gets a page with {@link IndexSearcher#searchAfter(ScoreDoc, Query, int, Sort)}. The cursor contains the sort values
+     * (datetime/original, file name) of the last media file of the previous page.
+     */
+    private MediaFilePage searchPage(Query query, String cursor, int pageSize) throws IOException {
+        FieldDoc after = cursor != null ? decodeCursor(cursor) : null;
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            if (after != null) {
+                // the doc id must exist in the reader; file names are unique, so it only matters for the last media file
+                // of the previous page itself, which is skipped as its doc id cannot be greater
+                after.doc = searcher.getIndexReader().maxDoc() - 1;
+            }
+            TopDocs topDocs = searcher.searchAfter(after, query, pageSize, PAGE_SORT);
+            List<MediaFile> mediaFiles = new ArrayList<>();
+            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                mediaFiles.add(toMediaFile(searcher.doc(scoreDoc.doc)));
+            }
+            boolean lastPage = topDocs.scoreDocs.length < pageSize;
+            return new MediaFilePage(mediaFiles, lastPage ? null : encodeCursor((FieldDoc) topDocs.scoreDocs[topDocs.scoreDocs.length - 1]));
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    private static String encodeCursor(FieldDoc last) {
+        String sortValues = String.format("%d:%s", (Long) last.fields[0], ((BytesRef) last.fields[1]).utf8ToString());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sortValues.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static FieldDoc decodeCursor(String cursor) {
+        try {
+            String sortValues = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = sortValues.indexOf(':');
+            long dateTime = Long.parseLong(sortValues.substring(0, separator));
+            BytesRef fileName = new BytesRef(sortValues.substring(separator + 1));
+            // the doc id is set per searcher
+            return new FieldDoc(-1, Float.NaN, new Object[] { dateTime, fileName });
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException(String.format("Invalid cursor '%s'.", cursor), e);
+        }
+    }
+
+    private Document toLuceneDocument(IndexDocument indexDocument) {
+        Document document = new Document();
+        document.add(new StringField(Index.FIELD_ID, indexDocument.getFileName(), Field.Store.YES));
+        document.add(new SortedDocValuesField(Index.FIELD_ID, new BytesRef(indexDocument.getFileName())));
+        if (indexDocument.getDescription() != null) {
+            document.add(new TextField(Index.FIELD_DESCRIPTION, indexDocument.getDescription(), Field.Store.YES));
+        }
+        indexDocument.getAlbums().forEach(album -> {
+            document.add(new StringField(Index.FIELD_ALBUMS, album, Field.Store.YES));
+            document.add(new SortedSetDocValuesField(Index.FIELD_ALBUMS, new BytesRef(album)));
+        });
+        document.add(new StringField(Index.FIELD_DATETIME_ORIGINAL, indexDocument.getDateTimeOriginal().toString(), Field.Store.YES));
+        addLongPoint(document, Index.FIELD_YEAR_LONG_POINT, indexDocument.getYearLongPoint());
+        addLongPoint(document, Index.FIELD_YEAR_MONTH_LONG_POINT, indexDocument.getYearMonthLongPoint());
+        addLongPoint(document, Index.FIELD_DATE_LONG_POINT, indexDocument.getDateLongPoint());
+        addLongPoint(document, Index.FIELD_DATETIME_LONG_POINT, indexDocument.getDateTimeLongPoint());
+        document.add(new NumericDocValuesField(Index.FIELD_LAST_MODIFIED, indexDocument.getLastModified()));
+        return document;
+    }
+
+    private static void addLongPoint(Document document, String fieldName, long value) {
+        document.add(new LongPoint(fieldName, value));
+        document.add(new NumericDocValuesField(fieldName, value));
+        document.add(new StoredField(fieldName, value));
+    }
+
+    private MediaFile toMediaFile(Document document) {
+        List<String> albums = Arrays.stream(document.getFields(Index.FIELD_ALBUMS))
+                .map(IndexableField::stringValue)
+                .collect(Collectors.toList());
+        return new MediaFile(document.get(Index.FIELD_ID), document.get(Index.FIELD_DESCRIPTION), albums.isEmpty() ? null : albums);
+    }
+}
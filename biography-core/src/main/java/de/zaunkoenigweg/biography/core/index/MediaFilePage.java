@@ -0,0 +1,39 @@
+package de.zaunkoenigweg.biography.core.index;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Page of media files from the index, ordered by datetime/original and file name.
+ *
+ * The cursor of the next page is opaque, it is only valid for the same query and index backend
+ * (except for the timeline, see {@link SearchService#findTimeline(TimelineKey, boolean, int)}).
+ */
+public class MediaFilePage {
+
+    private static final MediaFilePage EMPTY = new MediaFilePage(Collections.emptyList(), null);
+
+    private List<MediaFile> mediaFiles;
+    private String nextCursor;
+
+    MediaFilePage(List<MediaFile> mediaFiles, String nextCursor) {
+        this.mediaFiles = mediaFiles;
+        this.nextCursor = nextCursor;
+    }
+
+    static MediaFilePage empty() {
+        return EMPTY;
+    }
+
+    public List<MediaFile> getMediaFiles() {
+        return mediaFiles;
+    }
+
+    /**
+     * @return cursor of the next page, empty if this is the last page
+     */
+    public Optional<String> getNextCursor() {
+        return Optional.ofNullable(nextCursor);
+    }
+}
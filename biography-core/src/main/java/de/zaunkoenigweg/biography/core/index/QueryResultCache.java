@@ -0,0 +1,200 @@
+package de.zaunkoenigweg.biography.core.index;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Results of index queries, keyed by normalised query.
+ *
+ * A result is only valid for the index generation it has been read from. The generation is incremented whenever
+ * the index has been changed (see {@link #nextGeneration()}), which drops all results. A query that is still running
+ * when the generation changes is not served from the cache afterwards.
+ *
+ * The cache is bounded by the number of entries and by the estimated size of the results, least recently used
+ * results are evicted first. Both bounds are enforced through a single weight: every entry weighs at least
+ * {@code maxBytes / maxEntries}.
+ */
+public class QueryResultCache {
+
+    /**
+     * estimated size of a cache entry without the result
+     */
+    private static final long ENTRY_OVERHEAD_BYTES = 128;
+
+    /**
+     * estimated size of an object without its fields
+     */
+    private static final long OBJECT_OVERHEAD_BYTES = 16;
+
+    private long maxEntryBytes;
+    private Cache<String, CachedResult> cache;
+    private AtomicLong generation = new AtomicLong();
+
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+    private AtomicLong evictions = new AtomicLong();
+    private AtomicLong invalidations = new AtomicLong();
+    private AtomicLong bytesHeld = new AtomicLong();
+
+    QueryResultCache(Integer maxEntries, Long maxBytes) {
+        if (maxEntries == null || maxEntries < 1 || maxBytes == null || maxBytes < maxEntries) {
+            throw new IllegalArgumentException(String.format("Invalid query cache bounds: %s entries, %s bytes", maxEntries, maxBytes));
+        }
+        long minEntryWeight = maxBytes / maxEntries;
+        // a single result must not displace a large part of the cache
+        this.maxEntryBytes = maxBytes / 16;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .<String, CachedResult>weigher((key, result) -> (int) Math.max(result.bytes, minEntryWeight))
+                .removalListener(notification -> {
+                    bytesHeld.addAndGet(-notification.getValue().bytes);
+                    if (notification.wasEvicted()) {
+                        evictions.incrementAndGet();
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Gets the result of the query from the cache or executes the query.
+     *
+     * @param key normalised query, must identify the result
+     * @param query executes the query, returns {@code null} if it failed
+     * @param bytes estimates the size of the result in bytes
+     * @return result, {@code null} if the query failed (which is not cached)
+     */
+    @SuppressWarnings("unchecked")
+    <R> R get(String key, Supplier<R> query, ToLongFunction<R> bytes) {
+        long currentGeneration = generation.get();
+        CachedResult cached = cache.getIfPresent(key);
+        if (cached != null && cached.generation == currentGeneration) {
+            hits.incrementAndGet();
+            return (R) cached.result;
+        }
+        misses.incrementAndGet();
+        R result = query.get();
+        if (result != null) {
+            long resultBytes = ENTRY_OVERHEAD_BYTES + 2L * key.length() + bytes.applyAsLong(result);
+            // the index may have been changed while the query was running
+            if (resultBytes <= maxEntryBytes && currentGeneration == generation.get()) {
+                bytesHeld.addAndGet(resultBytes);
+                cache.put(key, new CachedResult(currentGeneration, result, resultBytes));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Starts a new index generation and drops all cached results.
+     */
+    void nextGeneration() {
+        generation.incrementAndGet();
+        invalidations.addAndGet(cache.size());
+        cache.invalidateAll();
+    }
+
+    public Statistics getStatistics() {
+        return new Statistics(hits.get(), misses.get(), evictions.get(), invalidations.get(), bytesHeld.get(), cache.size(), generation.get());
+    }
+
+    static long bytes(String string) {
+        return string != null ? OBJECT_OVERHEAD_BYTES + 2L * string.length() : 0;
+    }
+
+    static long bytes(MediaFile mediaFile) {
+        return OBJECT_OVERHEAD_BYTES + bytes(mediaFile.getFileName()) + bytes(mediaFile.getDescription())
+                + mediaFile.getAlbums().stream().mapToLong(QueryResultCache::bytes).sum();
+    }
+
+    static long bytes(Album album) {
+        return 3 * OBJECT_OVERHEAD_BYTES + bytes(album.getName());
+    }
+
+    static <E> long bytes(Collection<E> elements, ToLongFunction<E> elementBytes) {
+        return OBJECT_OVERHEAD_BYTES + elements.stream().mapToLong(element -> 8 + elementBytes.applyAsLong(element)).sum();
+    }
+
+    private static class CachedResult {
+
+        private long generation;
+        private Object result;
+        private long bytes;
+
+        private CachedResult(long generation, Object result, long bytes) {
+            this.generation = generation;
+            this.result = result;
+            this.bytes = bytes;
+        }
+    }
+
+    public static class Statistics {
+
+        private long hits;
+        private long misses;
+        private long evictions;
+        private long invalidations;
+        private long bytesHeld;
+        private long entries;
+        private long generation;
+
+        private Statistics(long hits, long misses, long evictions, long invalidations, long bytesHeld, long entries, long generation) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.invalidations = invalidations;
+            this.bytesHeld = bytesHeld;
+            this.entries = entries;
+            this.generation = generation;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public double getHitRatio() {
+            long requests = hits + misses;
+            return requests > 0 ? (double) hits / requests : 0.0;
+        }
+
+        /**
+         * @return number of results evicted because of the size bounds
+         */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /**
+         * @return number of results dropped because the index has been changed
+         */
+        public long getInvalidations() {
+            return invalidations;
+        }
+
+        /**
+         * @return estimated size of the cached results
+         */
+        public long getBytesHeld() {
+            return bytesHeld;
+        }
+
+        public long getEntries() {
+            return entries;
+        }
+
+        /**
+         * @return current index generation
+         */
+        public long getGeneration() {
+            return generation;
+        }
+    }
+}
@@ -5,12 +5,10 @@ import java.time.LocalDate;
 import java.time.Year;
 import java.time.YearMonth;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
-import java.util.function.Consumer;
-import java.util.function.Function;
-import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -18,27 +16,29 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.apache.solr.client.solrj.SolrClient;
-import org.apache.solr.client.solrj.SolrQuery;
-import org.apache.solr.client.solrj.SolrQuery.ORDER;
-import org.apache.solr.client.solrj.SolrServerException;
-import org.apache.solr.client.solrj.impl.HttpSolrClient;
-import org.apache.solr.client.solrj.response.FacetField.Count;
-import org.apache.solr.client.solrj.response.QueryResponse;
-import org.apache.solr.common.SolrDocument;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.stereotype.Component;
 import org.springframework.util.comparator.Comparators;
 
 /**
  * Search.
+ * 
+ * The results of the queries are cached until the index is changed, see {@link #indexChanged()}. The counts of the
+ * calendar navigation are held in memory, see {@link CalendarHistogram}.
  */
 @Component
 public class SearchService implements DisposableBean {
 
     private final static Log LOG = LogFactory.getLog(SearchService.class);
 
-    private String solrIndexUrl;
+    /**
+     * maximum number of media files of a query or page
+     */
+    public static final int MAX_RESULTS = 1000;
+
+    private IndexBackend indexBackend;
+    private QueryResultCache queryResultCache;
+    private CalendarHistogram calendarHistogram;
     
     public enum QueryMode {
         ANY, ALL;
@@ -50,51 +50,161 @@ public class SearchService implements DisposableBean {
 //    private static final Function<QueryResponse, LocalDate> EXTRACT_DATE_OF_FIRST_DOCUMENT = response -> LocalDateTime.parse(
 //            response.getResults().get(0).get(Index.FIELD_DATE_TIME_ORIGINAL).toString()).toLocalDate();
     
-	public SearchService(String solrIndexUrl) {
-		this.solrIndexUrl = solrIndexUrl;
+	public SearchService(IndexBackend indexBackend, Integer queryCacheMaxEntries, Long queryCacheMaxBytes) {
+		this.indexBackend = indexBackend;
+		this.queryResultCache = new QueryResultCache(queryCacheMaxEntries, queryCacheMaxBytes);
+		this.calendarHistogram = new CalendarHistogram(indexBackend);
+		this.calendarHistogram.rebuild();
 		LOG.info("SearchService started.");
-		LOG.info(String.format("solrIndexUrl=%s", this.solrIndexUrl));
+		LOG.info(String.format("indexBackend=%s", this.indexBackend.getClass().getSimpleName()));
+		LOG.info(String.format("queryCacheMaxEntries=%d", queryCacheMaxEntries));
+		LOG.info(String.format("queryCacheMaxBytes=%d", queryCacheMaxBytes));
 	}
 
     @Override
     public void destroy() throws Exception {
+        indexBackend.close();
         LOG.info("Index stopped.");
     }
 
     public Stream<MediaFile> findByDescription(String searchString, QueryMode mode) {
-        SolrQuery query = new SolrQuery();
-        String queryString = Arrays.stream(StringUtils.split(searchString))
-            .map(querySnippet(Index.FIELD_DESCRIPTION, mode))
-            .collect(Collectors.joining(" "));
-        query.setQuery(queryString);
-        query.setRows(1000);
-        return query(query, response -> response.getResults().stream().map(this::toFileInfo));
-    }
-    
-    private UnaryOperator<String> querySnippet(String fieldName, QueryMode mode) {
-        return token -> String.format("%s%s:%s", mode==QueryMode.ALL ? "+" : "", fieldName, token);
+        List<String> tokens = tokens(searchString);
+        return stream(cachedMediaFiles(String.format("description|%s|%s", mode, tokens),
+                backend -> backend.findByDescription(tokens, mode, MAX_RESULTS)));
     }
     
     public Stream<MediaFile> findByDate(LocalDate dateTime) {
-        SolrQuery query = new SolrQuery();
-        query.setQuery(String.format("%s:%s", Index.FIELD_DATE_LONG_POINT, Index.localDateToLongPoint(dateTime)));
-        query.setRows(1000);
-        return query(query, response -> response.getResults().stream().map(this::toFileInfo));
+        return stream(cachedMediaFiles(String.format("date|%s", dateTime),
+                backend -> backend.findByDate(dateTime, MAX_RESULTS)));
     }
     
     public Stream<MediaFile> findByAlbum(String album) {
-        SolrQuery query = new SolrQuery();
-        query.setQuery(String.format("%s:\"%s\"", Index.FIELD_ALBUMS, album));
-        query.setRows(1000);
-        return query(query, response -> response.getResults().stream().map(this::toFileInfo));
+        return stream(cachedMediaFiles(String.format("album|%s", album),
+                backend -> backend.findByAlbum(album, MAX_RESULTS)));
     }
-    
-    @SuppressWarnings("unchecked")
-    private MediaFile toFileInfo(SolrDocument doc) {
-        String fileName = doc.get(Index.FIELD_ID).toString();
-        String description = doc.get(Index.FIELD_DESCRIPTION)!=null ? doc.get(Index.FIELD_DESCRIPTION).toString() : null;
-        List<String> albums = doc.get(Index.FIELD_ALBUMS) instanceof List<?> ? (List<String>)doc.get(Index.FIELD_ALBUMS) : null;
-        return new MediaFile(fileName, description, albums);
+
+    /**
+     * Gets a page of the media files whose description matches the search string, ordered by datetime/original.
+     * 
+     * @param searchString search string
+     * @param mode must the media files match any or all of the tokens?
+     * @param cursor cursor of the page (see {@link MediaFilePage#getNextCursor()}), {@code null} for the first page
+     * @param pageSize maximum number of media files in the page, at most {@value #MAX_RESULTS}
+     * @return page, empty if the query failed
+     * @throws IllegalArgumentException if page size or cursor is not valid
+     */
+    public MediaFilePage findByDescription(String searchString, QueryMode mode, String cursor, int pageSize) {
+        List<String> tokens = tokens(searchString);
+        return queryPage(String.format("description|%s|%s", mode, tokens), backend -> backend.findByDescription(tokens, mode, cursor, pageSize), cursor, pageSize);
+    }
+
+    /**
+     * Gets a page of the media files of the given day.
+     * 
+     * @see #findByDescription(String, QueryMode, String, int)
+     */
+    public MediaFilePage findByDate(LocalDate date, String cursor, int pageSize) {
+        return queryPage(String.format("date|%s", date), backend -> backend.findByDate(date, cursor, pageSize), cursor, pageSize);
+    }
+
+    /**
+     * Gets a page of the media files in the given album.
+     * 
+     * @see #findByDescription(String, QueryMode, String, int)
+     */
+    public MediaFilePage findByAlbum(String album, String cursor, int pageSize) {
+        return queryPage(String.format("album|%s", album), backend -> backend.findByAlbum(album, cursor, pageSize), cursor, pageSize);
+    }
+
+    /**
+     * Gets the media files next to the given position of the timeline of all media files (ordered by datetime/original
+     * and file name).
+     * 
+     * @param key position, which is not contained in the page
+     * @param forward media files after the position, otherwise before it
+     * @param pageSize maximum number of media files in the page, at most {@value #MAX_RESULTS}
+     * @return page in timeline order (also if not forward), the cursor is the file name of the media file to continue
+     *         from in the same direction, empty if the page is the end (or start) of the timeline
+     * @throws IllegalArgumentException if the page size is not valid
+     */
+    public MediaFilePage findTimeline(TimelineKey key, boolean forward, int pageSize) {
+        if (pageSize < 1 || pageSize > MAX_RESULTS) {
+            throw new IllegalArgumentException(String.format("Invalid page size %d, must be between 1 and %d.", pageSize, MAX_RESULTS));
+        }
+        // one more media file tells whether the timeline continues
+        List<MediaFile> mediaFiles = cachedMediaFiles(String.format("timeline|%s|%s|%d", key, forward, pageSize),
+                backend -> backend.findTimeline(key, forward, pageSize + 1));
+        if (mediaFiles == null) {
+            return MediaFilePage.empty();
+        }
+        if (mediaFiles.size() <= pageSize) {
+            return new MediaFilePage(mediaFiles, null);
+        }
+        List<MediaFile> page = forward ? mediaFiles.subList(0, pageSize) : mediaFiles.subList(1, pageSize + 1);
+        return new MediaFilePage(page, (forward ? page.get(pageSize - 1) : page.get(0)).getFileName());
+    }
+
+    /**
+     * Streams all media files whose description matches the search string. The media files are read lazily page by page,
+     * so the number of results is not limited.
+     */
+    public Stream<MediaFile> findAllByDescription(String searchString, QueryMode mode) {
+        return Stream.iterate(findByDescription(searchString, mode, null, MAX_RESULTS),
+                page -> page != null,
+                page -> page.getNextCursor().map(cursor -> findByDescription(searchString, mode, cursor, MAX_RESULTS)).orElse(null))
+            .flatMap(page -> page.getMediaFiles().stream());
+    }
+
+    /**
+     * Gets the statistics of the query result cache.
+     */
+    public QueryResultCache.Statistics getQueryCacheStatistics() {
+        return queryResultCache.getStatistics();
+    }
+
+    /**
+     * Starts a new index generation, which drops all cached query results and the calendar histogram. Must be called
+     * whenever changes of the index have been made visible (commit or soft commit).
+     */
+    public void indexChanged() {
+        queryResultCache.nextGeneration();
+        calendarHistogram.invalidate();
+    }
+
+    /**
+     * Starts a new index generation like {@link #indexChanged()}, but updates the calendar histogram just for the
+     * months of the given media files.
+     * 
+     * @param fileNames names of the added, changed or deleted media files
+     */
+    public void indexChanged(Collection<String> fileNames) {
+        queryResultCache.nextGeneration();
+        calendarHistogram.update(fileNames);
+    }
+
+    private MediaFilePage queryPage(String queryKey, IndexQuery<MediaFilePage> query, String cursor, int pageSize) {
+        if (pageSize < 1 || pageSize > MAX_RESULTS) {
+            throw new IllegalArgumentException(String.format("Invalid page size %d, must be between 1 and %d.", pageSize, MAX_RESULTS));
+        }
+        MediaFilePage page = queryResultCache.get(String.format("page|%s|%s|%d", queryKey, cursor, pageSize), () -> query(query),
+                result -> QueryResultCache.bytes(result.getMediaFiles(), QueryResultCache::bytes) + QueryResultCache.bytes(result.getNextCursor().orElse(null)));
+        return page != null ? page : MediaFilePage.empty();
+    }
+
+    private List<MediaFile> cachedMediaFiles(String queryKey, IndexQuery<List<MediaFile>> query) {
+        return queryResultCache.get(queryKey, () -> query(query), result -> QueryResultCache.bytes(result, QueryResultCache::bytes));
+    }
+
+    /**
+     * Splits the search string into tokens. The order and repetitions of the tokens do not matter for a query,
+     * so the tokens are sorted and distinct, which normalises the cache key.
+     */
+    private static List<String> tokens(String searchString) {
+        return Arrays.stream(StringUtils.split(searchString)).distinct().sorted().collect(Collectors.toList());
+    }
+
+    private static <T> Stream<T> stream(List<T> result) {
+        return result != null ? result.stream() : null;
     }
     
 //    public ArchiveInfo getArchiveInfo() {
@@ -142,85 +252,69 @@ public class SearchService implements DisposableBean {
 //        return query;
 //    }
 
+    /**
+     * Gets all albums with their size and date range, ordered by begin date.
+     * 
+     * The album overview is computed by a single facet query of the index backend and kept in memory
+     * until the index is changed, see {@link #indexChanged()}.
+     * 
+     * @return albums
+     */
     public Stream<Album> getAlbumCounts() {
-        return streamFacetCounts(Index.FIELD_ALBUMS).map(this::createAlbum).sorted(Comparator.comparing(Album::getBegin));
+        List<Album> albums = queryResultCache.get("albums", this::queryAlbums, result -> QueryResultCache.bytes(result, QueryResultCache::bytes));
+        return albums != null ? albums.stream() : Stream.empty();
     }
-    
-    private Album createAlbum(Count albumFacetCount) {
-        SolrQuery query = new SolrQuery();
-        query.setQuery(String.format("%s:\"%s\"", Index.FIELD_ALBUMS, albumFacetCount.getName()));
-        query.setSort(Index.FIELD_DATE_LONG_POINT, ORDER.asc);
-        query.setRows(1);
-        LocalDate begin = query(query, response -> response.getResults().stream().map(result -> Index.longPointToLocalDate(result.get(Index.FIELD_DATE_LONG_POINT).toString())).findAny().get());
-        
-        query = new SolrQuery();
-        query.setQuery(String.format("%s:\"%s\"", Index.FIELD_ALBUMS, albumFacetCount.getName()));
-        query.setSort(Index.FIELD_DATE_LONG_POINT, ORDER.desc);
-        query.setRows(1);
-        LocalDate end = query(query, response -> response.getResults().stream().map(result -> Index.longPointToLocalDate(result.get(Index.FIELD_DATE_LONG_POINT).toString())).findAny().get());
-        
-        return new Album(albumFacetCount.getName(), albumFacetCount.getCount(), begin, end);
+
+    private List<Album> queryAlbums() {
+        return query(backend -> backend.albums().stream()
+                .sorted(Comparator.comparing(Album::getBegin))
+                .collect(Collectors.toList()));
     }
-    
-    
+
     public Stream<Pair<LocalDate, Long>> getDayCounts(YearMonth yearMonth) {
-        return streamFacetCounts(Index.FIELD_DATE_LONG_POINT, query -> {
-            query.setQuery(Index.queryString(Index.FIELD_YEAR_MONTH_LONG_POINT, Index.yearMonthToLongPoint(yearMonth)));
-        }).map(count-> {
-            return Pair.of(Index.longPointToLocalDate(count.getName()), Long.valueOf(count.getCount()));
-        }).sorted(Comparator.comparing(Pair::getLeft));
+        return calendarHistogram.getDayCounts(yearMonth);
     }
     
     public Stream<Pair<YearMonth, Long>> getMonthCounts(Year year) {
-        return streamFacetCounts(Index.FIELD_YEAR_MONTH_LONG_POINT, query -> {
-            query.setQuery(Index.queryString(Index.FIELD_YEAR_LONG_POINT, year.toString()));
-        }).map(count-> {
-            return Pair.of(Index.longPointToYearMonth(count.getName()), Long.valueOf(count.getCount()));
-        }).sorted(Comparator.comparing(Pair::getLeft));
+        return calendarHistogram.getMonthCounts(year);
     }
     
 	public Optional<YearMonth> getMostRecentYearMonth() {
-        return streamFacetCounts(Index.FIELD_YEAR_MONTH_LONG_POINT, query -> {
-        }).map(count-> {
-            return Index.longPointToYearMonth(count.getName());
-        }).max(Comparator.naturalOrder());
+        return calendarHistogram.getMostRecentYearMonth();
     }
     
     public Stream<Pair<Year, Long>> getYearCounts() {
-        return streamFacetCounts(Index.FIELD_YEAR_LONG_POINT).map(count-> {
-            return Pair.of(Year.parse(count.getName()), Long.valueOf(count.getCount()));
-        }).sorted(Comparator.comparing(Pair::getLeft));
-    }
-    
-    private Stream<Count> streamFacetCounts(String facetField) {
-        return streamFacetCounts(facetField, q->{});
+        return calendarHistogram.getYearCounts();
     }
 
-    private Stream<Count> streamFacetCounts(String facetField, Consumer<SolrQuery> additionalQueryDefinitions) {
-        SolrQuery query = new SolrQuery();
-        query.setQuery("*:*");
-        query.setRows(0);
-        query.setFacet(true);
-        query.addFacetField(facetField);
-        additionalQueryDefinitions.accept(query);
-        return query(query, (response) -> response.getFacetField(facetField).getValues().stream());
+    /**
+     * Gets the version of the calendar counts ({@link #getYearCounts()}, {@link #getMonthCounts(Year)},
+     * {@link #getDayCounts(YearMonth)}, {@link #getMostRecentYearMonth()}), which changes whenever the counts change.
+     * The version must be read before the counts, then it is never newer than the counts.
+     * 
+     * @return version, unique across runs
+     */
+    public String getCalendarVersion() {
+        return calendarHistogram.getVersion();
     }
 
     /**
-     * Executes given query and maps the result with the given extractor.
-     * @param query SolrQuery
-     * @param responseExtractor Extracts Response Type from Query
-     * @return extracted result
+     * Executes the given query against the index backend.
+     * @param query query to be executed
+     * @return query result, {@code null} if the query failed
      */
-    private <R> R query(SolrQuery query, Function<QueryResponse, R> responseExtractor) {
+    private <R> R query(IndexQuery<R> query) {
         try {
-            SolrClient solr = new HttpSolrClient.Builder(solrIndexUrl).build();
-            QueryResponse response = solr.query(query);
-            return responseExtractor.apply(response);
-        } catch (SolrServerException | IOException e) {
-            LOG.error("Error during Solr query.", e);
+            return query.execute(indexBackend);
+        } catch (IOException e) {
+            LOG.error("Error during index query.", e);
             return null;
         }
     }
 
+    @FunctionalInterface
+    private static interface IndexQuery<R> {
+        R execute(IndexBackend indexBackend) throws IOException;
+    }
+
 }
@@ -0,0 +1,61 @@
+package de.zaunkoenigweg.biography.core.index;
+
+/**
+ * Settings of the HTTP connection pool used by {@link SolrConnection}.
+ * 
+ * All durations are given in milliseconds.
+ */
+public class SolrClientSettings {
+
+    private int maxConnectionsPerRoute = 20;
+    private int maxConnectionsTotal = 50;
+    private long keepAliveMillis = 60_000;
+    private int connectTimeoutMillis = 5_000;
+    private int socketTimeoutMillis = 60_000;
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public int getMaxConnectionsTotal() {
+        return maxConnectionsTotal;
+    }
+
+    public void setMaxConnectionsTotal(int maxConnectionsTotal) {
+        this.maxConnectionsTotal = maxConnectionsTotal;
+    }
+
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    public void setKeepAliveMillis(long keepAliveMillis) {
+        this.keepAliveMillis = keepAliveMillis;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    public int getSocketTimeoutMillis() {
+        return socketTimeoutMillis;
+    }
+
+    public void setSocketTimeoutMillis(int socketTimeoutMillis) {
+        this.socketTimeoutMillis = socketTimeoutMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("maxConnectionsPerRoute=%d, maxConnectionsTotal=%d, keepAliveMillis=%d, connectTimeoutMillis=%d, socketTimeoutMillis=%d",
+                maxConnectionsPerRoute, maxConnectionsTotal, keepAliveMillis, connectTimeoutMillis, socketTimeoutMillis);
+    }
+}
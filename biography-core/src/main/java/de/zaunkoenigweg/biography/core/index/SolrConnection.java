@@ -0,0 +1,150 @@
+package de.zaunkoenigweg.biography.core.index;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.impl.HttpSolrClient;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * The one and only connection to the Solr index.
+ * 
+ * Holds a single thread-safe {@link SolrClient} backed by a pooled HTTP client that is shared
+ * by {@link SearchService} and {@link IndexingService}. The pool is closed when the application
+ * context shuts down.
+ */
+@Component
+public class SolrConnection implements DisposableBean {
+
+    private final static Log LOG = LogFactory.getLog(SolrConnection.class);
+
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private SolrClient solrClient;
+    private boolean closed;
+
+    public SolrConnection(String solrIndexUrl, SolrClientSettings solrClientSettings) {
+        Objects.requireNonNull(solrIndexUrl, "The Solr index url must not be null.");
+        Objects.requireNonNull(solrClientSettings, "The Solr client settings must not be null.");
+
+        this.connectionManager = new PoolingHttpClientConnectionManager(solrClientSettings.getKeepAliveMillis(), TimeUnit.MILLISECONDS);
+        this.connectionManager.setDefaultMaxPerRoute(solrClientSettings.getMaxConnectionsPerRoute());
+        this.connectionManager.setMaxTotal(solrClientSettings.getMaxConnectionsTotal());
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(solrClientSettings.getConnectTimeoutMillis())
+                .setSocketTimeout(solrClientSettings.getSocketTimeoutMillis())
+                .setConnectionRequestTimeout(solrClientSettings.getConnectTimeoutMillis())
+                .build();
+
+        // keep connections alive as long as Solr allows, but never longer than configured
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return keepAlive > 0 ? Math.min(keepAlive, solrClientSettings.getKeepAliveMillis()) : solrClientSettings.getKeepAliveMillis();
+        };
+
+        this.httpClient = HttpClientBuilder.create()
+                .setConnectionManager(this.connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .evictExpiredConnections()
+                .evictIdleConnections(solrClientSettings.getKeepAliveMillis(), TimeUnit.MILLISECONDS)
+                .build();
+
+        this.solrClient = new HttpSolrClient.Builder(solrIndexUrl).withHttpClient(this.httpClient).build();
+
+        LOG.info("SolrConnection started.");
+        LOG.info(String.format("solrIndexUrl=%s", solrIndexUrl));
+        LOG.info(String.format("solrClientSettings: %s", solrClientSettings));
+    }
+
+    /**
+     * Gets the shared Solr client. The client must not be closed by the caller.
+     * 
+     * @return shared Solr client
+     */
+    public SolrClient getClient() {
+        if (closed) {
+            throw new IllegalStateException("The Solr connection is already closed.");
+        }
+        return solrClient;
+    }
+
+    /**
+     * Gets the current statistics of the HTTP connection pool.
+     * 
+     * @return pool statistics
+     */
+    public Statistics getStatistics() {
+        PoolStats totalStats = connectionManager.getTotalStats();
+        return new Statistics(totalStats.getLeased(), totalStats.getAvailable(), totalStats.getPending(), totalStats.getMax());
+    }
+
+    /**
+     * Closes the Solr client and the connection pool. Calling this method more than once has no effect.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            solrClient.close();
+            httpClient.close();
+        } catch (IOException e) {
+            LOG.error("Error while closing the Solr connection.", e);
+        }
+        LOG.info("SolrConnection closed.");
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        close();
+    }
+
+    /**
+     * Snapshot of the HTTP connection pool statistics.
+     */
+    public static class Statistics {
+
+        private int leased;
+        private int idle;
+        private int pending;
+        private int max;
+
+        Statistics(int leased, int idle, int pending, int max) {
+            this.leased = leased;
+            this.idle = idle;
+            this.pending = pending;
+            this.max = max;
+        }
+
+        public int getLeased() {
+            return leased;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        public int getPending() {
+            return pending;
+        }
+
+        public int getMax() {
+            return max;
+        }
+    }
+}
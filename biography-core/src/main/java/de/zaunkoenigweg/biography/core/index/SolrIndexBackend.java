@@ -0,0 +1,353 @@
+package de.zaunkoenigweg.biography.core.index;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrQuery.ORDER;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.response.FacetField;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.client.solrj.response.UpdateResponse;
+import org.apache.solr.client.solrj.util.ClientUtils;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrException.ErrorCode;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.apache.solr.common.util.NamedList;
+
+import de.zaunkoenigweg.biography.core.index.SearchService.QueryMode;
+
+/**
+ * Index backend using an external Solr server, see {@code biography-solr}.
+ */
+public class SolrIndexBackend implements IndexBackend {
+
+    private final static Log LOG = LogFactory.getLog(SolrIndexBackend.class);
+
+    private static final int EXPORT_PAGE_SIZE = 5000;
+
+    private SolrConnection solrConnection;
+
+    public SolrIndexBackend(SolrConnection solrConnection) {
+        this.solrConnection = solrConnection;
+        LOG.info("SolrIndexBackend started.");
+    }
+
+    @Override
+    public void deleteAll() throws IOException {
+        UpdateResponse response = update(solr -> solr.deleteByQuery("*:*"));
+        LOG.info(String.format("Deleted all rows -> Status %d", response.getStatus()));
+    }
+
+    @Override
+    public void add(Collection<IndexDocument> documents) throws IOException {
+        List<SolrInputDocument> solrDocuments = documents.stream().map(this::toSolrDocument).collect(Collectors.toList());
+        UpdateResponse response = update(solr -> solr.add(solrDocuments));
+        LOG.debug(response);
+    }
+
+    @Override
+    public void delete(Collection<String> fileNames) throws IOException {
+        if (fileNames.isEmpty()) {
+            return;
+        }
+        UpdateResponse response = update(solr -> solr.deleteById(new ArrayList<>(fileNames)));
+        LOG.debug(response);
+    }
+
+    @Override
+    public Map<String, Long> lastModifiedByFileName() throws IOException {
+        Map<String, Long> lastModifiedByFileName = new HashMap<>();
+        SolrQuery query = new SolrQuery();
+        query.setQuery("*:*");
+        query.setFields(Index.FIELD_ID, Index.FIELD_LAST_MODIFIED);
+        query.setRows(EXPORT_PAGE_SIZE);
+        query.setSort(Index.FIELD_ID, ORDER.asc);
+        String cursorMark = CursorMarkParams.CURSOR_MARK_START;
+        while (true) {
+            query.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+            QueryResponse response = query(query, Function.identity());
+            response.getResults().forEach(doc -> {
+                Object lastModified = doc.getFirstValue(Index.FIELD_LAST_MODIFIED);
+                lastModifiedByFileName.put(doc.get(Index.FIELD_ID).toString(), lastModified != null ? Long.valueOf(lastModified.toString()) : 0L);
+            });
+            if (cursorMark.equals(response.getNextCursorMark())) {
+                return lastModifiedByFileName;
+            }
+            cursorMark = response.getNextCursorMark();
+        }
+    }
+
+    @Override
+    public void commit() throws IOException {
+        update(solr -> solr.commit());
+    }
+
+    @Override
+    public void softCommit() throws IOException {
+        update(solr -> solr.commit(true, true, true));
+    }
+
+    @Override
+    public List<MediaFile> findByDescription(List<String> tokens, QueryMode mode, int maxResults) throws IOException {
+        SolrQuery query = new SolrQuery();
+        query.setQuery(descriptionQueryString(tokens, mode));
+        query.setRows(maxResults);
+        return query(query, this::toMediaFiles);
+    }
+
+    @Override
+    public MediaFilePage findByDescription(List<String> tokens, QueryMode mode, String cursor, int pageSize) throws IOException {
+        return findPage(descriptionQueryString(tokens, mode), cursor, pageSize);
+    }
+
+    @Override
+    public MediaFilePage findByDate(LocalDate date, String cursor, int pageSize) throws IOException {
+        return findPage(String.format("%s:%s", Index.FIELD_DATE_LONG_POINT, Index.localDateToLongPoint(date)), cursor, pageSize);
+    }
+
+    @Override
+    public MediaFilePage findByAlbum(String album, String cursor, int pageSize) throws IOException {
+        return findPage(Index.queryString(Index.FIELD_ALBUMS, album), cursor, pageSize);
+    }
+
+    private static String descriptionQueryString(List<String> tokens, QueryMode mode) {
+        return tokens.stream()
+            .map(token -> String.format("%s%s:%s", mode==QueryMode.ALL ? "+" : "", Index.FIELD_DESCRIPTION, token))
+            .collect(Collectors.joining(" "));
+    }
+
+    /**
+     * Gets a page with Solr's cursor mark, the cursor mark is the (opaque) cursor of the page.
+     */
+    private MediaFilePage findPage(String queryString, String cursor, int pageSize) throws IOException {
+        String cursorMark = cursor != null ? cursor : CursorMarkParams.CURSOR_MARK_START;
+        SolrQuery query = new SolrQuery();
+        query.setQuery(queryString);
+        query.setRows(pageSize);
+        query.setSort(Index.FIELD_DATETIME_LONG_POINT, ORDER.asc);
+        query.addSort(Index.FIELD_ID, ORDER.asc);
+        query.set(CursorMarkParams.CURSOR_MARK_PARAM, cursorMark);
+        try {
+            return query(query, response -> {
+                List<MediaFile> mediaFiles = toMediaFiles(response);
+                boolean lastPage = mediaFiles.size() < pageSize || cursorMark.equals(response.getNextCursorMark());
+                return new MediaFilePage(mediaFiles, lastPage ? null : response.getNextCursorMark());
+            });
+        } catch (SolrException e) {
+            if (cursor != null && e.code() == ErrorCode.BAD_REQUEST.code) {
+                throw new IllegalArgumentException(String.format("Invalid cursor '%s'.", cursor), e);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public List<MediaFile> findByDate(LocalDate date, int maxResults) throws IOException {
+        SolrQuery query = new SolrQuery();
+        query.setQuery(String.format("%s:%s", Index.FIELD_DATE_LONG_POINT, Index.localDateToLongPoint(date)));
+        query.setRows(maxResults);
+        query.setSort(Index.FIELD_DATETIME_LONG_POINT, ORDER.asc);
+        query.addSort(Index.FIELD_ID, ORDER.asc);
+        return query(query, this::toMediaFiles);
+    }
+
+    @Override
+    public List<MediaFile> findTimeline(TimelineKey key, boolean forward, int limit) throws IOException {
+        String dateTime = Long.toString(key.getDateTimeLongPoint());
+        String fileName = ClientUtils.escapeQueryChars(key.getFileName());
+        String queryString;
+        if (forward) {
+            queryString = key.getFileName().isEmpty()
+                    ? String.format("%s:[%s TO *]", Index.FIELD_DATETIME_LONG_POINT, dateTime)
+                    : String.format("%1$s:{%2$s TO *] OR (%1$s:%2$s AND %3$s:{%4$s TO *])", Index.FIELD_DATETIME_LONG_POINT, dateTime, Index.FIELD_ID, fileName);
+        } else {
+            queryString = key.getFileName().isEmpty()
+                    ? String.format("%s:[* TO %s}", Index.FIELD_DATETIME_LONG_POINT, dateTime)
+                    : String.format("%1$s:[* TO %2$s} OR (%1$s:%2$s AND %3$s:[* TO %4$s})", Index.FIELD_DATETIME_LONG_POINT, dateTime, Index.FIELD_ID, fileName);
+        }
+        ORDER order = forward ? ORDER.asc : ORDER.desc;
+        SolrQuery query = new SolrQuery();
+        // not a filter query, the positions would flood the filter cache
+        query.setQuery(queryString);
+        query.setRows(limit);
+        query.setSort(Index.FIELD_DATETIME_LONG_POINT, order);
+        query.addSort(Index.FIELD_ID, order);
+        return query(query, response -> {
+            List<MediaFile> mediaFiles = toMediaFiles(response);
+            if (!forward) {
+                Collections.reverse(mediaFiles);
+            }
+            return mediaFiles;
+        });
+    }
+
+    @Override
+    public List<MediaFile> findByAlbum(String album, int maxResults) throws IOException {
+        SolrQuery query = new SolrQuery();
+        query.setQuery(Index.queryString(Index.FIELD_ALBUMS, album));
+        query.setRows(maxResults);
+        return query(query, this::toMediaFiles);
+    }
+
+    @Override
+    public Map<Long, Long> countBy(String facetField) throws IOException {
+        return countBy(facetField, "*:*");
+    }
+
+    @Override
+    public Map<Long, Long> countBy(String facetField, String filterField, long filterValue) throws IOException {
+        return countBy(facetField, Index.queryString(filterField, Long.toString(filterValue)));
+    }
+
+    private Map<Long, Long> countBy(String facetField, String queryString) throws IOException {
+        SolrQuery query = new SolrQuery();
+        query.setQuery(queryString);
+        query.setRows(0);
+        query.setFacet(true);
+        query.setFacetLimit(-1);
+        query.setFacetMinCount(1);
+        query.addFacetField(facetField);
+        return query(query, response -> response.getFacetField(facetField).getValues().stream()
+                .collect(Collectors.toMap(count -> Long.valueOf(count.getName()), FacetField.Count::getCount, Long::sum, TreeMap::new)));
+    }
+
+    @Override
+    public List<Album> albums() throws IOException {
+        SolrQuery query = new SolrQuery();
+        query.setQuery("*:*");
+        query.setRows(0);
+        query.add("json.facet", String.format("{albums:{type:terms,field:%s,limit:-1,facet:{begin:\"min(%s)\",end:\"max(%s)\"}}}",
+                Index.FIELD_ALBUMS, Index.FIELD_DATE_LONG_POINT, Index.FIELD_DATE_LONG_POINT));
+        return query(query, this::toAlbums);
+    }
+
+    /**
+     * Album overview with two additional queries per album.
+     * 
+     * Superseded by {@link #albums()}, kept as baseline for the album overview benchmark.
+     */
+    List<Album> albumsByAlbumQueries() throws IOException {
+        List<Album> albums = new ArrayList<>();
+        for (Entry<String, Long> albumCount : countAlbums().entrySet()) {
+            LocalDate begin = findAlbumBoundary(albumCount.getKey(), ORDER.asc);
+            LocalDate end = findAlbumBoundary(albumCount.getKey(), ORDER.desc);
+            albums.add(new Album(albumCount.getKey(), albumCount.getValue(), begin, end));
+        }
+        return albums;
+    }
+
+    private Map<String, Long> countAlbums() throws IOException {
+        SolrQuery query = new SolrQuery();
+        query.setQuery("*:*");
+        query.setRows(0);
+        query.setFacet(true);
+        query.setFacetLimit(-1);
+        query.setFacetMinCount(1);
+        query.addFacetField(Index.FIELD_ALBUMS);
+        return query(query, response -> response.getFacetField(Index.FIELD_ALBUMS).getValues().stream()
+                .collect(Collectors.toMap(FacetField.Count::getName, FacetField.Count::getCount)));
+    }
+
+    private LocalDate findAlbumBoundary(String album, ORDER order) throws IOException {
+        SolrQuery query = new SolrQuery();
+        query.setQuery(Index.queryString(Index.FIELD_ALBUMS, album));
+        query.setSort(Index.FIELD_DATE_LONG_POINT, order);
+        query.setRows(1);
+        return query(query, response -> response.getResults().stream().map(result -> Index.longPointToLocalDate(result.get(Index.FIELD_DATE_LONG_POINT).toString())).findAny().get());
+    }
+
+    @Override
+    public void close() {
+        solrConnection.close();
+    }
+
+    private SolrInputDocument toSolrDocument(IndexDocument indexDocument) {
+        SolrInputDocument document = new SolrInputDocument();
+        document.addField(Index.FIELD_ID, indexDocument.getFileName());
+        document.addField(Index.FIELD_DESCRIPTION, indexDocument.getDescription());
+        document.addField(Index.FIELD_ALBUMS, indexDocument.getAlbums());
+        document.addField(Index.FIELD_DATETIME_ORIGINAL, indexDocument.getDateTimeOriginal().toString());
+        document.addField(Index.FIELD_DATE_LONG_POINT, indexDocument.getDateLongPoint());
+        document.addField(Index.FIELD_DATETIME_LONG_POINT, indexDocument.getDateTimeLongPoint());
+        document.addField(Index.FIELD_YEAR_LONG_POINT, indexDocument.getYearLongPoint());
+        document.addField(Index.FIELD_YEAR_MONTH_LONG_POINT, indexDocument.getYearMonthLongPoint());
+        document.addField(Index.FIELD_LAST_MODIFIED, indexDocument.getLastModified());
+        return document;
+    }
+
+    private List<MediaFile> toMediaFiles(QueryResponse response) {
+        return response.getResults().stream().map(this::toMediaFile).collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private MediaFile toMediaFile(SolrDocument doc) {
+        String fileName = doc.get(Index.FIELD_ID).toString();
+        String description = doc.get(Index.FIELD_DESCRIPTION)!=null ? doc.get(Index.FIELD_DESCRIPTION).toString() : null;
+        List<String> albums = doc.get(Index.FIELD_ALBUMS) instanceof List<?> ? (List<String>)doc.get(Index.FIELD_ALBUMS) : null;
+        return new MediaFile(fileName, description, albums);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Album> toAlbums(QueryResponse response) {
+        NamedList<Object> facets = (NamedList<Object>) response.getResponse().get("facets");
+        NamedList<Object> albumFacet = facets != null ? (NamedList<Object>) facets.get("albums") : null;
+        if (albumFacet == null) {
+            return Collections.emptyList();
+        }
+        List<NamedList<Object>> buckets = (List<NamedList<Object>>) albumFacet.get("buckets");
+        return buckets.stream().map(bucket -> new Album(
+                bucket.get("val").toString(),
+                ((Number) bucket.get("count")).longValue(),
+                toLocalDate((Number) bucket.get("begin")),
+                toLocalDate((Number) bucket.get("end"))))
+                .collect(Collectors.toList());
+    }
+
+    private static LocalDate toLocalDate(Number longPoint) {
+        return Index.longPointToLocalDate(Long.toString(longPoint.longValue()));
+    }
+
+    /**
+     * Executes given query and maps the result with the given extractor.
+     * @param query SolrQuery
+     * @param responseExtractor Extracts Response Type from Query
+     * @return extracted result
+     */
+    private <R> R query(SolrQuery query, Function<QueryResponse, R> responseExtractor) throws IOException {
+        try {
+            QueryResponse response = solrConnection.getClient().query(query);
+            return responseExtractor.apply(response);
+        } catch (SolrServerException e) {
+            throw new IOException("Error during Solr query.", e);
+        }
+    }
+
+    private <R> R update(SolrUpdate<R> update) throws IOException {
+        try {
+            return update.apply(solrConnection.getClient());
+        } catch (SolrServerException e) {
+            throw new IOException("Error during Solr update.", e);
+        }
+    }
+
+    @FunctionalInterface
+    private static interface SolrUpdate<R> {
+        R apply(SolrClient solr) throws SolrServerException, IOException;
+    }
+}
@@ -0,0 +1,66 @@
+package de.zaunkoenigweg.biography.core.index;
+
+import java.time.LocalDate;
+
+import de.zaunkoenigweg.biography.core.MediaFileName;
+
+/**
+ * Position in the timeline of all media files, which is ordered by datetime/original and file name.
+ *
+ * A position is either a media file or the point before all media files of a day. The key of a media file is
+ * derived from its file name, which contains the datetime/original of all indexed (valid) media files.
+ */
+public class TimelineKey {
+
+    private static final TimelineKey END = new TimelineKey(Long.MAX_VALUE, "");
+
+    private long dateTimeLongPoint;
+    private String fileName;
+
+    private TimelineKey(long dateTimeLongPoint, String fileName) {
+        this.dateTimeLongPoint = dateTimeLongPoint;
+        this.fileName = fileName;
+    }
+
+    /**
+     * @param fileName file name of a media file
+     * @return position of the media file
+     * @throws IllegalArgumentException if the file name is not valid
+     */
+    public static TimelineKey of(String fileName) {
+        if (!MediaFileName.isValid(fileName)) {
+            throw new IllegalArgumentException(String.format("Invalid media file name '%s'.", fileName));
+        }
+        return new TimelineKey(Long.parseLong(Index.localDateTimeToLongPoint(MediaFileName.of(fileName).getDateTimeOriginal())), fileName);
+    }
+
+    /**
+     * @return position before the first media file of the given day
+     */
+    public static TimelineKey startOf(LocalDate date) {
+        return new TimelineKey(Long.parseLong(Index.localDateTimeToLongPoint(date.atStartOfDay())), "");
+    }
+
+    /**
+     * @return position after the last media file
+     */
+    public static TimelineKey end() {
+        return END;
+    }
+
+    long getDateTimeLongPoint() {
+        return dateTimeLongPoint;
+    }
+
+    /**
+     * @return file name, empty if the position is not a media file
+     */
+    String getFileName() {
+        return fileName;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d|%s", dateTimeLongPoint, fileName);
+    }
+}
@@ -40,7 +40,18 @@ public class MetadataService {
      * @param metadata Biography metadata
      */
     public void writeMetadataIntoExif(File file, BiographyMetadata metadata) {
-        ExifData exifData = exifDataService.readExifData(file);
+        writeMetadataIntoExif(file, exifDataService.readExifData(file), metadata);
+    }
+
+    /**
+     * Writes Biography metadata into EXIF data of a file whose EXIF data has already been read.
+     * 
+     * @param file File to write the Metatada into (as EXIF).
+     * @param exifData current EXIF data of the file, is changed by this method
+     * @param metadata Biography metadata
+     * @see #writeMetadataIntoExif(File, BiographyMetadata)
+     */
+    public void writeMetadataIntoExif(File file, ExifData exifData, BiographyMetadata metadata) {
         exifData.setDateTimeOriginal(metadata.getDateTimeOriginal());
         exifData.setDescription(metadata.getDescription());
         exifData.setUserComment(metadata.toJson());
@@ -59,7 +70,17 @@ public class MetadataService {
      * @return Biography metadata, {@code null} if it cannot be read.
      */
     public BiographyMetadata readMetadataFromExif(File file) {
-        ExifData exifData = exifDataService.readExifData(file);
+        return readMetadataFromExif(exifDataService.readExifData(file));
+    }
+
+    /**
+     * Reads Biography metadata from EXIF data that has already been read.
+     * 
+     * @param exifData EXIF data, may be {@code null}
+     * @return Biography metadata, {@code null} if it cannot be read.
+     * @see #readMetadataFromExif(File)
+     */
+    public BiographyMetadata readMetadataFromExif(ExifData exifData) {
         if(exifData==null) {
             return null;
         }
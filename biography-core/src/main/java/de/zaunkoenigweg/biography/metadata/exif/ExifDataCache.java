@@ -0,0 +1,304 @@
+package de.zaunkoenigweg.biography.metadata.exif;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+
+/**
+ * Persistent cache of the EXIF data read from media files.
+ *
+ * Reading EXIF data means a round trip to exiftool, so the parsed data is kept in two levels:
+ * A size bounded in-memory cache and one small JSON file per media file in the cache folder,
+ * which survives restarts.
+ *
+ * Entries are keyed by the absolute path of the media file and are only valid as long as
+ * size and last modification time of the file are unchanged. The Biography metadata is
+ * stored in the EXIF user comment, so it is cached along with the EXIF data.
+ *
+ * Files without (readable) EXIF data are cached as well, so they are not read over and over again.
+ *
+ * The entries of files that have been deleted or moved are removed with {@link #prune(Predicate)}.
+ */
+@Component
+public class ExifDataCache {
+
+    private final static Log LOG = LogFactory.getLog(ExifDataCache.class);
+
+    private static final Gson GSON = new Gson();
+
+    private File exifCacheFolder;
+
+    private Cache<String, CacheEntry> memoryCache;
+
+    private AtomicLong memoryHits = new AtomicLong();
+    private AtomicLong diskHits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+    private AtomicLong invalidations = new AtomicLong();
+
+    public ExifDataCache(File exifCacheFolder, Integer exifCacheMaxEntries) {
+        this.exifCacheFolder = exifCacheFolder;
+        this.memoryCache = CacheBuilder.newBuilder()
+                .maximumSize(exifCacheMaxEntries)
+                .build();
+        if(!exifCacheFolder.exists() && !exifCacheFolder.mkdirs()) {
+            throw new IllegalStateException(String.format("The EXIF cache folder %s cannot be created.", exifCacheFolder.getAbsolutePath()));
+        }
+        LOG.info("ExifDataCache started.");
+        LOG.info(String.format("exifCacheFolder=%s", this.exifCacheFolder));
+        LOG.info(String.format("exifCacheMaxEntries=%d", exifCacheMaxEntries));
+    }
+
+    /**
+     * Gets the EXIF data of the given file from the cache or reads it with the given loader.
+     *
+     * The loaded data is put into the cache.
+     *
+     * @param file media file, must exist
+     * @param loader reads the EXIF data of the file, may return {@code null} if there is none.
+     * @return EXIF data, {@code null} if the file has none.
+     */
+    public ExifData get(File file, Function<File, ExifData> loader) {
+        String key = file.getAbsolutePath();
+        long size = file.length();
+        long lastModified = file.lastModified();
+
+        CacheEntry entry = memoryCache.getIfPresent(key);
+        if(entry!=null && entry.isValidFor(size, lastModified)) {
+            memoryHits.incrementAndGet();
+            return entry.toExifData();
+        }
+
+        entry = readEntry(key);
+        if(entry!=null && entry.isValidFor(size, lastModified)) {
+            diskHits.incrementAndGet();
+            memoryCache.put(key, entry);
+            return entry.toExifData();
+        }
+
+        misses.incrementAndGet();
+        ExifData exifData = loader.apply(file);
+        entry = new CacheEntry(key, size, lastModified, exifData);
+        memoryCache.put(key, entry);
+        writeEntry(entry);
+        return exifData;
+    }
+
+    /**
+     * Is there valid cached EXIF data for the given file?
+     *
+     * This does not count as hit or miss.
+     *
+     * @param file media file
+     * @return Is there valid cached EXIF data for the given file?
+     */
+    public boolean contains(File file) {
+        String key = file.getAbsolutePath();
+        long size = file.length();
+        long lastModified = file.lastModified();
+        CacheEntry entry = memoryCache.getIfPresent(key);
+        if(entry==null) {
+            entry = readEntry(key);
+        }
+        return entry!=null && entry.isValidFor(size, lastModified);
+    }
+
+    /**
+     * Removes the cached EXIF data of the given file.
+     *
+     * @param file media file
+     */
+    public void invalidate(File file) {
+        String key = file.getAbsolutePath();
+        memoryCache.invalidate(key);
+        File entryFile = entryFile(key);
+        if(entryFile.exists() && !entryFile.delete()) {
+            LOG.warn(String.format("EXIF cache entry %s could not be deleted.", entryFile.getAbsolutePath()));
+        }
+        invalidations.incrementAndGet();
+    }
+
+    /**
+     * Removes the entries of media files that no longer exist or are not to be cached (any longer),
+     * from memory and from the cache folder. Entries that cannot be read are removed as well.
+     *
+     * @param retain Is the entry of this (existing) file to be kept?
+     * @return number of removed entries
+     */
+    public int prune(Predicate<File> retain) {
+        int removed = 0;
+        File[] entryFolders = exifCacheFolder.listFiles(File::isDirectory);
+        if(entryFolders==null) {
+            return removed;
+        }
+        for(File entryFolder : entryFolders) {
+            File[] entryFiles = entryFolder.listFiles(file -> file.getName().endsWith(".json"));
+            if(entryFiles==null) {
+                continue;
+            }
+            for(File entryFile : entryFiles) {
+                CacheEntry entry = readEntryFile(entryFile);
+                if(entry!=null) {
+                    File file = new File(entry.path);
+                    if(file.isFile() && retain.test(file)) {
+                        continue;
+                    }
+                    memoryCache.invalidate(entry.path);
+                }
+                if(entryFile.delete()) {
+                    removed++;
+                } else {
+                    LOG.warn(String.format("EXIF cache entry %s could not be deleted.", entryFile.getAbsolutePath()));
+                }
+            }
+        }
+        return removed;
+    }
+
+    public Statistics getStatistics() {
+        return new Statistics(memoryHits.get(), diskHits.get(), misses.get(), invalidations.get(), memoryCache.size());
+    }
+
+    private CacheEntry readEntry(String key) {
+        File entryFile = entryFile(key);
+        if(!entryFile.exists()) {
+            return null;
+        }
+        CacheEntry entry = readEntryFile(entryFile);
+        // guard against (very unlikely) hash collisions
+        return entry!=null && key.equals(entry.path) ? entry : null;
+    }
+
+    /**
+     * @return cache entry, {@code null} if the entry file cannot be read
+     */
+    private CacheEntry readEntryFile(File entryFile) {
+        try {
+            CacheEntry entry = GSON.fromJson(FileUtils.readFileToString(entryFile, StandardCharsets.UTF_8), CacheEntry.class);
+            return entry!=null && entry.path!=null ? entry : null;
+        } catch (IOException | JsonSyntaxException e) {
+            LOG.warn(String.format("EXIF cache entry %s could not be read.", entryFile.getAbsolutePath()), e);
+            return null;
+        }
+    }
+
+    private void writeEntry(CacheEntry entry) {
+        File entryFile = entryFile(entry.path);
+        try {
+            FileUtils.forceMkdir(entryFile.getParentFile());
+            File tempFile = Files.createTempFile(entryFile.getParentFile().toPath(), entryFile.getName(), ".tmp").toFile();
+            FileUtils.write(tempFile, GSON.toJson(entry), StandardCharsets.UTF_8);
+            Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn(String.format("EXIF cache entry %s could not be written.", entryFile.getAbsolutePath()), e);
+        }
+    }
+
+    private File entryFile(String key) {
+        String hash = DigestUtils.sha1Hex(key);
+        return new File(new File(exifCacheFolder, hash.substring(0, 2)), hash + ".json");
+    }
+
+    /**
+     * Cached EXIF data of one media file, as stored in the cache folder.
+     */
+    private static class CacheEntry {
+
+        private String path;
+        private long size;
+        private long lastModified;
+        private boolean present;
+        private String dateTimeOriginal;
+        private String description;
+        private String userComment;
+
+        /**
+         * This constructor is just used to create a cache entry through Gson.
+         */
+        @SuppressWarnings("unused")
+        private CacheEntry() {
+        }
+
+        private CacheEntry(String path, long size, long lastModified, ExifData exifData) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.present = exifData!=null;
+            if(exifData!=null) {
+                this.dateTimeOriginal = exifData.getDateTimeOriginal().toString();
+                this.description = exifData.getDescription().orElse(null);
+                this.userComment = exifData.getUserComment().orElse(null);
+            }
+        }
+
+        private boolean isValidFor(long size, long lastModified) {
+            return this.size==size && this.lastModified==lastModified;
+        }
+
+        /**
+         * @return a new EXIF data object (as {@link ExifData} is mutable), {@code null} if the file has none.
+         */
+        private ExifData toExifData() {
+            if(!present) {
+                return null;
+            }
+            ExifData exifData = new ExifData(LocalDateTime.parse(dateTimeOriginal));
+            exifData.setDescription(description);
+            exifData.setUserComment(userComment);
+            return exifData;
+        }
+    }
+
+    public static class Statistics {
+
+        private long memoryHits;
+        private long diskHits;
+        private long misses;
+        private long invalidations;
+        private long memoryEntries;
+
+        private Statistics(long memoryHits, long diskHits, long misses, long invalidations, long memoryEntries) {
+            this.memoryHits = memoryHits;
+            this.diskHits = diskHits;
+            this.misses = misses;
+            this.invalidations = invalidations;
+            this.memoryEntries = memoryEntries;
+        }
+
+        public long getMemoryHits() {
+            return memoryHits;
+        }
+
+        public long getDiskHits() {
+            return diskHits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getInvalidations() {
+            return invalidations;
+        }
+
+        public long getMemoryEntries() {
+            return memoryEntries;
+        }
+    }
+}
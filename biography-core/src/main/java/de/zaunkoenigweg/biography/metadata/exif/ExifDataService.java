@@ -2,8 +2,11 @@ package de.zaunkoenigweg.biography.metadata.exif;
 
 import java.io.File;
 import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -17,6 +20,10 @@ import de.zaunkoenigweg.lexi4j.exiftool.Exiftool;
  * Read/Write EXIF data.
  * 
  * This service wraps the {@link de.zaunkoenigweg.lexi4j.exiftool.Exiftool}.
+ * 
+ * The service can be used concurrently. Lexi4J does not guarantee that the Exiftool can be used
+ * by several threads at once, so all calls of the Exiftool are serialized. Concurrent callers only
+ * read from the {@link ExifDataCache} in parallel.
  */
 @Component
 public class ExifDataService {
@@ -28,28 +35,56 @@ public class ExifDataService {
      */
     private Exiftool exiftool;
 
+    /**
+     * guards all calls of the {@link #exiftool}
+     */
+    private final Object exiftoolLock = new Object();
+
     /**
      * Biography archive
      */
     private Archive archive;
 
-    public ExifDataService(Archive archive) {
+    /**
+     * persistent cache of the EXIF data read by exiftool
+     */
+    private ExifDataCache exifDataCache;
+
+    public ExifDataService(Archive archive, ExifDataCache exifDataCache) {
         this.exiftool = new Exiftool();
         this.archive = archive;
+        this.exifDataCache = exifDataCache;
         LOG.info("ExifDataService started.");
 	}
     
     /**
      * Read EXIF data from the given file
+     * 
+     * The data of files in the archive is taken from the {@link ExifDataCache} if the file has not changed since
+     * it was cached. Other files (e.g. in the import folder, which are moved or deleted right away) are not cached.
+     * 
      * @param media file
      * @return EXIF Data, {@code null} if data cannot be read.
      * TODO consider Optional
      */
     public ExifData readExifData(File file) {
+        if(file==null || !file.isFile() || !isInArchive(file)) {
+            return readExifDataFromFile(file);
+        }
+        return exifDataCache.get(file, this::readExifDataFromFile);
+    }
+
+    private boolean isInArchive(File file) {
+        return file.getAbsoluteFile().toPath().normalize().startsWith(archive.getArchiveFolder().getAbsoluteFile().toPath().normalize());
+    }
+
+    private ExifData readExifDataFromFile(File file) {
         ExifData exifData;
         Optional<de.zaunkoenigweg.lexi4j.exiftool.ExifData> rawExifData;
         try {
-            rawExifData = this.exiftool.read(file);
+            synchronized (exiftoolLock) {
+                rawExifData = this.exiftool.read(file);
+            }
             if(!rawExifData.isPresent()) {
                 return null;
             }
@@ -66,24 +101,44 @@ public class ExifDataService {
      * @param newExifData EXIF data to write
      */
     public void writeExifData(File file, ExifData newExifData) {
-        this.exiftool.update(file)
-            .withDateTimeOriginal(newExifData.getDateTimeOriginal().truncatedTo(ChronoUnit.SECONDS))
-            .withSubsecTimeOriginal(newExifData.getDateTimeOriginal().getNano() / 1_000_000)
-            .withImageDescription(newExifData.getDescription().orElse(""))
-            .withUserComment(newExifData.getUserComment().orElse(""))
-            .perform();
+        synchronized (exiftoolLock) {
+            this.exiftool.update(file)
+                .withDateTimeOriginal(newExifData.getDateTimeOriginal().truncatedTo(ChronoUnit.SECONDS))
+                .withSubsecTimeOriginal(newExifData.getDateTimeOriginal().getNano() / 1_000_000)
+                .withImageDescription(newExifData.getDescription().orElse(""))
+                .withUserComment(newExifData.getUserComment().orElse(""))
+                .perform();
+        }
+        exifDataCache.invalidate(file);
     }
 
     /**
-     * Fills the cache of the Exiftool
+     * Fills the EXIF data cache from the archive.
+     * 
+     * Per media folder, the Exiftool reads all JPEG files in one go. Files that are already
+     * cached (and unchanged) are skipped, so after a restart only new or changed files are read.
+     * Finally, the cache entries of files that no longer exist in the archive are removed.
+     * 
      * @param console console output stream
      */
     public void fillCacheFromArchive(Consumer<String> console) {
         archive.mediaFolders().stream().forEach(mediaFolder -> {
-            this.exiftool.fillCache(mediaFolder + "/*.jpg");
-            console.accept(String.format("Cached EXIF data from %s", mediaFolder));
+            List<File> jpegFiles = Arrays.stream(mediaFolder.listFiles())
+                    .filter(File::isFile)
+                    .filter(file -> MediaFileType.of(file).filter(ExifDataService::supports).isPresent())
+                    .collect(Collectors.toList());
+            ExifDataCache.Statistics before = exifDataCache.getStatistics();
+            // let the Exiftool batch-read the folder only if something is missing in the cache
+            if(jpegFiles.stream().anyMatch(file -> !exifDataCache.contains(file))) {
+                synchronized (exiftoolLock) {
+                    this.exiftool.fillCache(mediaFolder + "/*.jpg");
+                }
+            }
+            jpegFiles.forEach(this::readExifData);
+            ExifDataCache.Statistics after = exifDataCache.getStatistics();
+            console.accept(String.format("Cached EXIF data from %s (%d files, %d read by exiftool)", mediaFolder, jpegFiles.size(), after.getMisses() - before.getMisses()));
         });
-        
+        console.accept(String.format("Removed %d cache entries of files that are no longer in the archive.", exifDataCache.prune(this::isInArchive)));
     }
     
     /**
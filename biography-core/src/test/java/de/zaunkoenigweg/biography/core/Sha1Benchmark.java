@@ -0,0 +1,142 @@
+package de.zaunkoenigweg.biography.core;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Measures throughput and allocation of {@link Sha1#calculate(File)} for video files of growing size
+ * (streamed through the read buffer) and for JPEG images of growing resolution (digested from the
+ * {@link DataBufferByte} of the decoded image).
+ * The allocated direct memory is reported separately, it is not included in the allocated bytes of the thread.
+ * 
+ * The files are generated in a temporary folder. The video sizes are doubled from 1 MB up to and including
+ * the largest size (in MB), which is passed as system property {@value #MAX_SIZE_PROPERTY}, e.g. 2048.
+ * Otherwise the benchmark is skipped.
+ * 
+ * Not part of the regular test run, start it explicitly:
+ * {@code mvn test -Dtest=Sha1Benchmark -Dbiography.benchmark.sha1.max-size-mb=2048}
+ */
+public class Sha1Benchmark {
+
+    private static final String MAX_SIZE_PROPERTY = "biography.benchmark.sha1.max-size-mb";
+    private static final int MB = 1024 * 1024;
+    private static final int ROUNDS = 3;
+    private static final int[] JPEG_MEGAPIXELS = { 1, 4, 12, 24 };
+
+    private int maxSizeMb;
+    private File someFolder;
+
+    @Before
+    public void setUp() throws IOException {
+        String maxSize = System.getProperty(MAX_SIZE_PROPERTY);
+        Assume.assumeNotNull(maxSize);
+        maxSizeMb = Integer.parseInt(maxSize);
+        someFolder = Files.createTempDirectory("sha1Benchmark").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        if (someFolder != null) {
+            for (File file : someFolder.listFiles()) {
+                file.delete();
+            }
+            someFolder.delete();
+        }
+    }
+
+    @Test
+    public void benchmarkVideo() throws IOException {
+        for (int sizeMb : videoSizesMb()) {
+            File file = createVideoFile(sizeMb);
+            measure(file, String.format("%6d MB video", sizeMb), sizeMb, "MB");
+            file.delete();
+        }
+    }
+
+    @Test
+    public void benchmarkJpeg() throws IOException {
+        for (int megapixels : JPEG_MEGAPIXELS) {
+            File file = createJpegFile(megapixels);
+            measure(file, String.format("%6d MP JPEG (%d MB)", megapixels, file.length() / MB), megapixels, "MP");
+            file.delete();
+        }
+    }
+
+    /**
+     * @return 1, 2, 4, ... MB, the maximum size is always the last one
+     */
+    private List<Integer> videoSizesMb() {
+        List<Integer> sizesMb = new ArrayList<>();
+        for (int sizeMb = 1; sizeMb < maxSizeMb; sizeMb *= 2) {
+            sizesMb.add(sizeMb);
+        }
+        sizesMb.add(maxSizeMb);
+        return sizesMb;
+    }
+
+    private void measure(File file, String label, double units, String unit) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        BufferPoolMXBean directBuffer = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(bufferPool -> "direct".equals(bufferPool.getName()))
+                .findFirst()
+                .get();
+        // warm up and fill the page cache, so the disk speed does not dominate
+        assertNotNull(Sha1.calculate(file));
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        long directBefore = directBuffer.getTotalCapacity();
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            assertNotNull(Sha1.calculate(file));
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long allocated = (threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore) / ROUNDS;
+        long direct = directBuffer.getTotalCapacity() - directBefore;
+        System.out.println(String.format("%s: %8.1f %s/s, %10d bytes allocated per file, %10d bytes of direct memory held additionally",
+                label, units * ROUNDS / seconds, unit, allocated, direct));
+    }
+
+    private File createVideoFile(int sizeMb) throws IOException {
+        File file = new File(someFolder, String.format("video-%d.mov", sizeMb));
+        byte[] chunk = new byte[MB];
+        Random random = new Random(sizeMb);
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            for (int i = 0; i < sizeMb; i++) {
+                random.nextBytes(chunk);
+                out.write(chunk);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Creates a 4:3 JPEG image with noise, so the compression does not make it unrealistically small.
+     */
+    private File createJpegFile(int megapixels) throws IOException {
+        int width = (int) Math.sqrt(megapixels * 1_000_000 * 4 / 3);
+        int height = width * 3 / 4;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        new Random(megapixels).nextBytes(((DataBufferByte) image.getRaster().getDataBuffer()).getData());
+        File file = new File(someFolder, String.format("image-%d.jpg", megapixels));
+        ImageIO.write(image, "jpg", file);
+        return file;
+    }
+}
@@ -4,7 +4,9 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.Random;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -63,6 +65,22 @@ public class Sha1Test {
         assertEquals("7648bf4572edc4e71ed7992db4071e08b1a57597", Sha1.calculate(new File(getClass().getResource("/exifdatatest/NikonD60.jpg").getFile())).value());
     }
 
+    @Test
+    public void testSha1Video() throws IOException {
+        File file = new File(getClass().getResource("/archivevalidationservicetest/2017-09-21--18-39-22---139acab5f70c6ecafa73634a9cb6885b1835ce5c.mov").getFile());
+        assertEquals(DigestUtils.sha1Hex(Files.readAllBytes(file.toPath())), Sha1.calculate(file).value());
+        assertEquals("139acab5f70c6ecafa73634a9cb6885b1835ce5c", Sha1.calculate(file).value());
+    }
+
+    @Test
+    public void testSha1VideoLargerThanReadBuffer() throws IOException {
+        File file = new File(someFolder, "video.mov");
+        byte[] content = new byte[3 * 1024 * 1024 + 17];
+        new Random(42).nextBytes(content);
+        Files.write(file.toPath(), content);
+        assertEquals(DigestUtils.sha1Hex(content), Sha1.calculate(file).value());
+    }
+
     @Test
     public void testSha1AfterExifChange() throws IOException {
         File sourceFile = new File(getClass().getResource("/exifdatatest/NikonD60.jpg").getFile());
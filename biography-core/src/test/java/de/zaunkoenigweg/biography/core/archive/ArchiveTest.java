@@ -4,12 +4,14 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 public class ArchiveTest {
 	
@@ -125,4 +127,58 @@ public class ArchiveTest {
     	assertEquals("04", mediaFiles.get(6).getParentFile().getName());
     	assertEquals("2016-04-11--12-43-14---335f45c087c9937a772a45a8e5bc755d705a5ab5.jpg", mediaFiles.get(6).getName());
     }
+
+    @Test
+    public void testMediaFileStream() throws IOException {
+    	File folder = null;
+    	folder = new File(biographyArchiveFolder, "2016/04");
+    	folder.mkdirs();
+    	new File(folder, "2016-04-11--12-41-14---335f45c087c9937a772a45a8e5bc755d705a5ab5.jpg").createNewFile();
+    	new File(folder, "2016-04-11--12-40-14---335f45c087c9937a772a45a8e5bc755d705a5ab5.jpg").createNewFile();
+    	new File(folder, "someFile.txt").createNewFile();
+    	// directory with a media file name, it must be skipped
+    	assertTrue(new File(folder, "2016-04-11--12-42-14---335f45c087c9937a772a45a8e5bc755d705a5ab5.jpg").mkdir());
+    	folder = new File(biographyArchiveFolder, "2016/03");
+    	folder.mkdirs();
+    	new File(folder, "2016-03-11--12-40-14---335f45c087c9937a772a45a8e5bc755d705a5ab5.jpg").createNewFile();
+    	List<File> mediaFiles = this.sut.mediaFileStream().collect(Collectors.toList());
+    	assertEquals(3, mediaFiles.size());
+    	assertEquals("2016-03-11--12-40-14---335f45c087c9937a772a45a8e5bc755d705a5ab5.jpg", mediaFiles.get(0).getName());
+    	assertEquals("2016-04-11--12-40-14---335f45c087c9937a772a45a8e5bc755d705a5ab5.jpg", mediaFiles.get(1).getName());
+    	assertEquals("2016-04-11--12-41-14---335f45c087c9937a772a45a8e5bc755d705a5ab5.jpg", mediaFiles.get(2).getName());
+    }
+
+    @Test
+    public void testEntries() throws IOException {
+    	File folder = new File(biographyArchiveFolder, "2016/04");
+    	folder.mkdirs();
+    	File file = new File(folder, "2016-04-11--12-41-14---335f45c087c9937a772a45a8e5bc755d705a5ab5.jpg");
+    	Files.write(file.toPath(), new byte[] {1, 2, 3});
+    	new File(folder, "2016-04-11--12-40-14---335f45c087c9937a772a45a8e5bc755d705a5ab5.jpg").mkdir();
+    	new File(folder, "someFile.txt").createNewFile();
+    	List<ArchiveEntry> entries = this.sut.entries().collect(Collectors.toList());
+    	assertEquals(1, entries.size());
+    	assertEquals(file.getName(), entries.get(0).getFileName());
+    	assertEquals(3, entries.get(0).getSize());
+    	assertEquals(file.lastModified(), entries.get(0).getLastModified());
+    	assertEquals(file, entries.get(0).toFile());
+    }
+
+    @Test
+    public void testCountAndStatistics() throws IOException {
+    	File folder = new File(biographyArchiveFolder, "2016/04");
+    	folder.mkdirs();
+    	Files.write(new File(folder, "2016-04-11--12-41-14---335f45c087c9937a772a45a8e5bc755d705a5ab5.jpg").toPath(), new byte[] {1, 2, 3});
+    	new File(folder, "someFile.txt").createNewFile();
+    	// directory with a media file name, it must be skipped
+    	assertTrue(new File(folder, "2016-04-11--12-42-14---335f45c087c9937a772a45a8e5bc755d705a5ab5.jpg").mkdir());
+    	folder = new File(biographyArchiveFolder, "2016/03");
+    	folder.mkdirs();
+    	Files.write(new File(folder, "2016-03-11--12-40-14---335f45c087c9937a772a45a8e5bc755d705a5ab5.jpg").toPath(), new byte[] {1, 2});
+    	assertEquals(2, this.sut.count());
+    	Archive.Statistics statistics = this.sut.statistics();
+    	assertEquals(2, statistics.getMediaFolders());
+    	assertEquals(2, statistics.getMediaFiles());
+    	assertEquals(5, statistics.getTotalSize());
+    }
 }
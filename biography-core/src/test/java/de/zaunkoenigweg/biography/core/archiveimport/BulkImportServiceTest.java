@@ -0,0 +1,148 @@
+package de.zaunkoenigweg.biography.core.archiveimport;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import de.zaunkoenigweg.biography.core.archive.Archive;
+import de.zaunkoenigweg.biography.metadata.exif.ExifData;
+import de.zaunkoenigweg.biography.metadata.exif.ExifDataService;
+
+public class BulkImportServiceTest {
+
+    private File importFolder;
+    private BulkImportService sut;
+
+    @Before
+    public void setUp() throws IOException {
+        File archiveFolder = Files.createTempDirectory("biographyArchiveFolder").toFile();
+        archiveFolder.deleteOnExit();
+        importFolder = Files.createTempDirectory("importFolder").toFile();
+        importFolder.deleteOnExit();
+        Archive archive = new Archive(archiveFolder);
+        ThumbnailService thumbnailService = new ThumbnailService(archive, importFolder, new ThumbnailSizes(new int[] {200}, new int[] {200}, 200));
+        ExifDataService exifDataService = new ExifDataService(archive, null) {
+            @Override
+            public ExifData readExifData(File file) {
+                return null;
+            }
+        };
+        sut = new BulkImportService(null, thumbnailService, null, exifDataService, importFolder, 1, 1, 2);
+    }
+
+    @After
+    public void tearDown() {
+        sut.destroy();
+    }
+
+    @Test
+    public void testNameUUIDFromMd5() {
+        byte[] content = new byte[10000];
+        new Random(42).nextBytes(content);
+        assertEquals(UUID.nameUUIDFromBytes(content), BulkImportService.nameUUIDFromMd5(DigestUtils.md5(content)));
+    }
+
+    @Test
+    public void testUpload() throws IOException {
+        byte[] content = new byte[100000];
+        new Random(42).nextBytes(content);
+        UUID uuid = UUID.nameUUIDFromBytes(content);
+
+        assertTrue(sut.upload("IMG_0001.jpg", new ByteArrayInputStream(content)));
+
+        File file = new File(importFolder, uuid + ".jpg");
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        assertTrue(sut.getImportJob().get(uuid).isPresent());
+        assertEquals("IMG_0001.jpg", sut.getImportJob().get(uuid).get().getOriginalFileName());
+        // no temp files left
+        assertEquals(1, importFolder.listFiles(File::isFile).length);
+    }
+
+    @Test
+    public void testChunkedUpload() throws IOException {
+        byte[] content = new byte[100000];
+        new Random(42).nextBytes(content);
+        UUID uuid = UUID.nameUUIDFromBytes(content);
+
+        ChunkedUpload upload = sut.initiateUpload("VID_0001.mp4", content.length).get();
+        assertTrue(sut.getChunkedUpload(upload.getId()).isPresent());
+
+        byte[] secondChunk = Arrays.copyOfRange(content, 60000, 100000);
+        sut.uploadChunk(upload, 60000, new ByteArrayInputStream(secondChunk), DigestUtils.sha1Hex(secondChunk));
+        assertFalse(sut.completeUpload(upload));
+        assertFalse(sut.getImportJob().get(uuid).isPresent());
+
+        byte[] firstChunk = Arrays.copyOfRange(content, 0, 60000);
+        sut.uploadChunk(upload, 0, new ByteArrayInputStream(firstChunk), DigestUtils.sha1Hex(firstChunk));
+        assertTrue(sut.completeUpload(upload));
+
+        assertArrayEquals(content, Files.readAllBytes(new File(importFolder, uuid + ".mp4").toPath()));
+        assertTrue(sut.getImportJob().get(uuid).isPresent());
+        assertFalse(sut.getChunkedUpload(upload.getId()).isPresent());
+    }
+
+    @Test
+    public void testCompleteChunkedUploadRepeatedly() throws IOException {
+        byte[] content = new byte[1000];
+        new Random(42).nextBytes(content);
+        UUID uuid = UUID.nameUUIDFromBytes(content);
+
+        ChunkedUpload upload = sut.initiateUpload("VID_0001.mp4", content.length).get();
+        sut.uploadChunk(upload, 0, new ByteArrayInputStream(content), DigestUtils.sha1Hex(content));
+
+        assertTrue(sut.completeUpload(upload));
+        // e.g. a retry of the client, who has not received the first response
+        assertTrue(sut.completeUpload(upload));
+        assertEquals(1, sut.getImportJob().getImportFiles().size());
+        assertTrue(new File(importFolder, uuid + ".mp4").exists());
+    }
+
+    @Test
+    public void testExpireUploads() throws IOException {
+        ChunkedUpload upload = sut.initiateUpload("VID_0001.mp4", 1000).get();
+        File uploadsFolder = new File(importFolder, "uploads");
+        File orphanedPartFile = new File(uploadsFolder, UUID.randomUUID() + ".part");
+        Files.write(orphanedPartFile.toPath(), new byte[] {1, 2, 3});
+
+        sut.expireUploads(60000);
+        assertTrue(sut.getChunkedUpload(upload.getId()).isPresent());
+        assertEquals(2, uploadsFolder.listFiles().length);
+
+        sut.expireUploads(-60000);
+        assertFalse(sut.getChunkedUpload(upload.getId()).isPresent());
+        assertEquals(0, uploadsFolder.listFiles().length);
+    }
+
+    @Test
+    public void testAbortChunkedUpload() {
+        ChunkedUpload upload = sut.initiateUpload("VID_0001.mp4", 1000).get();
+        sut.abortUpload(upload);
+        assertFalse(sut.getChunkedUpload(upload.getId()).isPresent());
+        assertEquals(0, new File(importFolder, "uploads").listFiles().length);
+    }
+
+    @Test
+    public void testInitiateUploadUnknownMediaFileType() {
+        assertFalse(sut.initiateUpload("notes.txt", 1000).isPresent());
+    }
+
+    @Test
+    public void testUploadUnknownMediaFileType() {
+        assertFalse(sut.upload("notes.txt", new ByteArrayInputStream(new byte[] {1, 2, 3})));
+        assertEquals(0, importFolder.listFiles(File::isFile).length);
+    }
+}
@@ -0,0 +1,91 @@
+package de.zaunkoenigweg.biography.core.archiveimport;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Range;
+
+import de.zaunkoenigweg.biography.core.MediaFileType;
+
+public class ChunkedUploadTest {
+
+    private byte[] content;
+    private ChunkedUpload sut;
+
+    @Before
+    public void setUp() throws IOException {
+        File someFolder = Files.createTempDirectory("someFolder").toFile();
+        someFolder.deleteOnExit();
+        content = new byte[1000];
+        new Random(42).nextBytes(content);
+        sut = new ChunkedUpload(UUID.randomUUID(), "video.mov", MediaFileType.QUICKTIME, content.length, new File(someFolder, "video.part"));
+    }
+
+    @Test
+    public void testChunksInAnyOrder() throws IOException {
+        writeChunk(600, 1000);
+        writeChunk(0, 300);
+        assertFalse(sut.isComplete());
+        assertEquals(ImmutableSet.of(Range.closedOpen(0L, 300L), Range.closedOpen(600L, 1000L)), sut.getReceivedRanges());
+
+        writeChunk(300, 600);
+        assertTrue(sut.isComplete());
+        assertEquals(ImmutableSet.of(Range.closedOpen(0L, 1000L)), sut.getReceivedRanges());
+        assertArrayEquals(content, Files.readAllBytes(sut.getPartFile().toPath()));
+    }
+
+    @Test
+    public void testChunkRepeated() throws IOException {
+        writeChunk(0, 500);
+        writeChunk(200, 1000);
+        writeChunk(0, 500);
+        assertTrue(sut.isComplete());
+        assertArrayEquals(content, Files.readAllBytes(sut.getPartFile().toPath()));
+    }
+
+    @Test
+    public void testChecksumMismatch() throws IOException {
+        writeChunk(0, 500);
+        byte[] corrupt = Arrays.copyOfRange(content, 400, 600);
+        corrupt[150] ^= 1;
+        try {
+            sut.writeChunk(400, new ByteArrayInputStream(corrupt), DigestUtils.sha1Hex(Arrays.copyOfRange(content, 400, 600)));
+            fail("checksum mismatch expected");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        // the overwritten range has to be sent again
+        assertEquals(ImmutableSet.of(Range.closedOpen(0L, 400L)), sut.getReceivedRanges());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testChunkExceedsFileSize() throws IOException {
+        sut.writeChunk(900, new ByteArrayInputStream(new byte[200]), DigestUtils.sha1Hex(new byte[200]));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testOffsetOutOfRange() throws IOException {
+        sut.writeChunk(-1, new ByteArrayInputStream(new byte[1]), DigestUtils.sha1Hex(new byte[1]));
+    }
+
+    private void writeChunk(int from, int to) throws IOException {
+        byte[] chunk = Arrays.copyOfRange(content, from, to);
+        sut.writeChunk(from, new ByteArrayInputStream(chunk), DigestUtils.sha1Hex(chunk));
+    }
+}
@@ -0,0 +1,147 @@
+package de.zaunkoenigweg.biography.core.archiveimport;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import de.zaunkoenigweg.biography.core.MediaFileName;
+import de.zaunkoenigweg.biography.core.MediaFileType;
+import de.zaunkoenigweg.biography.core.Sha1;
+import de.zaunkoenigweg.biography.core.index.IndexingService;
+
+/**
+ * Tests the flow of the items through the stages, the stages themselves are stubbed.
+ */
+public class ImportPipelineTest {
+
+    private static final File ARCHIVE_FOLDER = new File("archive");
+
+    private Map<String, ImportResult> results;
+    private List<Collection<File>> indexedBatches;
+    private AtomicInteger storedFiles;
+    private ImportPipeline sut;
+
+    @Before
+    public void setUp() {
+        results = new ConcurrentHashMap<>();
+        indexedBatches = new CopyOnWriteArrayList<>();
+        storedFiles = new AtomicInteger();
+
+        ImportService importService = new ImportService(null, null, null, null) {
+
+            @Override
+            boolean prepare(ImportItem item) {
+                String name = item.getFile().getName();
+                if (name.startsWith("unknown")) {
+                    return item.fail(ImportResult.UNKNOWN_MEDIA_FILE_TYPE);
+                }
+                // files named "copyN" have the same content
+                String content = name.startsWith("copy") ? "copy" : name;
+                MediaFileName mediaFileName = MediaFileName.of(MediaFileType.JPEG, LocalDateTime.of(2018, 3, 17, 12, 0), Sha1.of(sha1(content)));
+                item.setArchiveFile(mediaFileName, mediaFileName.archiveFile(ARCHIVE_FOLDER));
+                return true;
+            }
+
+            @Override
+            boolean store(ImportItem item) {
+                storedFiles.incrementAndGet();
+                return true;
+            }
+
+            @Override
+            boolean writeMetadata(ImportItem item) {
+                if (item.getFile().getName().startsWith("readonly")) {
+                    return item.fail(ImportResult.FILE_CANNOT_BE_STORED);
+                }
+                return true;
+            }
+
+            @Override
+            void generateThumbnails(ImportItem item) {
+                if (item.getFile().getName().startsWith("broken")) {
+                    throw new IllegalStateException("thumbnail cannot be generated");
+                }
+            }
+        };
+
+        IndexingService indexingService = new IndexingService(null, null, 1, null, null) {
+
+            @Override
+            public int reIndex(Collection<File> archiveFiles) {
+                indexedBatches.add(new ArrayList<>(archiveFiles));
+                return archiveFiles.size();
+            }
+        };
+
+        sut = new ImportPipeline(importService, indexingService, 4, 10);
+    }
+
+    @Test
+    public void testRun() {
+        List<ImportItem> items = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            items.add(item("file" + i));
+        }
+        items.add(item("unknown"));
+        items.add(item("readonly"));
+        items.add(item("broken"));
+
+        sut.run(items);
+
+        assertEquals(28, results.size());
+        for (int i = 0; i < 25; i++) {
+            assertEquals(ImportResult.SUCCESS, results.get("file" + i));
+        }
+        assertEquals(ImportResult.UNKNOWN_MEDIA_FILE_TYPE, results.get("unknown"));
+        assertEquals(ImportResult.FILE_CANNOT_BE_STORED, results.get("readonly"));
+        // missing thumbnails can be generated later
+        assertEquals(ImportResult.SUCCESS, results.get("broken"));
+
+        // 26 files indexed in batches of 10
+        assertEquals(3, indexedBatches.size());
+        assertEquals(26, indexedBatches.stream().mapToInt(Collection::size).sum());
+        assertTrue(indexedBatches.stream().allMatch(batch -> batch.size() <= 10));
+    }
+
+    @Test
+    public void testRunIdenticalFiles() {
+        List<ImportItem> items = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            items.add(item("copy" + i));
+        }
+
+        sut.run(items);
+
+        assertEquals(1, storedFiles.get());
+        assertEquals(1, results.values().stream().filter(ImportResult.SUCCESS::equals).count());
+        assertEquals(4, results.values().stream().filter(ImportResult.FILE_ALREADY_ARCHIVED::equals).count());
+    }
+
+    @Test
+    public void testRunNoItems() {
+        sut.run(new ArrayList<>());
+        assertTrue(results.isEmpty());
+        assertTrue(indexedBatches.isEmpty());
+    }
+
+    private ImportItem item(String name) {
+        return new ImportItem(new File(name), null, null, null, result -> results.put(name, result));
+    }
+
+    private static String sha1(String content) {
+        return DigestUtils.sha1Hex(content);
+    }
+}
@@ -0,0 +1,106 @@
+package de.zaunkoenigweg.biography.core.archiveimport;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import de.zaunkoenigweg.biography.core.MediaFileName;
+import de.zaunkoenigweg.biography.core.archive.Archive;
+
+public class ThumbnailServiceTest {
+
+    private static final String FILE_NAME = "2018-03-17--12-34-56---c69239ffcc01886f9d73ecd1076271bb65c26ba4.jpg";
+
+    private File archiveFolder;
+    private File archiveFile;
+    private ThumbnailService sut;
+
+    @Before
+    public void setUp() throws IOException {
+        archiveFolder = Files.createTempDirectory("biographyArchiveFolder").toFile();
+        archiveFolder.deleteOnExit();
+        File importFolder = Files.createTempDirectory("importFolder").toFile();
+        importFolder.deleteOnExit();
+        archiveFile = MediaFileName.of(FILE_NAME).archiveFile(archiveFolder);
+        archiveFile.getParentFile().mkdirs();
+        ImageIO.write(new BufferedImage(1800, 1200, BufferedImage.TYPE_INT_RGB), "jpeg", archiveFile);
+        sut = new ThumbnailService(new Archive(archiveFolder), importFolder, new ThumbnailSizes(new int[] {120, 200, 300, 800}, new int[] {200, 300}, 300));
+    }
+
+    @Test
+    public void testGenerateThumbnails() throws IOException {
+        MediaFileName mediaFileName = MediaFileName.of(FILE_NAME);
+        assertTrue(sut.generateThumbnails(archiveFile));
+        assertEquals(new File(archiveFolder, "thumbnails/200/2018/03/" + FILE_NAME), sut.thumbnailFile(mediaFileName, 200));
+        assertTrue(sut.thumbnailFile(mediaFileName, 200).exists());
+        assertTrue(sut.thumbnailFile(mediaFileName, 300).exists());
+        // only the pregenerated sizes
+        assertFalse(sut.thumbnailFile(mediaFileName, 120).exists());
+        assertFalse(sut.thumbnailFile(mediaFileName, 800).exists());
+        // nothing left to do
+        assertFalse(sut.generateThumbnails(archiveFile));
+    }
+
+    @Test
+    public void testThumbnailGeneratedLazily() throws IOException {
+        MediaFileName mediaFileName = MediaFileName.of(FILE_NAME);
+        assertFalse(sut.thumbnailFile(mediaFileName, 800).exists());
+        Optional<File> thumbnail = sut.thumbnail(mediaFileName, 800);
+        assertTrue(thumbnail.isPresent());
+        assertEquals(800, ImageIO.read(thumbnail.get()).getHeight());
+    }
+
+    @Test
+    public void testThumbnailSizeNotSupported() {
+        assertFalse(sut.thumbnail(MediaFileName.of(FILE_NAME), 250).isPresent());
+        assertFalse(sut.thumbnailFile(MediaFileName.of(FILE_NAME), 250).exists());
+    }
+
+    @Test
+    public void testThumbnailArchiveFileNotExisting() {
+        assertFalse(sut.thumbnail(MediaFileName.of("2018-03-17--12-34-56---0000000000000000000000000000000000000000.jpg"), 200).isPresent());
+    }
+
+    @Test
+    public void testThumbnailConcurrentRequests() throws Exception {
+        MediaFileName mediaFileName = MediaFileName.of(FILE_NAME);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Optional<File>>> thumbnails = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                thumbnails.add(executor.submit(() -> sut.thumbnail(mediaFileName, 120)));
+            }
+            for (Future<Optional<File>> thumbnail : thumbnails) {
+                assertEquals(Optional.of(sut.thumbnailFile(mediaFileName, 120)), thumbnail.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testPregeneratedSizesNotInLadder() {
+        new ThumbnailSizes(new int[] {200, 300}, new int[] {400}, 300);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testGallerySizeNotInLadder() {
+        new ThumbnailSizes(new int[] {200, 300}, new int[] {200}, 400);
+    }
+}
@@ -0,0 +1,107 @@
+package de.zaunkoenigweg.biography.core.archiveimport;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import de.zaunkoenigweg.biography.core.MediaFileType;
+
+public class ThumbnailsTest {
+
+    private File someFolder;
+
+    @Before
+    public void setUp() throws IOException {
+        someFolder = Files.createTempDirectory("someFolder").toFile();
+        someFolder.deleteOnExit();
+    }
+
+    @Test
+    public void testGenerate() throws IOException {
+        File image = createImage(3000, 2000);
+        NavigableMap<Integer, File> targets = new TreeMap<>();
+        targets.put(200, new File(someFolder, "thumbnails/200/image.jpg"));
+        targets.put(300, new File(someFolder, "thumbnails/300/image.jpg"));
+
+        Thumbnails.generate(image, MediaFileType.JPEG, targets);
+
+        BufferedImage thumbnail200 = ImageIO.read(targets.get(200));
+        assertEquals(200, thumbnail200.getHeight());
+        assertEquals(300, thumbnail200.getWidth());
+        BufferedImage thumbnail300 = ImageIO.read(targets.get(300));
+        assertEquals(300, thumbnail300.getHeight());
+        assertEquals(450, thumbnail300.getWidth());
+        // no temporary files are left
+        assertEquals(Arrays.asList("image.jpg"), Arrays.asList(new File(someFolder, "thumbnails/300").list()));
+    }
+
+    @Test
+    public void testReadSubsampled() throws IOException {
+        File image = createImage(3000, 2000);
+        BufferedImage subsampled = Thumbnails.read(image, 300);
+        // decoded with at least twice the requested height
+        assertTrue(subsampled.getHeight() >= 600);
+        assertTrue(subsampled.getHeight() < 2000);
+    }
+
+    @Test
+    public void testReadSmallImageNotSubsampled() throws IOException {
+        File image = createImage(300, 200);
+        assertEquals(200, Thumbnails.read(image, 300).getHeight());
+    }
+
+    @Test
+    public void testScaleDoesNotEnlarge() {
+        BufferedImage image = new BufferedImage(150, 100, BufferedImage.TYPE_INT_RGB);
+        assertSame(image, Thumbnails.scale(image, 200));
+    }
+
+    @Test(expected=IOException.class)
+    public void testGenerateFromCorruptImage() throws IOException {
+        File image = new File(someFolder, "corrupt.jpg");
+        Files.write(image.toPath(), new byte[] {1, 2, 3});
+        NavigableMap<Integer, File> targets = new TreeMap<>();
+        targets.put(200, new File(someFolder, "thumbnails/200/corrupt.jpg"));
+        Thumbnails.generate(image, MediaFileType.JPEG, targets);
+    }
+
+    @Test
+    public void testGenerateFromCorruptVideoLeavesNoFiles() throws IOException {
+        File video = new File(someFolder, "corrupt.mov");
+        Files.write(video.toPath(), new byte[] {1, 2, 3});
+        NavigableMap<Integer, File> targets = new TreeMap<>();
+        targets.put(200, new File(someFolder, "thumbnails/200/corrupt.jpg"));
+        targets.put(300, new File(someFolder, "thumbnails/300/corrupt.jpg"));
+        try {
+            Thumbnails.generate(video, MediaFileType.QUICKTIME, targets);
+            fail();
+        } catch (IOException e) {
+            assertEquals(0, new File(someFolder, "thumbnails/200").list().length);
+            assertEquals(0, new File(someFolder, "thumbnails/300").list().length);
+        }
+    }
+
+    private File createImage(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x++) {
+            image.setRGB(x, x * height / width, 0xFF8000);
+        }
+        File file = new File(someFolder, String.format("image-%dx%d.jpg", width, height));
+        ImageIO.write(image, "jpeg", file);
+        return file;
+    }
+}
@@ -0,0 +1,95 @@
+package de.zaunkoenigweg.biography.core.archivemetadata;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.zaunkoenigweg.biography.core.archive.Archive;
+import de.zaunkoenigweg.biography.metadata.MetadataService;
+import de.zaunkoenigweg.biography.metadata.exif.ExifData;
+import de.zaunkoenigweg.biography.metadata.exif.ExifDataCache;
+import de.zaunkoenigweg.biography.metadata.exif.ExifDataService;
+
+/**
+ * Compares the single pass {@link ArchiveValidationService#inspect(File)} against the former
+ * sequence used while indexing ({@code isValid(file)} followed by {@code getMetadata(file)},
+ * which validated the file a second time before reading the metadata).
+ *
+ * The EXIF data cache is bypassed, so every EXIF read is an exiftool invocation.
+ *
+ * The benchmark needs exiftool and an existing (read-only) Biography archive, its path is passed
+ * as system property {@value #ARCHIVE_PROPERTY}. Otherwise the benchmark is skipped.
+ *
+ * Not part of the regular test run, start it explicitly:
+ * {@code mvn test -Dtest=ArchiveInspectionBenchmark -Dbiography.benchmark.archive=/path/to/archive}
+ */
+public class ArchiveInspectionBenchmark {
+
+    private static final String ARCHIVE_PROPERTY = "biography.benchmark.archive";
+    private static final int MAX_FILES = 500;
+
+    private AtomicLong exiftoolReads = new AtomicLong();
+    private AtomicLong validFiles = new AtomicLong();
+    private List<File> mediaFiles;
+    private MetadataService metadataService;
+    private ArchiveValidationService sut;
+
+    @Before
+    public void setUp() throws Exception {
+        String archivePath = System.getProperty(ARCHIVE_PROPERTY);
+        Assume.assumeNotNull(archivePath);
+        File archiveFolder = new File(archivePath);
+        Archive archive = new Archive(archiveFolder);
+        ExifDataCache countingCache = new ExifDataCache(Files.createTempDirectory("exifCache").toFile(), 0) {
+            @Override
+            public ExifData get(File file, Function<File, ExifData> loader) {
+                exiftoolReads.incrementAndGet();
+                return loader.apply(file);
+            }
+        };
+        ExifDataService exifDataService = new ExifDataService(archive, countingCache);
+        metadataService = new MetadataService(exifDataService);
+        sut = new ArchiveValidationService(metadataService, exifDataService, archiveFolder);
+        mediaFiles = archive.mediaFileStream().limit(MAX_FILES).collect(Collectors.toList());
+    }
+
+    @Test
+    public void benchmark() {
+        // warm up the exiftool process and the file system cache
+        mediaFiles.stream().limit(20).forEach(sut::inspect);
+
+        long validFilesBefore = measure("isValid + getMetadata (before)", file -> {
+            if (sut.isValid(file) && sut.isValid(file) && metadataService.readMetadataFromExif(file) != null) {
+                validFiles.incrementAndGet();
+            }
+        });
+        long validFilesAfter = measure("inspect (after)", file -> {
+            ArchiveFileInspection inspection = sut.inspect(file);
+            if (inspection.isValid() && inspection.getMetadata() != null) {
+                validFiles.incrementAndGet();
+            }
+        });
+        assertEquals(validFilesBefore, validFilesAfter);
+    }
+
+    private long measure(String name, Consumer<File> inspection) {
+        exiftoolReads.set(0);
+        validFiles.set(0);
+        long start = System.nanoTime();
+        mediaFiles.forEach(inspection);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println(String.format("%-32s %d files, %.2f exiftool reads/file, %.2f ms/file", name, mediaFiles.size(),
+                (double) exiftoolReads.get() / mediaFiles.size(), (double) millis / mediaFiles.size()));
+        return validFiles.get();
+    }
+}
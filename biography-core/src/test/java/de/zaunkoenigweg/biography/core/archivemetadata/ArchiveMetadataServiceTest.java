@@ -1,5 +1,6 @@
 package de.zaunkoenigweg.biography.core.archivemetadata;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -10,7 +11,9 @@ import org.junit.Test;
 
 import de.zaunkoenigweg.biography.core.archive.Archive;
 import de.zaunkoenigweg.biography.core.test.TestUtil;
+import de.zaunkoenigweg.biography.metadata.Album;
 import de.zaunkoenigweg.biography.metadata.MetadataService;
+import de.zaunkoenigweg.biography.metadata.exif.ExifDataCache;
 import de.zaunkoenigweg.biography.metadata.exif.ExifDataService;
 
 public class ArchiveMetadataServiceTest {
@@ -23,8 +26,9 @@ public class ArchiveMetadataServiceTest {
   public void setUp() throws Exception {
     archiveFolder = Files.createTempDirectory("archiveFolder").toFile();
     archiveFolder.deleteOnExit();
-    metadataService = new MetadataService(new ExifDataService(new Archive(this.archiveFolder)));
-    sut = new ArchiveMetadataService(metadataService, new ArchiveValidationService(metadataService, new ExifDataService(new Archive(this.archiveFolder)), archiveFolder));
+    ExifDataService exifDataService = new ExifDataService(new Archive(this.archiveFolder), new ExifDataCache(Files.createTempDirectory("exifCache").toFile(), 100));
+    metadataService = new MetadataService(exifDataService);
+    sut = new ArchiveMetadataService(metadataService, new ArchiveValidationService(metadataService, exifDataService, archiveFolder));
   }
 
   /*
@@ -87,4 +91,19 @@ public class ArchiveMetadataServiceTest {
     assertTrue(metadataService.isExifDataConsistentToMetadata(imageFile, metadataService.readMetadataFromExif(imageFile)));
   }
 
+  @Test
+  public void testEditUnchangedMetadataIsNotWritten() throws Exception {
+    String imageFileName = "2018-09-30--15-43-45---affed2a8d701ecae9934e5c21135963234f409b6.jpg";
+    File imageFile = new File(archiveFolder, "2018/09/" + imageFileName);
+    TestUtil.copyFromResources("/archivemetadataservicetest/" + imageFileName, imageFile);
+    Album album = new Album("Holidays");
+    assertTrue(this.sut.edit(imageFile, MetadataEdit.addAlbum(album)));
+    assertTrue(this.sut.getMetadata(imageFile).getAlbums().contains(album));
+    long lastModified = imageFile.lastModified();
+    assertFalse(this.sut.edit(imageFile, MetadataEdit.addAlbum(album)));
+    assertTrue(imageFile.lastModified() == lastModified);
+    assertTrue(this.sut.edit(imageFile, MetadataEdit.removeAlbum(album)));
+    assertFalse(this.sut.getMetadata(imageFile).getAlbums().contains(album));
+  }
+
 }
@@ -9,10 +9,14 @@ import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import de.zaunkoenigweg.biography.core.archive.Archive;
 import de.zaunkoenigweg.biography.core.test.TestUtil;
 import de.zaunkoenigweg.biography.metadata.MetadataService;
+import de.zaunkoenigweg.biography.metadata.exif.ExifDataCache;
 import de.zaunkoenigweg.biography.metadata.exif.ExifDataService;
 
 public class ArchiveValidationServiceTest {
@@ -24,7 +28,8 @@ public class ArchiveValidationServiceTest {
 	public void setUp() throws Exception {
 	    archiveFolder = Files.createTempDirectory("archiveFolder").toFile();
 	    archiveFolder.deleteOnExit();
-		sut = new ArchiveValidationService(new MetadataService(new ExifDataService(new Archive(this.archiveFolder))), new ExifDataService(new Archive(this.archiveFolder)), archiveFolder);
+		ExifDataService exifDataService = new ExifDataService(new Archive(this.archiveFolder), new ExifDataCache(Files.createTempDirectory("exifCache").toFile(), 100));
+		sut = new ArchiveValidationService(new MetadataService(exifDataService), exifDataService, archiveFolder);
 	}
 
 	@Test(expected=NullPointerException.class)
@@ -109,4 +114,26 @@ public class ArchiveValidationServiceTest {
         assertEquals(ArchiveValidationService.ValidationResult.OK, sut.validate(imageFile));
 	}
 
+	@Test
+	public void testInspect() throws IOException {
+		String imageFileName = "2017-05-12--21-25-08---2d1d6ced6c4df4f018f10f7697e9453fc1cfc86f.jpg";
+		File imageFile = new File(archiveFolder, "2017/05/" + imageFileName);
+	    TestUtil.copyFromResources("/archivevalidationservicetest/" + imageFileName, imageFile);
+	    ArchiveFileInspection inspection = sut.inspect(imageFile);
+        assertTrue(inspection.isValid());
+        assertEquals(imageFileName, inspection.getMediaFileName().getFilename());
+        assertNotNull(inspection.getExifData());
+        assertNotNull(inspection.getMetadata());
+        assertEquals(inspection.getExifData().getDateTimeOriginal(), inspection.getMetadata().getDateTimeOriginal());
+	}
+
+	@Test
+	public void testInspectFileNameNotValid() {
+        File fileWithoutMediaFileName = new File(getClass().getResource("/archivevalidationservicetest/someimage.jpg").getFile());
+        ArchiveFileInspection inspection = sut.inspect(fileWithoutMediaFileName);
+        assertFalse(inspection.isValid());
+        assertNull(inspection.getMediaFileName());
+        assertNull(inspection.getMetadata());
+	}
+
 }
@@ -0,0 +1,166 @@
+package de.zaunkoenigweg.biography.core.archivemetadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import de.zaunkoenigweg.biography.core.archive.Archive;
+import de.zaunkoenigweg.biography.core.archive.ArchiveEntry;
+import de.zaunkoenigweg.biography.core.archivemetadata.ArchiveValidationService.ValidationResult;
+import de.zaunkoenigweg.biography.core.archivemetadata.ValidationResultStore.StoredResult;
+
+public class ValidationResultStoreTest {
+
+    private static final String VALID_FILE = "2016-03-11--12-40-14---335f45c087c9937a772a45a8e5bc755d705a5ab5.jpg";
+    private static final String CORRUPT_FILE = "2016-03-13--12-40-14---335f45c087c9937a772a45a8e5bc755d705a5ab5.jpg";
+
+    private File archiveFolder;
+    private File validationResultsFile;
+    private Archive archive;
+    private ArchiveValidationService archiveValidationService;
+    private AtomicInteger validations;
+
+    @Before
+    public void setUp() throws IOException {
+        archiveFolder = Files.createTempDirectory("biographyArchiveFolder").toFile();
+        archiveFolder.deleteOnExit();
+        File folder = new File(archiveFolder, "2016/03");
+        folder.mkdirs();
+        new File(folder, VALID_FILE).createNewFile();
+        new File(folder, CORRUPT_FILE).createNewFile();
+        validationResultsFile = new File(Files.createTempDirectory("validation").toFile(), "validation-results.json");
+        archive = new Archive(archiveFolder);
+        validations = new AtomicInteger();
+        archiveValidationService = new ArchiveValidationService(null, null, archiveFolder) {
+            @Override
+            public ValidationResult validate(File file) {
+                validations.incrementAndGet();
+                return CORRUPT_FILE.equals(file.getName()) ? ValidationResult.FILE_HAS_NO_METADATA : ValidationResult.OK;
+            }
+        };
+    }
+
+    @Test
+    public void testValidate() {
+        ValidationResultStore sut = new ValidationResultStore(archiveValidationService, validationResultsFile);
+        entries().forEach(entry -> sut.validate(entry, false));
+
+        assertEquals(2, validations.get());
+        Map<ValidationResult, Long> counts = sut.countByResult();
+        assertEquals(Long.valueOf(1), counts.get(ValidationResult.OK));
+        assertEquals(Long.valueOf(1), counts.get(ValidationResult.FILE_HAS_NO_METADATA));
+        assertEquals(Long.valueOf(0), counts.get(ValidationResult.METADATA_INCONSISTENT));
+        List<StoredResult> failures = sut.failures();
+        assertEquals(1, failures.size());
+        assertEquals(CORRUPT_FILE, failures.get(0).getFileName());
+
+        // unchanged files are not validated again
+        entries().forEach(entry -> sut.validate(entry, false));
+        assertEquals(2, validations.get());
+
+        // unless it is forced
+        entries().forEach(entry -> sut.validate(entry, true));
+        assertEquals(4, validations.get());
+    }
+
+    @Test
+    public void testChangedFileIsValidatedAgain() throws IOException {
+        ValidationResultStore sut = new ValidationResultStore(archiveValidationService, validationResultsFile);
+        entries().forEach(entry -> sut.validate(entry, false));
+
+        File validFile = new File(archiveFolder, "2016/03/" + VALID_FILE);
+        Files.write(validFile.toPath(), new byte[] {1, 2, 3});
+
+        List<ArchiveEntry> entries = entries();
+        assertFalse(sut.isUpToDate(entries.stream().filter(entry -> entry.getFileName().equals(VALID_FILE)).findAny().get()));
+        assertTrue(sut.isUpToDate(entries.stream().filter(entry -> entry.getFileName().equals(CORRUPT_FILE)).findAny().get()));
+        entries.forEach(entry -> sut.validate(entry, false));
+        assertEquals(3, validations.get());
+    }
+
+    @Test
+    public void testChangedMetadataJsonFileIsValidatedAgain() throws IOException {
+        File video = new File(archiveFolder, "2016/04/2016-04-11--12-40-14---335f45c087c9937a772a45a8e5bc755d705a5ab5.mov");
+        video.getParentFile().mkdirs();
+        video.createNewFile();
+        File metadataJsonFile = new File(video.getParentFile(), "b335f45c087c9937a772a45a8e5bc755d705a5ab5.json");
+        ValidationResultStore sut = new ValidationResultStore(archiveValidationService, validationResultsFile);
+        entries().forEach(entry -> sut.validate(entry, false));
+        assertEquals(3, validations.get());
+        assertTrue(sut.isUpToDate(videoEntry()));
+
+        // the video itself stays unchanged in all cases
+        metadataJsonFile.createNewFile();
+        metadataJsonFile.setLastModified(1500000000000L);
+        assertFalse(sut.isUpToDate(videoEntry()));
+        sut.validate(videoEntry(), false);
+        assertTrue(sut.isUpToDate(videoEntry()));
+
+        metadataJsonFile.setLastModified(1500000060000L);
+        assertFalse(sut.isUpToDate(videoEntry()));
+        sut.validate(videoEntry(), false);
+
+        metadataJsonFile.delete();
+        assertFalse(sut.isUpToDate(videoEntry()));
+        sut.validate(videoEntry(), false);
+        assertEquals(6, validations.get());
+
+        // the state of the JSON metadata file is persisted
+        sut.checkpoint();
+        assertTrue(new ValidationResultStore(archiveValidationService, validationResultsFile).isUpToDate(videoEntry()));
+    }
+
+    @Test
+    public void testCheckpointIsResumed() {
+        ValidationResultStore sut = new ValidationResultStore(archiveValidationService, validationResultsFile);
+        sut.validate(entries().get(0), false);
+        sut.checkpoint();
+
+        ValidationResultStore resumed = new ValidationResultStore(archiveValidationService, validationResultsFile);
+        entries().forEach(entry -> resumed.validate(entry, false));
+        assertEquals(2, validations.get());
+        assertEquals(1, resumed.failures().size());
+    }
+
+    @Test
+    public void testIncompleteResultsAreValidatedAgain() throws IOException {
+        // size and modification time match, so only the missing path can make the results invalid
+        String results = String.format("[{\"fileName\":\"%s\",\"lastModified\":%d,\"result\":\"OK\"},{\"fileName\":\"%s\",\"lastModified\":%d,\"result\":\"OK\"}]",
+                VALID_FILE, new File(archiveFolder, "2016/03/" + VALID_FILE).lastModified(), CORRUPT_FILE, new File(archiveFolder, "2016/03/" + CORRUPT_FILE).lastModified());
+        Files.write(validationResultsFile.toPath(), results.getBytes(StandardCharsets.UTF_8));
+
+        ValidationResultStore sut = new ValidationResultStore(archiveValidationService, validationResultsFile);
+        entries().forEach(entry -> sut.validate(entry, false));
+        assertEquals(2, validations.get());
+        assertEquals(1, sut.failures().size());
+    }
+
+    @Test
+    public void testRetainAll() {
+        ValidationResultStore sut = new ValidationResultStore(archiveValidationService, validationResultsFile);
+        entries().forEach(entry -> sut.validate(entry, false));
+        assertEquals(1, sut.retainAll(Collections.singleton(VALID_FILE)));
+        assertTrue(sut.failures().isEmpty());
+    }
+
+    private ArchiveEntry videoEntry() {
+        return archive.entries().filter(entry -> entry.getFileName().endsWith(".mov")).findAny().get();
+    }
+
+    private List<ArchiveEntry> entries() {
+        return archive.entries().collect(Collectors.toList());
+    }
+}
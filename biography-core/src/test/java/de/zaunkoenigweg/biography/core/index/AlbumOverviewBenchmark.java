@@ -0,0 +1,120 @@
+package de.zaunkoenigweg.biography.core.index;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the album overview with one JSON facet query against the former
+ * implementation that issued two additional queries per album.
+ * 
+ * The benchmark needs a Solr core with the Biography schema that may be wiped,
+ * its URL is passed as system property {@value #SOLR_URL_PROPERTY}. Otherwise the benchmark is skipped.
+ * 
+ * Not part of the regular test run, start it explicitly:
+ * {@code mvn test -Dtest=AlbumOverviewBenchmark -Dbiography.benchmark.solr.url=http://localhost:8983/solr/benchmark}
+ */
+public class AlbumOverviewBenchmark {
+
+    private static final String SOLR_URL_PROPERTY = "biography.benchmark.solr.url";
+    private static final int NUMBER_OF_ALBUMS = 500;
+    private static final int FILES_PER_ALBUM = 20;
+    private static final int ROUNDS = 5;
+
+    private SolrConnection solrConnection;
+    private SolrIndexBackend solrIndexBackend;
+    private SearchService sut;
+
+    @Before
+    public void setUp() throws Exception {
+        String solrUrl = System.getProperty(SOLR_URL_PROPERTY);
+        Assume.assumeNotNull(solrUrl);
+        solrConnection = new SolrConnection(solrUrl, new SolrClientSettings());
+        solrIndexBackend = new SolrIndexBackend(solrConnection);
+        sut = new SearchService(solrIndexBackend, 1000, 16L * 1024 * 1024);
+
+        SolrClient solr = solrConnection.getClient();
+        solr.deleteByQuery("*:*");
+        List<SolrInputDocument> documents = new ArrayList<>();
+        LocalDateTime dateTime = LocalDateTime.of(2000, 1, 1, 12, 0);
+        for (int album = 0; album < NUMBER_OF_ALBUMS; album++) {
+            for (int file = 0; file < FILES_PER_ALBUM; file++) {
+                dateTime = dateTime.plusHours(7);
+                SolrInputDocument document = new SolrInputDocument();
+                document.addField(Index.FIELD_ID, String.format("album-%d-file-%d.jpg", album, file));
+                document.addField(Index.FIELD_ALBUMS, String.format("Album %03d", album));
+                document.addField(Index.FIELD_DATETIME_ORIGINAL, dateTime.toString());
+                document.addField(Index.FIELD_DATE_LONG_POINT, Long.valueOf(Index.localDateToLongPoint(dateTime.toLocalDate())));
+                document.addField(Index.FIELD_DATETIME_LONG_POINT, Long.valueOf(Index.localDateTimeToLongPoint(dateTime)));
+                document.addField(Index.FIELD_YEAR_LONG_POINT, dateTime.getYear());
+                document.addField(Index.FIELD_YEAR_MONTH_LONG_POINT, dateTime.getYear() * 100 + dateTime.getMonthValue());
+                documents.add(document);
+            }
+        }
+        solr.add(documents);
+        solr.commit();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (solrConnection != null) {
+            solrConnection.getClient().deleteByQuery("*:*");
+            solrConnection.getClient().commit();
+            solrConnection.close();
+        }
+    }
+
+    @Test
+    public void benchmarkAlbumOverview() {
+        List<String> expected = describe(albumsByAlbumQueries());
+        sut.indexChanged();
+        assertEquals(NUMBER_OF_ALBUMS, expected.size());
+        assertEquals(expected, describe(sut.getAlbumCounts()));
+
+        long perAlbumQueries = measure(() -> albumsByAlbumQueries());
+        long singleQuery = measure(() -> {
+            sut.indexChanged();
+            return sut.getAlbumCounts();
+        });
+        long cached = measure(() -> sut.getAlbumCounts());
+
+        System.out.println(String.format("Album overview of %d albums (avg. of %d rounds): per album queries %d ms, single JSON facet query %d ms, cached %d ms",
+                NUMBER_OF_ALBUMS, ROUNDS, perAlbumQueries, singleQuery, cached));
+    }
+
+    private Stream<Album> albumsByAlbumQueries() {
+        try {
+            return solrIndexBackend.albumsByAlbumQueries().stream().sorted(Comparator.comparing(Album::getBegin));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long measure(Supplier<Stream<Album>> albumOverview) {
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            albumOverview.get().count();
+        }
+        return (System.nanoTime() - start) / ROUNDS / 1_000_000;
+    }
+
+    private static List<String> describe(Stream<Album> albums) {
+        return albums.map(album -> String.format("%s|%d|%s|%s", album.getName(), album.getSize(), album.getBegin(), album.getEnd()))
+                .collect(Collectors.toList());
+    }
+}
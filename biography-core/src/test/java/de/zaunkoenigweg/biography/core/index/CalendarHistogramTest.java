@@ -0,0 +1,127 @@
+package de.zaunkoenigweg.biography.core.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class CalendarHistogramTest {
+
+    private static final DateTimeFormatter FILE_NAME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd--HH-mm-ss");
+
+    private LuceneIndexBackend indexBackend;
+    private CalendarHistogram sut;
+    private int sequence;
+
+    @Before
+    public void setUp() throws IOException {
+        File indexFolder = Files.createTempDirectory("biographyIndexFolder").toFile();
+        indexFolder.deleteOnExit();
+        indexBackend = new LuceneIndexBackend(indexFolder);
+        indexBackend.add(Arrays.asList(
+                document(LocalDateTime.of(2016, 3, 11, 12, 0)),
+                document(LocalDateTime.of(2016, 3, 11, 13, 0)),
+                document(LocalDateTime.of(2016, 3, 13, 12, 0)),
+                document(LocalDateTime.of(2016, 12, 31, 12, 0)),
+                document(LocalDateTime.of(2018, 2, 1, 12, 0))));
+        indexBackend.commit();
+        sut = new CalendarHistogram(indexBackend);
+        sut.rebuild();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        indexBackend.close();
+    }
+
+    @Test
+    public void testCounts() {
+        assertEquals(Arrays.asList(Pair.of(Year.of(2016), 4L), Pair.of(Year.of(2018), 1L)), sut.getYearCounts().collect(Collectors.toList()));
+        assertEquals(Arrays.asList(Pair.of(YearMonth.of(2016, 3), 3L), Pair.of(YearMonth.of(2016, 12), 1L)),
+                sut.getMonthCounts(Year.of(2016)).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(Pair.of(LocalDate.of(2016, 3, 11), 2L), Pair.of(LocalDate.of(2016, 3, 13), 1L)),
+                sut.getDayCounts(YearMonth.of(2016, 3)).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(Pair.of(LocalDate.of(2016, 12, 31), 1L)), sut.getDayCounts(YearMonth.of(2016, 12)).collect(Collectors.toList()));
+        assertFalse(sut.getMonthCounts(Year.of(2017)).findAny().isPresent());
+        assertEquals(Optional.of(YearMonth.of(2018, 2)), sut.getMostRecentYearMonth());
+    }
+
+    @Test
+    public void testUpdate() throws IOException {
+        IndexDocument added = document(LocalDateTime.of(2019, 5, 1, 12, 0));
+        IndexDocument addedToExistingDay = document(LocalDateTime.of(2016, 3, 13, 8, 0));
+        indexBackend.add(Arrays.asList(added, addedToExistingDay));
+        indexBackend.softCommit();
+        sut.update(Arrays.asList(added.getFileName(), addedToExistingDay.getFileName()));
+
+        assertEquals(Arrays.asList(Pair.of(Year.of(2016), 5L), Pair.of(Year.of(2018), 1L), Pair.of(Year.of(2019), 1L)),
+                sut.getYearCounts().collect(Collectors.toList()));
+        assertEquals(Arrays.asList(Pair.of(LocalDate.of(2016, 3, 11), 2L), Pair.of(LocalDate.of(2016, 3, 13), 2L)),
+                sut.getDayCounts(YearMonth.of(2016, 3)).collect(Collectors.toList()));
+        assertEquals(Optional.of(YearMonth.of(2019, 5)), sut.getMostRecentYearMonth());
+
+        indexBackend.delete(Collections.singletonList(added.getFileName()));
+        indexBackend.softCommit();
+        sut.update(Collections.singletonList(added.getFileName()));
+
+        List<Pair<Year, Long>> yearCounts = sut.getYearCounts().collect(Collectors.toList());
+        assertEquals(Arrays.asList(Pair.of(Year.of(2016), 5L), Pair.of(Year.of(2018), 1L)), yearCounts);
+        assertEquals(Optional.of(YearMonth.of(2018, 2)), sut.getMostRecentYearMonth());
+    }
+
+    @Test
+    public void testVersion() throws IOException {
+        String version = sut.getVersion();
+        sut.getYearCounts().count();
+        assertEquals(version, sut.getVersion());
+
+        IndexDocument added = document(LocalDateTime.of(2019, 5, 1, 12, 0));
+        indexBackend.add(Collections.singletonList(added));
+        indexBackend.softCommit();
+        sut.update(Collections.singletonList(added.getFileName()));
+        assertFalse(version.equals(sut.getVersion()));
+    }
+
+    @Test
+    public void testVersionChangesOnInvalidate() {
+        String version = sut.getVersion();
+        sut.invalidate();
+        String invalidatedVersion = sut.getVersion();
+        assertFalse(version.equals(invalidatedVersion));
+
+        // reading the histogram again is a change as well
+        sut.getYearCounts().count();
+        assertFalse(invalidatedVersion.equals(sut.getVersion()));
+    }
+
+    @Test
+    public void testInvalidate() throws IOException {
+        indexBackend.deleteAll();
+        indexBackend.commit();
+        sut.invalidate();
+        assertFalse(sut.getYearCounts().findAny().isPresent());
+        assertEquals(Optional.empty(), sut.getMostRecentYearMonth());
+    }
+
+    private IndexDocument document(LocalDateTime dateTimeOriginal) {
+        String fileName = String.format("%s---%040d.jpg", FILE_NAME_FORMATTER.format(dateTimeOriginal), sequence++);
+        return new IndexDocument(fileName, null, Collections.emptySet(), dateTimeOriginal, 0L);
+    }
+}
@@ -0,0 +1,135 @@
+package de.zaunkoenigweg.biography.core.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import de.zaunkoenigweg.biography.core.archivemetadata.ArchiveValidationService;
+
+/**
+ * The media files do not exist, so they are not valid and their updates are deletions.
+ */
+public class IndexUpdateQueueTest {
+
+    private File archiveFolder;
+    private RecordingIndexBackend indexBackend;
+    private IndexUpdateQueue sut;
+
+    @Before
+    public void setUp() throws IOException {
+        archiveFolder = Files.createTempDirectory("biographyArchiveFolder").toFile();
+        archiveFolder.deleteOnExit();
+        File indexFolder = Files.createTempDirectory("biographyIndexFolder").toFile();
+        indexFolder.deleteOnExit();
+        indexBackend = new RecordingIndexBackend(indexFolder);
+        ArchiveValidationService archiveValidationService = new ArchiveValidationService(null, null, archiveFolder);
+        // the periodic flush does not interfere with the test
+        sut = new IndexUpdateQueue(indexBackend, new SearchService(indexBackend, 1000, 16L * 1024 * 1024), archiveValidationService, 600000, 600000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sut.destroy();
+        indexBackend.close();
+    }
+
+    @Test
+    public void testCoalescing() {
+        CompletableFuture<Void> first = sut.enqueue(file("2018/03/17/a.jpg"));
+        CompletableFuture<Void> second = sut.enqueue(file("2018/03/17/a.jpg"));
+        sut.enqueue(file("2018/03/17/b.jpg"));
+        assertSame(first, second);
+        assertEquals(2, sut.getStatistics().getQueueDepth());
+        assertEquals(1, sut.getStatistics().getCoalesced());
+
+        sut.flush();
+
+        assertTrue(first.isDone());
+        assertEquals(1, indexBackend.deletes.size());
+        assertEquals(2, indexBackend.deletes.get(0).size());
+        assertEquals(1, indexBackend.softCommits.get());
+        assertEquals(0, indexBackend.commits.get());
+        assertEquals(0, sut.getStatistics().getQueueDepth());
+        assertEquals(2, sut.getStatistics().getFlushedDocuments());
+    }
+
+    @Test
+    public void testEnqueueAndWait() {
+        assertTrue(sut.enqueueAndWait(file("2018/03/17/a.jpg"), 10000));
+        assertEquals(1, indexBackend.softCommits.get());
+    }
+
+    @Test
+    public void testFailedFlushIsRetried() {
+        indexBackend.failures.set(1);
+        CompletableFuture<Void> visible = sut.enqueue(file("2018/03/17/a.jpg"));
+
+        sut.flush();
+        assertFalse(visible.isDone());
+        assertEquals(1, sut.getStatistics().getQueueDepth());
+        assertEquals(1, sut.getStatistics().getFailedFlushes());
+
+        sut.flush();
+        assertTrue(visible.isDone());
+        assertEquals(0, sut.getStatistics().getQueueDepth());
+    }
+
+    @Test
+    public void testDestroyCommits() throws Exception {
+        sut.enqueue(file("2018/03/17/a.jpg"));
+        sut.destroy();
+        assertEquals(1, indexBackend.softCommits.get());
+        assertEquals(1, indexBackend.commits.get());
+    }
+
+    private File file(String path) {
+        return new File(archiveFolder, path);
+    }
+
+    private static class RecordingIndexBackend extends LuceneIndexBackend {
+
+        private List<Collection<String>> deletes = new ArrayList<>();
+        private AtomicInteger softCommits = new AtomicInteger();
+        private AtomicInteger commits = new AtomicInteger();
+        private AtomicInteger failures = new AtomicInteger();
+
+        private RecordingIndexBackend(File indexFolder) throws IOException {
+            super(indexFolder);
+        }
+
+        @Override
+        public synchronized void delete(Collection<String> fileNames) throws IOException {
+            if (failures.getAndDecrement() > 0) {
+                throw new IOException("Index is not available.");
+            }
+            deletes.add(new ArrayList<>(fileNames));
+            super.delete(fileNames);
+        }
+
+        @Override
+        public void softCommit() throws IOException {
+            softCommits.incrementAndGet();
+            super.softCommit();
+        }
+
+        @Override
+        public void commit() throws IOException {
+            commits.incrementAndGet();
+            super.commit();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package de.zaunkoenigweg.biography.core.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import de.zaunkoenigweg.biography.core.Sha1;
+import de.zaunkoenigweg.biography.core.archive.Archive;
+import de.zaunkoenigweg.biography.core.archivemetadata.ArchiveFileInspection;
+import de.zaunkoenigweg.biography.core.archivemetadata.ArchiveValidationService;
+import de.zaunkoenigweg.biography.metadata.BiographyMetadata;
+import de.zaunkoenigweg.biography.metadata.MetadataService;
+import de.zaunkoenigweg.biography.metadata.exif.ExifDataCache;
+import de.zaunkoenigweg.biography.metadata.exif.ExifDataService;
+
+public class IndexingServiceTest {
+
+    private static final DateTimeFormatter FILE_NAME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd--HH-mm-ss");
+
+    private static final long LAST_MODIFIED = 1500000000000L;
+
+    private static final String DELETED_FILE_NAME = "2016-01-01--12-00-00---0000000000000000000000000000000000000000.mov";
+
+    private File archiveFolder;
+    private String unchangedFileName;
+    private String updatedFileName;
+    private String unreadableFileName;
+    private LuceneIndexBackend indexBackend;
+    private IndexingService sut;
+    private List<String> console = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() throws IOException {
+        archiveFolder = Files.createTempDirectory("biographyArchiveFolder").toFile();
+        archiveFolder.deleteOnExit();
+        File indexFolder = Files.createTempDirectory("biographyIndexFolder").toFile();
+        indexFolder.deleteOnExit();
+        // movies are validated against their JSON metadata, no EXIF data has to be read
+        unchangedFileName = movie(LocalDateTime.of(2017, 5, 12, 21, 25, 8), "1");
+        updatedFileName = movie(LocalDateTime.of(2017, 10, 17, 16, 58, 40), "2");
+        unreadableFileName = movie(LocalDateTime.of(2017, 4, 3, 20, 58, 9), "3");
+
+        Archive archive = new Archive(archiveFolder);
+        ExifDataService exifDataService = new ExifDataService(archive, new ExifDataCache(Files.createTempDirectory("exifCache").toFile(), 100));
+        ArchiveValidationService archiveValidationService = new ArchiveValidationService(new MetadataService(exifDataService), exifDataService, archiveFolder) {
+            @Override
+            public ArchiveFileInspection inspect(File file) {
+                if (unreadableFileName.equals(file.getName())) {
+                    throw new IllegalStateException("unreadable");
+                }
+                return super.inspect(file);
+            }
+        };
+        indexBackend = new LuceneIndexBackend(indexFolder);
+        sut = new IndexingService(indexBackend, new SearchService(indexBackend, 1000, 16L * 1024 * 1024), 2, archive, archiveValidationService);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        indexBackend.close();
+    }
+
+    @Test
+    public void testRebuildIndexSkipsUnreadableFiles() throws IOException {
+        sut.rebuildIndex(console::add);
+
+        assertEquals(2, indexBackend.lastModifiedByFileName().size());
+        assertTrue(console.contains("Indexed files #: 2, skipped files #: 1, failed files #: 0"));
+    }
+
+    @Test
+    public void testSynchronizeIndex() throws IOException {
+        indexBackend.add(Arrays.asList(
+                document(unchangedFileName, LAST_MODIFIED),
+                document(updatedFileName, 0L),
+                document(DELETED_FILE_NAME, 0L)));
+        indexBackend.commit();
+
+        IndexingService.SyncStatistics statistics = sut.synchronizeIndex(console::add);
+
+        assertNotNull(statistics);
+        assertEquals(1, statistics.getAdded());
+        assertEquals(1, statistics.getUpdated());
+        assertEquals(1, statistics.getDeleted());
+        assertEquals(1, statistics.getUnchanged());
+        assertEquals(1, statistics.getSkipped());
+        assertEquals(0, statistics.getFailed());
+        assertEquals(Long.valueOf(LAST_MODIFIED), indexBackend.lastModifiedByFileName().get(updatedFileName));
+        assertEquals(2, indexBackend.lastModifiedByFileName().size());
+    }
+
+    @Test
+    public void testSynchronizeIndexWithChangedMetadataJsonFile() throws IOException {
+        sut.synchronizeIndex(console::add);
+        assertTrue(indexBackend.findByDescription(Arrays.asList("sunset"), SearchService.QueryMode.ALL, 10).isEmpty());
+
+        // only the JSON metadata file of the video is edited
+        File metadataJsonFile = ArchiveValidationService.metadataJsonFile(archiveFile(updatedFileName)).get();
+        BiographyMetadata metadata = new BiographyMetadata(LocalDateTime.of(2017, 10, 17, 16, 58, 40), Sha1.of(StringUtils.repeat("2", 40)), "sunset", Collections.emptySet());
+        FileUtils.writeStringToFile(metadataJsonFile, metadata.toJson(), StandardCharsets.UTF_8);
+        metadataJsonFile.setLastModified(LAST_MODIFIED + 60000L);
+
+        IndexingService.SyncStatistics statistics = sut.synchronizeIndex(console::add);
+
+        assertEquals(1, statistics.getUpdated());
+        assertEquals(1, statistics.getUnchanged());
+        assertEquals(Long.valueOf(LAST_MODIFIED + 60000L), indexBackend.lastModifiedByFileName().get(updatedFileName));
+        assertEquals(updatedFileName, indexBackend.findByDescription(Arrays.asList("sunset"), SearchService.QueryMode.ALL, 10).get(0).getFileName());
+
+        // the next synchronization finds nothing to do
+        statistics = sut.synchronizeIndex(console::add);
+        assertEquals(0, statistics.getUpdated());
+        assertEquals(2, statistics.getUnchanged());
+    }
+
+    private String movie(LocalDateTime dateTimeOriginal, String sha1Digit) throws IOException {
+        Sha1 sha1 = Sha1.of(StringUtils.repeat(sha1Digit, 40));
+        String fileName = String.format("%s---%s.mov", FILE_NAME_FORMATTER.format(dateTimeOriginal), sha1.value());
+        File file = archiveFile(fileName);
+        FileUtils.writeStringToFile(file, "movie", StandardCharsets.UTF_8);
+        BiographyMetadata metadata = new BiographyMetadata(dateTimeOriginal, sha1, null, Collections.emptySet());
+        File metadataJsonFile = new File(file.getParentFile(), String.format("b%s.json", sha1.value()));
+        FileUtils.writeStringToFile(metadataJsonFile, metadata.toJson(), StandardCharsets.UTF_8);
+        file.setLastModified(LAST_MODIFIED);
+        metadataJsonFile.setLastModified(LAST_MODIFIED);
+        return fileName;
+    }
+
+    private File archiveFile(String fileName) {
+        return new File(archiveFolder, String.format("%s/%s/%s", fileName.substring(0, 4), fileName.substring(5, 7), fileName));
+    }
+
+    private static IndexDocument document(String fileName, long lastModified) {
+        return new IndexDocument(fileName, null, Collections.emptySet(), LocalDateTime.of(2017, 1, 1, 12, 0), lastModified);
+    }
+}
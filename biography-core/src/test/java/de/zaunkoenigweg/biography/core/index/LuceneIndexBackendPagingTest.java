@@ -0,0 +1,101 @@
+package de.zaunkoenigweg.biography.core.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import de.zaunkoenigweg.biography.core.index.SearchService.QueryMode;
+
+public class LuceneIndexBackendPagingTest {
+
+    private static final LocalDate DATE = LocalDate.of(2018, 3, 17);
+
+    private LuceneIndexBackend sut;
+
+    @Before
+    public void setUp() throws IOException {
+        File indexFolder = Files.createTempDirectory("biographyIndexFolder").toFile();
+        indexFolder.deleteOnExit();
+        sut = new LuceneIndexBackend(indexFolder);
+        List<IndexDocument> documents = new ArrayList<>();
+        // inserted in reverse order, two media files share the same datetime/original
+        for (int i = 9; i >= 0; i--) {
+            documents.add(document(String.format("file%02d.jpg", i), DATE.atTime(12, i / 2 * 2), "holiday beach"));
+        }
+        documents.add(document("other.jpg", DATE.plusDays(1).atTime(12, 0), "holiday mountains"));
+        sut.add(documents);
+        sut.commit();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        sut.close();
+    }
+
+    @Test
+    public void testFindByDatePaged() throws IOException {
+        List<String> fileNames = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String cursor = null;
+        do {
+            MediaFilePage page = sut.findByDate(DATE, cursor, 4);
+            page.getMediaFiles().stream().map(MediaFile::getFileName).forEach(fileNames::add);
+            pageSizes.add(page.getMediaFiles().size());
+            cursor = page.getNextCursor().orElse(null);
+        } while (cursor != null);
+
+        assertEquals(Arrays.asList(4, 4, 2), pageSizes);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            expected.add(String.format("file%02d.jpg", i));
+        }
+        assertEquals(expected, fileNames);
+    }
+
+    @Test
+    public void testCursorIsStableWhenDocumentsAreAdded() throws IOException {
+        MediaFilePage first = sut.findByDate(DATE, null, 5);
+        sut.add(Collections.singletonList(document("early.jpg", DATE.atTime(0, 0), "holiday")));
+        sut.softCommit();
+
+        MediaFilePage second = sut.findByDate(DATE, first.getNextCursor().get(), 5);
+        assertEquals(Arrays.asList("file05.jpg", "file06.jpg", "file07.jpg", "file08.jpg", "file09.jpg"),
+                second.getMediaFiles().stream().map(MediaFile::getFileName).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testFindByDescriptionPaged() throws IOException {
+        MediaFilePage page = sut.findByDescription(Arrays.asList("holiday"), QueryMode.ALL, null, 10);
+        assertEquals(10, page.getMediaFiles().size());
+        assertTrue(page.getNextCursor().isPresent());
+
+        MediaFilePage last = sut.findByDescription(Arrays.asList("holiday"), QueryMode.ALL, page.getNextCursor().get(), 10);
+        assertEquals(1, last.getMediaFiles().size());
+        assertEquals("other.jpg", last.getMediaFiles().get(0).getFileName());
+        assertFalse(last.getNextCursor().isPresent());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCursor() throws IOException {
+        sut.findByDate(DATE, "no-cursor", 4);
+    }
+
+    private static IndexDocument document(String fileName, LocalDateTime dateTimeOriginal, String description) {
+        return new IndexDocument(fileName, description, Collections.emptySet(), dateTimeOriginal, 0L);
+    }
+}
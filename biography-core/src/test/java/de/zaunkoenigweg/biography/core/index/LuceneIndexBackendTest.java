@@ -0,0 +1,130 @@
+package de.zaunkoenigweg.biography.core.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LuceneIndexBackendTest {
+
+    private LuceneIndexBackend sut;
+
+    @Before
+    public void setUp() throws IOException {
+        File indexFolder = Files.createTempDirectory("biographyIndexFolder").toFile();
+        indexFolder.deleteOnExit();
+        sut = new LuceneIndexBackend(indexFolder);
+        sut.add(Arrays.asList(
+                document("a.jpg", LocalDateTime.of(2016, 4, 11, 12, 0), 1L, "Holiday"),
+                document("b.jpg", LocalDateTime.of(2016, 4, 12, 12, 0), 2L, "Holiday", "Family"),
+                document("c.jpg", LocalDateTime.of(2016, 6, 1, 12, 0), 3L)));
+        sut.commit();
+        // second segment, the albums have to be merged across segments
+        sut.add(Arrays.asList(
+                document("d.jpg", LocalDateTime.of(2017, 1, 3, 12, 0), 4L, "Holiday"),
+                document("e.jpg", LocalDateTime.of(2017, 1, 4, 12, 0), 5L, "Family")));
+        sut.commit();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        sut.close();
+    }
+
+    @Test
+    public void testLastModifiedByFileName() throws IOException {
+        Map<String, Long> expected = new HashMap<>();
+        expected.put("a.jpg", 1L);
+        expected.put("b.jpg", 2L);
+        expected.put("c.jpg", 3L);
+        expected.put("d.jpg", 4L);
+        expected.put("e.jpg", 5L);
+        assertEquals(expected, sut.lastModifiedByFileName());
+    }
+
+    @Test
+    public void testAddReplacesDocumentWithSameFileName() throws IOException {
+        sut.add(Collections.singletonList(document("a.jpg", LocalDateTime.of(2016, 4, 11, 12, 0), 10L, "Beach")));
+        sut.commit();
+
+        assertEquals(Long.valueOf(10L), sut.lastModifiedByFileName().get("a.jpg"));
+        assertEquals(5, sut.lastModifiedByFileName().size());
+        assertEquals(Collections.singletonList("a.jpg"), fileNames(sut.findByAlbum("Beach", 10)));
+        assertEquals(Collections.singletonList("b.jpg"), fileNames(sut.findByDate(LocalDate.of(2016, 4, 12), 10)));
+        assertEquals(Arrays.asList("b.jpg", "d.jpg"), fileNames(sut.findByAlbum("Holiday", 10)).stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testDelete() throws IOException {
+        sut.delete(Arrays.asList("b.jpg", "e.jpg", "unknown.jpg"));
+        sut.commit();
+
+        assertEquals(new HashSet<>(Arrays.asList("a.jpg", "c.jpg", "d.jpg")), sut.lastModifiedByFileName().keySet());
+        assertTrue(sut.findByDate(LocalDate.of(2016, 4, 12), 10).isEmpty());
+        assertEquals(Collections.singletonMap(2017L, 1L), sut.countBy(Index.FIELD_YEAR_LONG_POINT, Index.FIELD_YEAR_LONG_POINT, 2017L));
+    }
+
+    @Test
+    public void testCountBy() throws IOException {
+        Map<Long, Long> years = new TreeMap<>();
+        years.put(2016L, 3L);
+        years.put(2017L, 2L);
+        assertEquals(years, sut.countBy(Index.FIELD_YEAR_LONG_POINT));
+
+        Map<Long, Long> months = new TreeMap<>();
+        months.put(201604L, 2L);
+        months.put(201606L, 1L);
+        assertEquals(months, sut.countBy(Index.FIELD_YEAR_MONTH_LONG_POINT, Index.FIELD_YEAR_LONG_POINT, 2016L));
+
+        assertTrue(sut.countBy(Index.FIELD_YEAR_MONTH_LONG_POINT, Index.FIELD_YEAR_LONG_POINT, 2018L).isEmpty());
+    }
+
+    @Test
+    public void testAlbums() throws IOException {
+        Map<String, Album> albums = sut.albums().stream().collect(Collectors.toMap(Album::getName, album -> album));
+
+        assertEquals(2, albums.size());
+        Album holiday = albums.get("Holiday");
+        assertEquals(3, holiday.getSize());
+        assertEquals(LocalDate.of(2016, 4, 11), holiday.getBegin());
+        assertEquals(LocalDate.of(2017, 1, 3), holiday.getEnd());
+        Album family = albums.get("Family");
+        assertEquals(2, family.getSize());
+        assertEquals(LocalDate.of(2016, 4, 12), family.getBegin());
+        assertEquals(LocalDate.of(2017, 1, 4), family.getEnd());
+    }
+
+    @Test
+    public void testDeleteAll() throws IOException {
+        sut.deleteAll();
+        sut.commit();
+
+        assertTrue(sut.lastModifiedByFileName().isEmpty());
+        assertTrue(sut.albums().isEmpty());
+        assertTrue(sut.countBy(Index.FIELD_YEAR_LONG_POINT).isEmpty());
+    }
+
+    private static IndexDocument document(String fileName, LocalDateTime dateTimeOriginal, long lastModified, String... albums) {
+        return new IndexDocument(fileName, null, new HashSet<>(Arrays.asList(albums)), dateTimeOriginal, lastModified);
+    }
+
+    private static List<String> fileNames(List<MediaFile> mediaFiles) {
+        return mediaFiles.stream().map(MediaFile::getFileName).collect(Collectors.toList());
+    }
+}
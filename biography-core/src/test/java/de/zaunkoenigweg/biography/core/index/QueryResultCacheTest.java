@@ -0,0 +1,86 @@
+package de.zaunkoenigweg.biography.core.index;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToLongFunction;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class QueryResultCacheTest {
+
+    private static final ToLongFunction<String> BYTES = QueryResultCache::bytes;
+
+    private AtomicInteger executions = new AtomicInteger();
+
+    @Test
+    public void testHit() {
+        QueryResultCache sut = new QueryResultCache(100, 1024L * 1024);
+        assertEquals("result", sut.get("query", this::execute, BYTES));
+        assertEquals("result", sut.get("query", this::execute, BYTES));
+        assertEquals(1, executions.get());
+        assertEquals(1, sut.getStatistics().getHits());
+        assertEquals(1, sut.getStatistics().getMisses());
+        assertEquals(0.5, sut.getStatistics().getHitRatio(), 0.0);
+        assertEquals(1, sut.getStatistics().getEntries());
+        assertTrue(sut.getStatistics().getBytesHeld() > 0);
+    }
+
+    @Test
+    public void testNextGeneration() {
+        QueryResultCache sut = new QueryResultCache(100, 1024L * 1024);
+        sut.get("query", this::execute, BYTES);
+        sut.nextGeneration();
+        assertEquals(0, sut.getStatistics().getEntries());
+        assertEquals(0, sut.getStatistics().getBytesHeld());
+        assertEquals(1, sut.getStatistics().getInvalidations());
+        sut.get("query", this::execute, BYTES);
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    public void testResultOfPreviousGenerationIsNotCached() {
+        QueryResultCache sut = new QueryResultCache(100, 1024L * 1024);
+        sut.get("query", () -> {
+            // the index is changed while the query is running
+            sut.nextGeneration();
+            return execute();
+        }, BYTES);
+        sut.get("query", this::execute, BYTES);
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    public void testFailedQueryIsNotCached() {
+        QueryResultCache sut = new QueryResultCache(100, 1024L * 1024);
+        assertNull(sut.get("query", () -> null, BYTES));
+        assertEquals(0, sut.getStatistics().getEntries());
+    }
+
+    @Test
+    public void testEntriesAreBounded() {
+        QueryResultCache sut = new QueryResultCache(4, 1024L * 1024);
+        for (int i = 0; i < 100; i++) {
+            sut.get("query" + i, this::execute, BYTES);
+        }
+        assertTrue(sut.getStatistics().getEntries() <= 4);
+        assertEquals(100, sut.getStatistics().getEntries() + sut.getStatistics().getEvictions());
+    }
+
+    @Test
+    public void testBytesAreBounded() {
+        QueryResultCache sut = new QueryResultCache(1000, 64L * 1024);
+        for (int i = 0; i < 100; i++) {
+            sut.get("query" + i, this::execute, result -> 2048);
+        }
+        assertTrue(sut.getStatistics().getBytesHeld() <= 64L * 1024);
+        assertTrue(sut.getStatistics().getEvictions() > 0);
+    }
+
+    private String execute() {
+        executions.incrementAndGet();
+        return "result";
+    }
+}
@@ -0,0 +1,112 @@
+package de.zaunkoenigweg.biography.core.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimelineTest {
+
+    private static final DateTimeFormatter FILE_NAME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd--HH-mm-ss");
+
+    private LuceneIndexBackend indexBackend;
+    private SearchService sut;
+
+    /**
+     * file names in timeline order
+     */
+    private List<String> timeline = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        File indexFolder = Files.createTempDirectory("biographyIndexFolder").toFile();
+        indexFolder.deleteOnExit();
+        indexBackend = new LuceneIndexBackend(indexFolder);
+        List<IndexDocument> documents = new ArrayList<>();
+        for (int day = 1; day <= 5; day++) {
+            // two media files per day share the same datetime/original
+            for (int i = 0; i < 3; i++) {
+                LocalDateTime dateTimeOriginal = LocalDate.of(2018, 3, day).atTime(12, i / 2);
+                String fileName = String.format("%s---%040d.jpg", FILE_NAME_FORMATTER.format(dateTimeOriginal), day * 10 + i);
+                documents.add(new IndexDocument(fileName, null, Collections.emptySet(), dateTimeOriginal, 0L));
+                timeline.add(fileName);
+            }
+        }
+        // the index order differs from the timeline
+        Collections.reverse(documents);
+        indexBackend.add(documents);
+        indexBackend.commit();
+        sut = new SearchService(indexBackend, 1000, 16L * 1024 * 1024);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        indexBackend.close();
+    }
+
+    @Test
+    public void testForward() {
+        List<String> fileNames = new ArrayList<>();
+        MediaFilePage page = sut.findTimeline(TimelineKey.startOf(LocalDate.of(2018, 3, 1)), true, 4);
+        fileNames.addAll(fileNames(page));
+        while (page.getNextCursor().isPresent()) {
+            page = sut.findTimeline(TimelineKey.of(page.getNextCursor().get()), true, 4);
+            fileNames.addAll(fileNames(page));
+        }
+        assertEquals(timeline, fileNames);
+    }
+
+    @Test
+    public void testBackward() {
+        List<String> fileNames = new ArrayList<>();
+        MediaFilePage page = sut.findTimeline(TimelineKey.end(), false, 4);
+        fileNames.addAll(0, fileNames(page));
+        while (page.getNextCursor().isPresent()) {
+            page = sut.findTimeline(TimelineKey.of(page.getNextCursor().get()), false, 4);
+            fileNames.addAll(0, fileNames(page));
+        }
+        assertEquals(timeline, fileNames);
+    }
+
+    @Test
+    public void testRelativeToMediaFile() {
+        TimelineKey key = TimelineKey.of(timeline.get(7));
+        assertEquals(timeline.subList(8, 11), fileNames(sut.findTimeline(key, true, 3)));
+        assertEquals(timeline.subList(4, 7), fileNames(sut.findTimeline(key, false, 3)));
+    }
+
+    @Test
+    public void testJumpToDate() {
+        MediaFilePage page = sut.findTimeline(TimelineKey.startOf(LocalDate.of(2018, 3, 4)), true, 3);
+        assertEquals(timeline.subList(9, 12), fileNames(page));
+        assertEquals(Optional.of(timeline.get(11)), page.getNextCursor());
+
+        page = sut.findTimeline(TimelineKey.startOf(LocalDate.of(2018, 3, 4)), false, 2);
+        assertEquals(timeline.subList(7, 9), fileNames(page));
+
+        assertTrue(sut.findTimeline(TimelineKey.startOf(LocalDate.of(2018, 3, 6)), true, 3).getMediaFiles().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidFileName() {
+        TimelineKey.of("no-media-file.jpg");
+    }
+
+    private static List<String> fileNames(MediaFilePage page) {
+        return page.getMediaFiles().stream().map(MediaFile::getFileName).collect(Collectors.toList());
+    }
+}
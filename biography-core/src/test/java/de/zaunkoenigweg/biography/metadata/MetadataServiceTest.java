@@ -15,6 +15,7 @@ import org.junit.Test;
 
 import de.zaunkoenigweg.biography.core.archive.Archive;
 import de.zaunkoenigweg.biography.metadata.exif.ExifData;
+import de.zaunkoenigweg.biography.metadata.exif.ExifDataCache;
 import de.zaunkoenigweg.biography.metadata.exif.ExifDataService;
 
 // TODO tests for missing methods of service (see out-commented section at end of file)
@@ -30,7 +31,7 @@ public class MetadataServiceTest {
     public void setUp() throws IOException {
         someFolder = Files.createTempDirectory("someFolder").toFile();
         someFolder.deleteOnExit();
-        exifDataService = new ExifDataService(new Archive(this.someFolder));
+        exifDataService = new ExifDataService(new Archive(this.someFolder), new ExifDataCache(Files.createTempDirectory("exifCache").toFile(), 100));
         this.sut = new MetadataService(exifDataService);
     }
 
@@ -0,0 +1,122 @@
+package de.zaunkoenigweg.biography.metadata.exif;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ExifDataCacheTest {
+
+    private File cacheFolder;
+    private File mediaFile;
+    private AtomicInteger loaderCalls;
+    private Function<File, ExifData> loader;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheFolder = Files.createTempDirectory("exifCache").toFile();
+        cacheFolder.deleteOnExit();
+        mediaFile = Files.createTempFile("mediaFile", ".jpg").toFile();
+        mediaFile.deleteOnExit();
+        FileUtils.write(mediaFile, "some content", StandardCharsets.UTF_8);
+        loaderCalls = new AtomicInteger();
+        loader = file -> {
+            loaderCalls.incrementAndGet();
+            ExifData exifData = new ExifData(LocalDateTime.of(2005, 2, 22, 13, 51, 32, 80_000_000));
+            exifData.setDescription("Christchurch");
+            exifData.setUserComment("{}");
+            return exifData;
+        };
+    }
+
+    @Test
+    public void testMemoryHit() {
+        ExifDataCache sut = new ExifDataCache(cacheFolder, 10);
+        ExifData exifData = sut.get(mediaFile, loader);
+        assertEquals(exifData, sut.get(mediaFile, loader));
+        assertEquals(1, loaderCalls.get());
+        assertEquals(1, sut.getStatistics().getMisses());
+        assertEquals(1, sut.getStatistics().getMemoryHits());
+    }
+
+    @Test
+    public void testDiskHitAfterRestart() {
+        ExifData exifData = new ExifDataCache(cacheFolder, 10).get(mediaFile, loader);
+        ExifDataCache sut = new ExifDataCache(cacheFolder, 10);
+        assertTrue(sut.contains(mediaFile));
+        assertEquals(exifData, sut.get(mediaFile, loader));
+        assertEquals(1, loaderCalls.get());
+        assertEquals(1, sut.getStatistics().getDiskHits());
+    }
+
+    @Test
+    public void testChangedFileIsReloaded() throws IOException {
+        ExifDataCache sut = new ExifDataCache(cacheFolder, 10);
+        sut.get(mediaFile, loader);
+        FileUtils.write(mediaFile, "some other content", StandardCharsets.UTF_8);
+        assertFalse(sut.contains(mediaFile));
+        sut.get(mediaFile, loader);
+        assertEquals(2, loaderCalls.get());
+    }
+
+    @Test
+    public void testInvalidate() {
+        ExifDataCache sut = new ExifDataCache(cacheFolder, 10);
+        sut.get(mediaFile, loader);
+        sut.invalidate(mediaFile);
+        assertFalse(sut.contains(mediaFile));
+        sut.get(mediaFile, loader);
+        assertEquals(2, loaderCalls.get());
+    }
+
+    @Test
+    public void testMissingExifDataIsCached() {
+        ExifDataCache sut = new ExifDataCache(cacheFolder, 10);
+        Function<File, ExifData> nullLoader = file -> {
+            loaderCalls.incrementAndGet();
+            return null;
+        };
+        assertNull(sut.get(mediaFile, nullLoader));
+        assertNull(new ExifDataCache(cacheFolder, 10).get(mediaFile, nullLoader));
+        assertEquals(1, loaderCalls.get());
+    }
+
+    @Test
+    public void testCachedExifDataIsACopy() {
+        ExifDataCache sut = new ExifDataCache(cacheFolder, 10);
+        sut.get(mediaFile, loader).setDescription("changed");
+        assertEquals("Christchurch", sut.get(mediaFile, loader).getDescription().get());
+    }
+
+    @Test
+    public void testPrune() throws IOException {
+        File deletedFile = Files.createTempFile("deletedFile", ".jpg").toFile();
+        ExifDataCache sut = new ExifDataCache(cacheFolder, 10);
+        sut.get(mediaFile, loader);
+        sut.get(deletedFile, loader);
+        deletedFile.delete();
+        File corruptEntry = new File(cacheFolder, "00/corrupt.json");
+        FileUtils.write(corruptEntry, "{", StandardCharsets.UTF_8);
+
+        assertEquals(2, sut.prune(file -> true));
+        assertFalse(corruptEntry.exists());
+        assertTrue(new ExifDataCache(cacheFolder, 10).contains(mediaFile));
+
+        // entries of existing files are removed if they are not to be retained
+        assertEquals(1, sut.prune(file -> !file.equals(mediaFile)));
+        assertFalse(sut.contains(mediaFile));
+        assertEquals(0, sut.prune(file -> true));
+    }
+}
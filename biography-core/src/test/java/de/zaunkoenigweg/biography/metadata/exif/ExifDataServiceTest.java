@@ -25,7 +25,7 @@ public class ExifDataServiceTest {
         tempFolder = Files.createTempDirectory("tempFolder").toFile();
         tempFolder.deleteOnExit();
         someEmptyFile = Files.createTempFile("someFile", null).toFile();
-        exifDataService = new ExifDataService(new Archive(this.tempFolder));
+        exifDataService = new ExifDataService(new Archive(this.tempFolder), new ExifDataCache(Files.createTempDirectory("exifCache").toFile(), 100));
     }
 
     @Test
@@ -1,6 +1,7 @@
 package de.zaunkoenigweg.biography.web;
 
 import java.io.File;
+import java.io.IOException;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Value;
@@ -8,6 +9,14 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 
+import de.zaunkoenigweg.biography.core.archiveimport.ThumbnailSizes;
+import de.zaunkoenigweg.biography.core.index.IndexBackend;
+import de.zaunkoenigweg.biography.core.index.LuceneIndexBackend;
+import de.zaunkoenigweg.biography.core.index.SearchService;
+import de.zaunkoenigweg.biography.core.index.SolrClientSettings;
+import de.zaunkoenigweg.biography.core.index.SolrConnection;
+import de.zaunkoenigweg.biography.core.index.SolrIndexBackend;
+
 @SpringBootApplication(scanBasePackages = { "de.zaunkoenigweg.biography.metadata", "de.zaunkoenigweg.biography.core", "de.zaunkoenigweg.biography.web" })
 public class Application {
 
@@ -47,4 +56,149 @@ public class Application {
     		}
     		return url;
     }
+
+    @Bean
+    public Integer indexBatchSize(@Value("${index.batch-size:500}") Integer batchSize) {
+    		if(batchSize==null || batchSize < 1) {
+    			String msg = String.format("The index batch size must be positive, but is %s.", batchSize);
+    			throw new RuntimeException(msg);
+    		}
+    		return batchSize;
+    }
+
+    @Bean
+    public Integer indexFlushInterval(@Value("${index.flush-interval:1000}") Integer flushInterval) {
+    		if(flushInterval==null || flushInterval < 1) {
+    			String msg = String.format("The index flush interval must be positive, but is %s.", flushInterval);
+    			throw new RuntimeException(msg);
+    		}
+    		return flushInterval;
+    }
+
+    @Bean
+    public Integer indexCommitInterval(@Value("${index.commit-interval:60000}") Integer commitInterval, Integer indexFlushInterval) {
+    		if(commitInterval==null || commitInterval < indexFlushInterval) {
+    			String msg = String.format("The index commit interval must not be shorter than the flush interval (%d ms), but is %s.", indexFlushInterval, commitInterval);
+    			throw new RuntimeException(msg);
+    		}
+    		return commitInterval;
+    }
+
+    @Bean
+    public Integer searchPageSize(@Value("${search.page-size:100}") Integer pageSize) {
+    		if(pageSize==null || pageSize < 1 || pageSize > SearchService.MAX_RESULTS) {
+    			String msg = String.format("The search page size must be between 1 and %d, but is %s.", SearchService.MAX_RESULTS, pageSize);
+    			throw new RuntimeException(msg);
+    		}
+    		return pageSize;
+    }
+
+    @Bean
+    public Integer queryCacheMaxEntries(@Value("${search.cache.max-entries:2000}") Integer maxEntries) {
+    		if(maxEntries==null || maxEntries < 1) {
+    			String msg = String.format("The query cache size must be positive, but is %s.", maxEntries);
+    			throw new RuntimeException(msg);
+    		}
+    		return maxEntries;
+    }
+
+    @Bean
+    public Long queryCacheMaxBytes(@Value("${search.cache.max-bytes:33554432}") Long maxBytes, Integer queryCacheMaxEntries) {
+    		if(maxBytes==null || maxBytes < queryCacheMaxEntries) {
+    			String msg = String.format("The query cache must hold at least one byte per entry (%d entries), but holds %s bytes.", queryCacheMaxEntries, maxBytes);
+    			throw new RuntimeException(msg);
+    		}
+    		return maxBytes;
+    }
+
+    @Bean
+    public IndexBackend indexBackend(@Value("${index.backend:solr}") String indexBackend, SolrConnection solrConnection, File archiveFolder) throws IOException {
+    		switch (StringUtils.lowerCase(StringUtils.trim(indexBackend))) {
+    		case "solr":
+    			return new SolrIndexBackend(solrConnection);
+    		case "lucene":
+    			return new LuceneIndexBackend(new File(archiveFolder.getAbsoluteFile().getParentFile(), "index"));
+    		default:
+    			String msg = String.format("Unknown index backend '%s', must be 'solr' or 'lucene'.", indexBackend);
+    			throw new RuntimeException(msg);
+    		}
+    }
+
+    @Bean
+    public Integer batchParallelism(@Value("${batch.parallelism:0}") Integer parallelism) {
+    		if(parallelism==null || parallelism < 0) {
+    			String msg = String.format("The batch parallelism must not be negative, but is %s.", parallelism);
+    			throw new RuntimeException(msg);
+    		}
+    		return parallelism==0 ? Runtime.getRuntime().availableProcessors() : parallelism;
+    }
+
+    @Bean
+    public Integer importParallelism(@Value("${import.parallelism:0}") Integer parallelism) {
+    		if(parallelism==null || parallelism < 0) {
+    			String msg = String.format("The import parallelism must not be negative, but is %s.", parallelism);
+    			throw new RuntimeException(msg);
+    		}
+    		return parallelism==0 ? Runtime.getRuntime().availableProcessors() : parallelism;
+    }
+
+    @Bean
+    public Integer uploadParallelism(@Value("${import.upload-parallelism:4}") Integer parallelism) {
+    		if(parallelism==null || parallelism < 1) {
+    			String msg = String.format("The upload parallelism must be positive, but is %s.", parallelism);
+    			throw new RuntimeException(msg);
+    		}
+    		return parallelism;
+    }
+
+    @Bean
+    public ThumbnailSizes thumbnailSizes(@Value("${thumbnail.sizes:120,200,300,800,1600}") int[] sizes,
+    		@Value("${thumbnail.pregenerated-sizes:200,300}") int[] pregeneratedSizes,
+    		@Value("${thumbnail.gallery-size:300}") int gallerySize) {
+    		return new ThumbnailSizes(sizes, pregeneratedSizes, gallerySize);
+    }
+
+    @Bean
+    public Long thumbnailCacheMaxBytes(@Value("${thumbnail.cache.max-bytes:67108864}") Long maxBytes) {
+    		if(maxBytes==null || maxBytes < 0) {
+    			String msg = String.format("The thumbnail cache size must not be negative, but is %s.", maxBytes);
+    			throw new RuntimeException(msg);
+    		}
+    		return maxBytes;
+    }
+
+    @Bean
+    public File exifCacheFolder(File archiveFolder) {
+    		return new File(archiveFolder.getAbsoluteFile().getParentFile(), "exif-cache");
+    }
+
+    @Bean
+    public File validationResultsFile(File archiveFolder) {
+    		return new File(archiveFolder.getAbsoluteFile().getParentFile(), "validation-results.json");
+    }
+
+    @Bean
+    public Integer exifCacheMaxEntries(@Value("${exif.cache.max-entries:20000}") Integer maxEntries) {
+    		if(maxEntries==null || maxEntries < 0) {
+    			String msg = String.format("The EXIF cache size must not be negative, but is %s.", maxEntries);
+    			throw new RuntimeException(msg);
+    		}
+    		return maxEntries;
+    }
+
+    @Bean
+    public SolrClientSettings solrClientSettings(
+    		@Value("${solr.client.max-connections-per-route:20}") int maxConnectionsPerRoute,
+    		@Value("${solr.client.max-connections-total:50}") int maxConnectionsTotal,
+    		@Value("${solr.client.keep-alive-millis:60000}") long keepAliveMillis,
+    		@Value("${solr.client.connect-timeout-millis:5000}") int connectTimeoutMillis,
+    		@Value("${solr.client.socket-timeout-millis:60000}") int socketTimeoutMillis) {
+    		SolrClientSettings settings = new SolrClientSettings();
+    		settings.setMaxConnectionsPerRoute(maxConnectionsPerRoute);
+    		settings.setMaxConnectionsTotal(maxConnectionsTotal);
+    		settings.setKeepAliveMillis(keepAliveMillis);
+    		settings.setConnectTimeoutMillis(connectTimeoutMillis);
+    		settings.setSocketTimeoutMillis(socketTimeoutMillis);
+    		return settings;
+    }
 }
@@ -0,0 +1,198 @@
+package de.zaunkoenigweg.biography.web.console;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the batch jobs.
+ *
+ * A fixed number of workers is shared by all jobs. The work items of a job are processed concurrently,
+ * if more than one job is running, the workers take the items of the jobs in turn (round robin),
+ * so a long job does not block a short one.
+ *
+ * The progress is reported to the job's {@link Console}, which is closed when the job is finished.
+ */
+@Component
+public class BatchExecutor implements DisposableBean {
+
+    private final static Log LOG = LogFactory.getLog(BatchExecutor.class);
+
+    private List<BatchJob<?>> activeJobs = new ArrayList<>();
+    private int nextJobIndex;
+    private boolean shutdown;
+
+    /**
+     * unfinished jobs by their console
+     */
+    private Map<Console, BatchJob<?>> jobsByConsole = new ConcurrentHashMap<>();
+
+    private List<Thread> workers = new ArrayList<>();
+
+    public BatchExecutor(Integer batchParallelism) {
+        for (int i = 0; i < batchParallelism; i++) {
+            Thread worker = new Thread(this::work, String.format("batch-worker-%d", i));
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        LOG.info("BatchExecutor started.");
+        LOG.info(String.format("batchParallelism=%d", batchParallelism));
+    }
+
+    /**
+     * Submits a job processing the given items concurrently.
+     *
+     * @param console console of the job
+     * @param items work items
+     * @param worker processes one work item, must be thread-safe
+     * @param onFinish called after the last item (e.g. to print a summary) before the console is closed
+     * @return job
+     */
+    public <T> BatchJob<T> submit(Console console, List<T> items, Consumer<T> worker, Runnable onFinish) {
+        console.setTotal(items.size());
+        BatchJob<T> job = new BatchJob<>(console, items.iterator(), worker, onFinish);
+        jobsByConsole.put(console, job);
+        if (job.isComplete()) {
+            finish(job);
+            return job;
+        }
+        synchronized (this) {
+            activeJobs.add(job);
+            notifyAll();
+        }
+        return job;
+    }
+
+    /**
+     * Submits a job consisting of one task, that cannot be split into work items.
+     *
+     * Such a job can be cancelled or paused only before it has started.
+     *
+     * @param console console of the job
+     * @param task task
+     * @return job
+     */
+    public BatchJob<Runnable> submit(Console console, Runnable task) {
+        return submit(console, Collections.singletonList(task), Runnable::run, () -> console.println("Finished."));
+    }
+
+    /**
+     * @return unfinished job of the console, empty if the job is finished
+     */
+    public Optional<BatchJob<?>> getJob(Console console) {
+        return Optional.ofNullable(jobsByConsole.get(console));
+    }
+
+    public boolean pause(BatchJob<?> job) {
+        return job.getState() == BatchJob.State.RUNNING && job.setState(BatchJob.State.PAUSED);
+    }
+
+    public boolean resume(BatchJob<?> job) {
+        if (job.getState() != BatchJob.State.PAUSED || !job.setState(BatchJob.State.RUNNING)) {
+            return false;
+        }
+        synchronized (this) {
+            notifyAll();
+        }
+        return true;
+    }
+
+    /**
+     * Cancels the job. Items that are being processed are finished, the remaining items are skipped.
+     */
+    public boolean cancel(BatchJob<?> job) {
+        if (!job.setState(BatchJob.State.CANCELLED)) {
+            return false;
+        }
+        if (job.isComplete()) {
+            remove(job);
+            finish(job);
+        }
+        return true;
+    }
+
+    @Override
+    public void destroy() {
+        synchronized (this) {
+            shutdown = true;
+            notifyAll();
+        }
+        workers.forEach(Thread::interrupt);
+    }
+
+    private void work() {
+        while (true) {
+            BatchJob<?> job = null;
+            Runnable task;
+            synchronized (this) {
+                while (!shutdown && (job = nextJob()) == null) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (shutdown) {
+                    return;
+                }
+                task = job.next();
+            }
+            // the workers are shared by all jobs, so they must survive any failure of a job
+            try {
+                task.run();
+            } catch (Throwable e) {
+                LOG.error(String.format("Error in batch '%s'.", job.getConsole().getTitle()), e);
+                job.getConsole().println(String.format("ERROR: %s", e.getMessage()));
+            } finally {
+                if (job.itemDone()) {
+                    remove(job);
+                    finish(job);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finishes the job, a failing finish callback is logged (the console is already closed then).
+     * The finished job is released, so its items are not retained.
+     */
+    private void finish(BatchJob<?> job) {
+        try {
+            job.finish();
+        } catch (Throwable e) {
+            LOG.error(String.format("Error finishing batch '%s'.", job.getConsole().getTitle()), e);
+        } finally {
+            jobsByConsole.remove(job.getConsole(), job);
+        }
+    }
+
+    /**
+     * Picks the next job with pending items, taking the jobs in turn.
+     */
+    private BatchJob<?> nextJob() {
+        int size = activeJobs.size();
+        for (int i = 0; i < size; i++) {
+            BatchJob<?> job = activeJobs.get((nextJobIndex + i) % size);
+            if (job.isEligible()) {
+                nextJobIndex = (nextJobIndex + i + 1) % size;
+                return job;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void remove(BatchJob<?> job) {
+        activeJobs.remove(job);
+    }
+}
@@ -0,0 +1,103 @@
+package de.zaunkoenigweg.biography.web.console;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * Batch job run by the {@link BatchExecutor}.
+ *
+ * The work items of the job are processed concurrently by the workers of the executor.
+ * The state is guarded by the executor.
+ */
+public class BatchJob<T> {
+
+    public static enum State {
+        RUNNING, PAUSED, CANCELLED, FINISHED
+    }
+
+    private Console console;
+    private Iterator<T> items;
+    private Consumer<T> worker;
+    private Runnable onFinish;
+    private State state = State.RUNNING;
+    private int inFlight;
+
+    BatchJob(Console console, Iterator<T> items, Consumer<T> worker, Runnable onFinish) {
+        this.console = console;
+        this.items = items;
+        this.worker = worker;
+        this.onFinish = onFinish;
+    }
+
+    public Console getConsole() {
+        return console;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Can a worker take the next item of this job?
+     */
+    synchronized boolean isEligible() {
+        return state == State.RUNNING && items.hasNext();
+    }
+
+    /**
+     * Takes the next item, the returned task processes it.
+     */
+    synchronized Runnable next() {
+        T item = items.next();
+        inFlight++;
+        return () -> worker.accept(item);
+    }
+
+    /**
+     * Reports a processed item.
+     * @return Is the job complete now?
+     */
+    synchronized boolean itemDone() {
+        inFlight--;
+        console.itemDone();
+        return isComplete();
+    }
+
+    synchronized boolean setState(State state) {
+        if (this.state == State.CANCELLED || this.state == State.FINISHED) {
+            return false;
+        }
+        this.state = state;
+        return true;
+    }
+
+    /**
+     * The job is complete, if there are no more items to process (or it was cancelled) and no item is in flight.
+     */
+    synchronized boolean isComplete() {
+        return state != State.FINISHED && inFlight == 0 && (state == State.CANCELLED || !items.hasNext());
+    }
+
+    /**
+     * Runs the finish callback and closes the console, only the first call has an effect.
+     * The console is closed even if the callback fails.
+     */
+    void finish() {
+        boolean cancelled;
+        synchronized (this) {
+            if (state == State.FINISHED) {
+                return;
+            }
+            cancelled = state == State.CANCELLED;
+            state = State.FINISHED;
+        }
+        if (cancelled) {
+            console.println("Cancelled.");
+        }
+        try {
+            onFinish.run();
+        } finally {
+            console.close();
+        }
+    }
+}
@@ -2,36 +2,50 @@ package de.zaunkoenigweg.biography.web.console;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Output and progress of a batch.
+ *
+ * The console is written concurrently by the workers of a batch, so lines are appended atomically.
+ */
 public class Console {
 
 	private String title;
-	
-	private boolean closed;
-	
+
+	private volatile boolean closed;
+
 	private LocalDateTime startTime;
-	
-	private StringBuffer buffer;
-	
+
+	private StringBuilder buffer;
+
+	/**
+	 * total number of work items, -1 if unknown
+	 */
+	private volatile long total = -1;
+
+	private AtomicLong done = new AtomicLong();
+
 	public Console(String title) {
-		this.buffer = new StringBuffer();
+		this.buffer = new StringBuilder();
 		this.title = title;
 		this.startTime = LocalDateTime.now();
 	}
 
-	public void println(String line) {
+	public synchronized void println(String line) {
 		if(closed) {
 			throw new IllegalStateException(String.format("Console %s is already closed!", title));
 		}
 		buffer.append(line);
 		buffer.append("\n");
 	}
-	
+
 	public boolean isClosed() {
 		return closed;
 	}
 
-	public void close() {
+	public synchronized void close() {
 	    buffer.append("Duration: " + Duration.between(startTime, LocalDateTime.now()) + "\n");
 		this.closed = true;
 	}
@@ -44,7 +58,53 @@ public class Console {
 		return startTime;
 	}
 
-	public String getContent() {
+	public synchronized String getContent() {
 		return buffer.toString();
 	}
+
+	/**
+	 * Sets the total number of work items of the batch.
+	 * @param total total number of work items
+	 */
+	public void setTotal(long total) {
+		this.total = total;
+	}
+
+	/**
+	 * Reports that a work item has been processed.
+	 */
+	public void itemDone() {
+		done.incrementAndGet();
+	}
+
+	/**
+	 * @return total number of work items, -1 if unknown
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	public long getDone() {
+		return done.get();
+	}
+
+	/**
+	 * @return processed work items per second since the start of the batch
+	 */
+	public double getItemsPerSecond() {
+		long millis = Duration.between(startTime, LocalDateTime.now()).toMillis();
+		return millis > 0 ? done.get() * 1000.0 / millis : 0.0;
+	}
+
+	/**
+	 * Estimated time until all work items are processed, based on the rate so far.
+	 * @return ETA, empty if the total is unknown or nothing has been processed yet.
+	 */
+	public Optional<Duration> getEta() {
+		double itemsPerSecond = getItemsPerSecond();
+		if(closed || total < 0 || itemsPerSecond <= 0.0) {
+			return Optional.empty();
+		}
+		return Optional.of(Duration.ofMillis((long) (Math.max(0, total - done.get()) * 1000.0 / itemsPerSecond)));
+	}
 }
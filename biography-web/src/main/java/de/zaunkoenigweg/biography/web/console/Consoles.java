@@ -1,8 +1,8 @@
 package de.zaunkoenigweg.biography.web.console;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -16,7 +16,7 @@ public class Consoles {
 	private List<Console> consoles;
 	
 	public Consoles() {
-		this.consoles = new ArrayList<>();
+		this.consoles = new CopyOnWriteArrayList<>();
 		LOG.info("Consoles (Bean) started.");
 	}
 	
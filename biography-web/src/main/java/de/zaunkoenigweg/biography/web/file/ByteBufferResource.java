@@ -0,0 +1,82 @@
+package de.zaunkoenigweg.biography.web.file;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.springframework.core.io.AbstractResource;
+
+/**
+ * Read-only {@link org.springframework.core.io.Resource} backed by a {@link ByteBuffer}.
+ *
+ * Every input stream reads from its own view of the buffer, so the resource can be served concurrently
+ * without copying the buffer.
+ */
+class ByteBufferResource extends AbstractResource {
+
+    private ByteBuffer buffer;
+    private String description;
+
+    ByteBufferResource(ByteBuffer buffer, String description) {
+        this.buffer = buffer.asReadOnlyBuffer();
+        this.description = description;
+    }
+
+    @Override
+    public String getDescription() {
+        return String.format("Cached resource [%s]", description);
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return new ByteBufferInputStream(buffer.duplicate());
+    }
+
+    @Override
+    public long contentLength() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
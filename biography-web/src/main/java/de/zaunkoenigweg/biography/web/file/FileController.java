@@ -2,11 +2,19 @@ package de.zaunkoenigweg.biography.web.file;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -16,8 +24,10 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.request.WebRequest;
 
 import de.zaunkoenigweg.biography.core.MediaFileName;
+import de.zaunkoenigweg.biography.core.archiveimport.ThumbnailService;
 import de.zaunkoenigweg.biography.core.archivemetadata.ArchiveMetadataService;
 import de.zaunkoenigweg.biography.core.index.IndexingService;
 
@@ -29,56 +39,94 @@ public class FileController {
 	
 	private File archiveFolder;
 	private File importFolder;
-    private File thumbsFolder200;
-    private File thumbsFolder300;
+    private ThumbnailService thumbnailService;
+    private ThumbnailCache thumbnailCache;
 
-	public FileController(File archiveFolder, File importFolder, ArchiveMetadataService archiveMetadataService, IndexingService indexingService) {
+	public FileController(File archiveFolder, File importFolder, ArchiveMetadataService archiveMetadataService, IndexingService indexingService, ThumbnailService thumbnailService, ThumbnailCache thumbnailCache) {
 		this.archiveFolder = archiveFolder;
 		this.importFolder = importFolder;
-        this.thumbsFolder200 = new File(this.archiveFolder, "thumbnails/200");
-        this.thumbsFolder300 = new File(this.archiveFolder, "thumbnails/300");
+		this.thumbnailService = thumbnailService;
+		this.thumbnailCache = thumbnailCache;
 		LOG.info("FileController started.");
 		LOG.info(String.format("archiveFolder=%s", this.archiveFolder));
 	}
 
+	/**
+	 * Serves the media file itself.
+	 * 
+	 * The metadata is part of the file and can be edited, so the ETag consists of the SHA-1 (of the media data)
+	 * and the modification time. Browsers have to revalidate, which is cheap (304).
+	 * Range requests are supported, so videos can be seeked.
+	 */
 	@ResponseBody
-	@RequestMapping(value = "/file/{file}/raw", method = RequestMethod.GET, produces = MediaType.IMAGE_JPEG_VALUE)
-	public ResponseEntity<byte[]> rawFile(@PathVariable("file")String filename) throws IOException {
-		return file(filename, this.archiveFolder);
+	@RequestMapping(value = "/file/{file}/raw", method = RequestMethod.GET)
+	public ResponseEntity<Resource> rawFile(@PathVariable("file")String filename, WebRequest webRequest) throws IOException {
+		if(!MediaFileName.isValid(filename)) {
+			return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+		}
+		MediaFileName mediaFileName = MediaFileName.of(filename);
+		MediaType mediaType = MediaType.parseMediaType(mediaFileName.getType().getMimeType());
+		return file(mediaFileName.archiveFile(this.archiveFolder), mediaType, lastModified -> String.format("\"%s-%x\"", mediaFileName.getSha1(), lastModified), CacheControl.noCache(), false, webRequest);
 	}
 	
+    /**
+     * Serves a thumbnail in one of the configured sizes, it is generated on first request if it does not exist yet.
+     * A thumbnail only depends on the media data, so its ETag is the SHA-1 and it can be cached forever.
+     * The thumbnail is served from the {@link ThumbnailCache}.
+     */
 	@ResponseBody
-	@RequestMapping(value = "/file/{file}/200", method = RequestMethod.GET, produces = MediaType.IMAGE_JPEG_VALUE)
-	public ResponseEntity<byte[]> thumbnail200(@PathVariable("file")String filename) throws IOException {
-		return file(filename, this.thumbsFolder200);
-	}
-	
-    @ResponseBody
-    @RequestMapping(value = "/file/{file}/300", method = RequestMethod.GET, produces = MediaType.IMAGE_JPEG_VALUE)
-    public ResponseEntity<byte[]> thumbnail300(@PathVariable("file")String filename) throws IOException {
-		return file(filename, this.thumbsFolder300);
-    }
-    
-	private ResponseEntity<byte[]> file(String filename, File baseFolder) throws IOException {
+	@RequestMapping(value = "/file/{file}/{size:\\d+}", method = RequestMethod.GET, produces = MediaType.IMAGE_JPEG_VALUE)
+	public ResponseEntity<Resource> thumbnail(@PathVariable("file")String filename, @PathVariable("size")int size, WebRequest webRequest) throws IOException {
 		if(!MediaFileName.isValid(filename)) {
 			return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
 		}
 		MediaFileName mediaFileName = MediaFileName.of(filename);
-		File file = mediaFileName.archiveFile(baseFolder);
-		if(!file.exists() || file.isDirectory()) {
+		Optional<File> thumbnailFile = thumbnailService.thumbnail(mediaFileName, size);
+		if(!thumbnailFile.isPresent()) {
 			return new ResponseEntity<>(HttpStatus.NOT_FOUND);
 		}
-		return new ResponseEntity<>(FileUtils.readFileToByteArray(file), HttpStatus.OK);
+		String eTag = String.format("\"%s-%d\"", mediaFileName.getSha1(), size);
+		return file(thumbnailFile.get(), MediaType.IMAGE_JPEG, lastModified -> eTag, CacheControl.maxAge(365, TimeUnit.DAYS), true, webRequest);
+	}
+	
+	/**
+	 * Streams the file. Range requests are handled by Spring.
+	 * 
+	 * Conditional requests (ETag, Last-Modified) are checked before the content is read, so a revalidation
+	 * neither reads the file nor touches the thumbnail cache.
+	 * 
+	 * @param eTag computes the ETag from the modification time of the file
+	 * @param cached Is the file served from the thumbnail cache?
+	 */
+	private ResponseEntity<Resource> file(File file, MediaType mediaType, LongFunction<String> eTag, CacheControl cacheControl, boolean cached, WebRequest webRequest) throws IOException {
+		BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+		}
+		if(!attributes.isRegularFile()) {
+			return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+		}
+		long lastModified = attributes.lastModifiedTime().toMillis();
+		String fileETag = eTag.apply(lastModified);
+		if(webRequest.checkNotModified(fileETag, lastModified)) {
+			// ETag and Last-Modified have been set by the check
+			return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).build();
+		}
+		return ResponseEntity.ok()
+				.contentType(mediaType)
+				.lastModified(lastModified)
+				.eTag(fileETag)
+				.cacheControl(cacheControl)
+				.body(cached ? thumbnailCache.get(file, attributes) : new FileSystemResource(file));
 	}
 	
 	@ResponseBody
 	@RequestMapping(value = "/file/import/{file}/thumbnail", method = RequestMethod.GET, produces = MediaType.IMAGE_JPEG_VALUE)
-	public ResponseEntity<byte[]> importThumbnail(@PathVariable("file")UUID file) throws IOException {
+	public ResponseEntity<Resource> importThumbnail(@PathVariable("file")UUID file, WebRequest webRequest) throws IOException {
 		File thumbnailFile = new File(this.importFolder, "thumbnails/" + file + ".jpg");
-		if(!thumbnailFile.exists() || thumbnailFile.isDirectory()) {
-			return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-		}
-		return new ResponseEntity<>(FileUtils.readFileToByteArray(thumbnailFile), HttpStatus.OK);
+		return file(thumbnailFile, MediaType.IMAGE_JPEG, lastModified -> String.format("\"%s-%x\"", file, lastModified), CacheControl.noCache(), false, webRequest);
 	}
 		
-}
\ No newline at end of file
+}
@@ -0,0 +1,248 @@
+package de.zaunkoenigweg.biography.web.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import de.zaunkoenigweg.biography.core.MediaFileName;
+import de.zaunkoenigweg.biography.core.archiveimport.ThumbnailService;
+
+/**
+ * Keeps recently used thumbnails in memory.
+ *
+ * The thumbnails are held in direct (off-heap) byte buffers, the total size is bounded by
+ * {@code thumbnailCacheMaxBytes}, least recently used thumbnails are evicted first.
+ * Thumbnails larger than a sixteenth of the cache (e.g. the largest sizes) are not cached, they are served
+ * from the file without allocating a buffer.
+ * A cached thumbnail is only served as long as size and modification time of the file are unchanged,
+ * which costs a (cheap) stat but no read.
+ *
+ * The thumbnails of the day and month views can be prefetched in the background. A single prefetch
+ * loads at most a quarter of the cache, so it cannot evict the thumbnails currently in use.
+ */
+@Component
+public class ThumbnailCache implements DisposableBean {
+
+    private final static Log LOG = LogFactory.getLog(ThumbnailCache.class);
+
+    /**
+     * max number of pending prefetch tasks, further tasks are dropped
+     */
+    private static final int PREFETCH_QUEUE_SIZE = 8;
+
+    private ThumbnailService thumbnailService;
+    private long maxEntryBytes;
+    private long prefetchMaxBytes;
+    private Cache<File, CachedThumbnail> cache;
+    private ThreadPoolExecutor prefetcher;
+
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+    private AtomicLong prefetched = new AtomicLong();
+    private AtomicLong bytesHeld = new AtomicLong();
+
+    public ThumbnailCache(ThumbnailService thumbnailService, Long thumbnailCacheMaxBytes) {
+        this.thumbnailService = thumbnailService;
+        // a single thumbnail must not displace a large part of the cache
+        this.maxEntryBytes = thumbnailCacheMaxBytes / 16;
+        this.prefetchMaxBytes = thumbnailCacheMaxBytes / 4;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(thumbnailCacheMaxBytes)
+                .<File, CachedThumbnail>weigher((file, thumbnail) -> thumbnail.buffer.capacity())
+                .removalListener(notification -> bytesHeld.addAndGet(-notification.getValue().buffer.capacity()))
+                .build();
+        this.prefetcher = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(PREFETCH_QUEUE_SIZE), new ThreadPoolExecutor.DiscardOldestPolicy());
+        LOG.info("ThumbnailCache started.");
+        LOG.info(String.format("thumbnailCacheMaxBytes=%d", thumbnailCacheMaxBytes));
+    }
+
+    /**
+     * Gets the thumbnail from the cache or reads it into the cache.
+     *
+     * @param file thumbnail file
+     * @param attributes current attributes of the thumbnail file
+     * @return thumbnail resource
+     * @throws IOException if the thumbnail cannot be read
+     */
+    public Resource get(File file, BasicFileAttributes attributes) throws IOException {
+        if (attributes.size() > maxEntryBytes) {
+            misses.incrementAndGet();
+            return new FileSystemResource(file);
+        }
+        CachedThumbnail thumbnail = cache.getIfPresent(file);
+        if (thumbnail != null && thumbnail.isValidFor(attributes)) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            thumbnail = load(file, attributes);
+        }
+        return new ByteBufferResource(thumbnail.buffer, file.getName());
+    }
+
+    /**
+     * Prefetches the gallery thumbnails of the given media files in the background.
+     *
+     * Thumbnails of the gallery size that do not exist yet are generated. The prefetch stops after
+     * a quarter of the cache has been loaded, so the media files should be supplied in the order they are shown.
+     * If the prefetcher is busy, the oldest pending request is dropped, as it is most likely outdated.
+     *
+     * @param mediaFileNames supplies the names of the media files, called in the background
+     */
+    public void prefetch(Supplier<Stream<String>> mediaFileNames) {
+        int gallerySize = thumbnailService.getThumbnailSizes().getGallerySize();
+        prefetcher.execute(() -> {
+            long remainingBytes = prefetchMaxBytes;
+            Iterator<String> names = mediaFileNames.get().filter(MediaFileName::isValid).iterator();
+            while (remainingBytes > 0 && names.hasNext()) {
+                Optional<File> thumbnail = galleryThumbnail(MediaFileName.of(names.next()), gallerySize);
+                if (thumbnail.isPresent()) {
+                    remainingBytes -= prefetch(thumbnail.get());
+                }
+            }
+        });
+    }
+
+    public Statistics getStatistics() {
+        return new Statistics(hits.get(), misses.get(), prefetched.get(), bytesHeld.get(), cache.size());
+    }
+
+    @Override
+    public void destroy() {
+        prefetcher.shutdownNow();
+    }
+
+    private Optional<File> galleryThumbnail(MediaFileName mediaFileName, int gallerySize) {
+        try {
+            return thumbnailService.thumbnail(mediaFileName, gallerySize);
+        } catch (RuntimeException e) {
+            LOG.warn(String.format("Thumbnail of %s could not be generated for prefetching.", mediaFileName.getFilename()), e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @return number of bytes loaded into the cache
+     */
+    private long prefetch(File file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            if (attributes.size() > maxEntryBytes) {
+                return 0L;
+            }
+            CachedThumbnail thumbnail = cache.getIfPresent(file);
+            if (thumbnail == null || !thumbnail.isValidFor(attributes)) {
+                thumbnail = load(file, attributes);
+                prefetched.incrementAndGet();
+                return thumbnail.buffer.capacity();
+            }
+        } catch (NoSuchFileException e) {
+            // thumbnail has been deleted in the meantime
+        } catch (IOException e) {
+            LOG.warn(String.format("Thumbnail %s could not be prefetched.", file.getAbsolutePath()), e);
+        }
+        return 0L;
+    }
+
+    /**
+     * Reads the thumbnail into a new buffer and caches it, the size has been checked by the caller.
+     */
+    private CachedThumbnail load(File file, BasicFileAttributes attributes) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = ByteBuffer.allocateDirect((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // read the complete file
+            }
+        }
+        buffer.flip();
+        CachedThumbnail thumbnail = new CachedThumbnail(buffer, attributes.size(), attributes.lastModifiedTime().toMillis());
+        if (buffer.capacity() <= maxEntryBytes) {
+            bytesHeld.addAndGet(buffer.capacity());
+            cache.put(file, thumbnail);
+        }
+        return thumbnail;
+    }
+
+    private static class CachedThumbnail {
+
+        private ByteBuffer buffer;
+        private long size;
+        private long lastModified;
+
+        private CachedThumbnail(ByteBuffer buffer, long size, long lastModified) {
+            this.buffer = buffer;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        private boolean isValidFor(BasicFileAttributes attributes) {
+            return size == attributes.size() && lastModified == attributes.lastModifiedTime().toMillis();
+        }
+    }
+
+    public static class Statistics {
+
+        private long hits;
+        private long misses;
+        private long prefetched;
+        private long bytesHeld;
+        private long entries;
+
+        private Statistics(long hits, long misses, long prefetched, long bytesHeld, long entries) {
+            this.hits = hits;
+            this.misses = misses;
+            this.prefetched = prefetched;
+            this.bytesHeld = bytesHeld;
+            this.entries = entries;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public double getHitRatio() {
+            long requests = hits + misses;
+            return requests > 0 ? (double) hits / requests : 0.0;
+        }
+
+        public long getPrefetched() {
+            return prefetched;
+        }
+
+        public long getBytesHeld() {
+            return bytesHeld;
+        }
+
+        public long getEntries() {
+            return entries;
+        }
+    }
+}
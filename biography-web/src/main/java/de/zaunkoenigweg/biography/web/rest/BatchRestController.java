@@ -1,25 +1,49 @@
 package de.zaunkoenigweg.biography.web.rest;
 
 import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import de.zaunkoenigweg.biography.core.MediaFileName;
 import de.zaunkoenigweg.biography.core.archive.Archive;
-import de.zaunkoenigweg.biography.core.archiveimport.ImportService;
-import de.zaunkoenigweg.biography.core.archivemetadata.ArchiveValidationService;
+import de.zaunkoenigweg.biography.core.archive.ArchiveEntry;
+import de.zaunkoenigweg.biography.core.archiveimport.ThumbnailService;
+import de.zaunkoenigweg.biography.core.archivemetadata.ArchiveMetadataService;
 import de.zaunkoenigweg.biography.core.archivemetadata.ArchiveValidationService.ValidationResult;
+import de.zaunkoenigweg.biography.core.archivemetadata.MetadataEdit;
+import de.zaunkoenigweg.biography.core.archivemetadata.ValidationResultStore;
+import de.zaunkoenigweg.biography.core.archivemetadata.ValidationResultStore.StoredResult;
 import de.zaunkoenigweg.biography.core.index.IndexingService;
+import de.zaunkoenigweg.biography.core.index.MediaFile;
+import de.zaunkoenigweg.biography.core.index.SearchService;
+import de.zaunkoenigweg.biography.core.index.SearchService.QueryMode;
+import de.zaunkoenigweg.biography.metadata.Album;
 import de.zaunkoenigweg.biography.metadata.exif.ExifDataService;
+import de.zaunkoenigweg.biography.web.console.BatchExecutor;
+import de.zaunkoenigweg.biography.web.console.BatchJob;
 import de.zaunkoenigweg.biography.web.console.Console;
 import de.zaunkoenigweg.biography.web.console.Consoles;
 
@@ -29,22 +53,36 @@ public class BatchRestController {
     private final static Log LOG = LogFactory.getLog(BatchRestController.class);
 
     private Consoles consoles;
+    private BatchExecutor batchExecutor;
     private Archive archive;
     private IndexingService indexingService;
-    private ImportService archiveImportService;
+    private ThumbnailService thumbnailService;
     private ExifDataService exifDataService;
-    private ArchiveValidationService archiveValidationService;
+    private ValidationResultStore validationResultStore;
+    private ArchiveMetadataService archiveMetadataService;
+    private SearchService searchService;
+    private File archiveFolder;
 
-    public BatchRestController(Consoles consoles, IndexingService indexingService, ImportService archiveImportService, ExifDataService exifDataService, ArchiveValidationService archiveValidationService, Archive archive) {
+    public BatchRestController(Consoles consoles, BatchExecutor batchExecutor, IndexingService indexingService, ThumbnailService thumbnailService, ExifDataService exifDataService, ValidationResultStore validationResultStore, Archive archive,
+            ArchiveMetadataService archiveMetadataService, SearchService searchService, File archiveFolder) {
         this.consoles = consoles;
+        this.batchExecutor = batchExecutor;
         this.indexingService = indexingService;
-        this.archiveImportService = archiveImportService;
+        this.thumbnailService = thumbnailService;
         this.archive = archive;
         this.exifDataService = exifDataService;
-        this.archiveValidationService = archiveValidationService;
+        this.validationResultStore = validationResultStore;
+        this.archiveMetadataService = archiveMetadataService;
+        this.searchService = searchService;
+        this.archiveFolder = archiveFolder;
         LOG.info("BatchRestController started.");
     }
 
+    @ExceptionHandler(IllegalArgumentException.class)
+    public void errorBadRequest(HttpServletResponse response) throws IOException {
+        response.sendError(HttpStatus.BAD_REQUEST.value());
+    }
+
     @CrossOrigin
     @RequestMapping("/rest/batch/")
     public List<Map<String, String>> get() {
@@ -68,49 +106,83 @@ public class BatchRestController {
         return console.getContent();
     }
     
+    @CrossOrigin
+    @RequestMapping("/rest/batch/{consoleid}/pause")
+    public Map<String, String> pause(@PathVariable("consoleid")Integer consoleId) {
+        Console console = consoles.get(consoleId);
+        batchExecutor.getJob(console).ifPresent(batchExecutor::pause);
+        return toRest(console);
+    }
+    
+    @CrossOrigin
+    @RequestMapping("/rest/batch/{consoleid}/resume")
+    public Map<String, String> resume(@PathVariable("consoleid")Integer consoleId) {
+        Console console = consoles.get(consoleId);
+        batchExecutor.getJob(console).ifPresent(batchExecutor::resume);
+        return toRest(console);
+    }
+    
+    @CrossOrigin
+    @RequestMapping("/rest/batch/{consoleid}/cancel")
+    public Map<String, String> cancel(@PathVariable("consoleid")Integer consoleId) {
+        Console console = consoles.get(consoleId);
+        batchExecutor.getJob(console).ifPresent(batchExecutor::cancel);
+        return toRest(console);
+    }
+    
     @CrossOrigin
     @RequestMapping("/rest/batch/start/fill-exif-cache")
     public Map<String, String> startFillExifCache() {
 
         Console console = consoles.create("Fill EXIF cache");
 
-        new Thread(() -> {
-            this.exifDataService.fillCacheFromArchive(console::println);
-            console.println("Finished.");
-            console.close();
-        }).start();
+        batchExecutor.submit(console, () -> this.exifDataService.fillCacheFromArchive(console::println));
         
         return toRest(console); 
     }
     
+    /**
+     * Validates the archive. Only new and changed files are validated, unless a full validation is requested.
+     * 
+     * The results are stored, so an interrupted validation resumes where it stopped.
+     * 
+     * @param full Validate all files, even if they are unchanged?
+     * @return batch
+     */
     @CrossOrigin
     @RequestMapping("/rest/batch/start/inspect-archive")
-    public Map<String, String> startInspectArchive() {
+    public Map<String, String> startInspectArchive(@RequestParam(name="full", required=false, defaultValue="false") boolean full) {
 
         Console console = consoles.create("Inspect Archive");
 
-        new Thread(() -> {
-            List<File> mediaFiles = archive.mediaFiles();
+        List<ArchiveEntry> entries = archive.entries().collect(Collectors.toList());
 
-            int totalNumberOfFiles = mediaFiles.size();
-            AtomicInteger numberOfCorruptFiles = new AtomicInteger(0);
+        AtomicInteger numberOfValidatedFiles = new AtomicInteger(0);
+        AtomicInteger numberOfCorruptFiles = new AtomicInteger(0);
 
-            mediaFiles.stream().forEach(file -> {
+        batchExecutor.submit(console, entries, entry -> {
 
-                ValidationResult result = archiveValidationService.validate(file);
-                if (ValidationResult.OK==result) {
-                    console.println(String.format("File '%s' -> [OK]", file.getAbsolutePath()));
-                } else {
-                    numberOfCorruptFiles.incrementAndGet();
-                    console.println(String.format("ERROR in file '%s': %s", file.getAbsolutePath(), result.getMessage()));
+            boolean validated = full || !validationResultStore.isUpToDate(entry);
+            StoredResult result = validationResultStore.validate(entry, full);
+            if (validated) {
+                numberOfValidatedFiles.incrementAndGet();
+            }
+            if (ValidationResult.OK==result.getResult()) {
+                if (validated) {
+                    console.println(String.format("File '%s' -> [OK]", entry.getPath()));
                 }
+            } else {
+                numberOfCorruptFiles.incrementAndGet();
+                console.println(String.format("ERROR in file '%s': %s", entry.getPath(), result.getResult().getMessage()));
+            }
 
-            });
-
-            console.println(String.format("%n%nValidated files #: %d, # of corrupt files: %d%n", totalNumberOfFiles,
-                            numberOfCorruptFiles.get()));
-            console.close();
-        }).start();
+        }, () -> {
+            int removedResults = console.getDone() == entries.size() 
+                            ? validationResultStore.retainAll(entries.stream().map(ArchiveEntry::getFileName).collect(Collectors.toSet())) : 0;
+            validationResultStore.checkpoint();
+            console.println(String.format("%n%nFiles #: %d, validated files #: %d, unchanged files #: %d, # of corrupt files: %d, removed results #: %d%n", 
+                            console.getDone(), numberOfValidatedFiles.get(), console.getDone() - numberOfValidatedFiles.get(), numberOfCorruptFiles.get(), removedResults));
+        });
         
         return toRest(console); 
     }
@@ -121,16 +193,18 @@ public class BatchRestController {
 
         Console console = consoles.create("Rebuild Solr index");
 
-        new Thread(() -> {
-        	// TODO use stats instead of count elements of huge list!!!
-            List<File> mediaFiles = archive.mediaFiles();
+        batchExecutor.submit(console, () -> this.indexingService.rebuildIndex(console::println));
+        
+        return toRest(console); 
+    }
+    
+    @CrossOrigin
+    @RequestMapping("/rest/batch/start/synchronize-index")
+    public Map<String, String> startSynchronizeIndex() {
 
-            console.println(mediaFiles.size() + " to index.");
-            // TODO incremental output to console?
-            this.indexingService.rebuildIndex();
-            console.println("Finished.");
-            console.close();
-        }).start();
+        Console console = consoles.create("Synchronize index");
+
+        batchExecutor.submit(console, () -> this.indexingService.synchronizeIndex(console::println));
         
         return toRest(console); 
     }
@@ -151,24 +225,135 @@ public class BatchRestController {
 
         Console console = consoles.create("generate thumbnails");
 
-        new Thread(() -> {
-            List<File> mediaFiles = archive.mediaFiles();
-
-            mediaFiles.stream().forEach(file -> {
-                console.println(String.format("File '%s' -> [%s]", file.getName(), archiveImportService.generateThumbnails(file)));
-            });
+        AtomicInteger numberOfGeneratedFiles = new AtomicInteger(0);
 
-            console.close();
-        }).start();
+        batchExecutor.submit(console, archive.mediaFiles(), file -> {
+            long start = System.nanoTime();
+            boolean generated = thumbnailService.generateThumbnails(file);
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (generated) {
+                numberOfGeneratedFiles.incrementAndGet();
+            }
+            console.println(String.format("File '%s' -> [%s] %d ms", file.getName(), generated, millis));
+        }, () -> console.println(String.format(Locale.ROOT, "%n%nFiles #: %d, thumbnails generated for #: %d, %.1f files/s%n", console.getDone(),
+                        numberOfGeneratedFiles.get(), console.getItemsPerSecond())));
         
         return toRest(console); 
     }
     
+    /**
+     * Adds the selected media files to the album.
+     * 
+     * @param album album title
+     * @param fileNames names of the media files, alternatively they are selected by a search query
+     * @param query search query (description)
+     * @param queryMode search mode
+     * @return batch
+     * @see #startEditMetadata(MetadataEdit, List, String, QueryMode)
+     */
+    @CrossOrigin
+    @PostMapping("/rest/batch/start/add-album")
+    public Map<String, String> startAddAlbum(
+                    @RequestParam("album") String album,
+                    @RequestParam(name="fileName", required=false) List<String> fileNames,
+                    @RequestParam(name="q", required=false) String query,
+                    @RequestParam(name="mode", required=false, defaultValue="ALL") QueryMode queryMode) {
+        return startEditMetadata(MetadataEdit.addAlbum(new Album(album.trim())), fileNames, query, queryMode);
+    }
+
+    /**
+     * Removes the selected media files from the album.
+     * 
+     * @see #startAddAlbum(String, List, String, QueryMode)
+     */
+    @CrossOrigin
+    @PostMapping("/rest/batch/start/remove-album")
+    public Map<String, String> startRemoveAlbum(
+                    @RequestParam("album") String album,
+                    @RequestParam(name="fileName", required=false) List<String> fileNames,
+                    @RequestParam(name="q", required=false) String query,
+                    @RequestParam(name="mode", required=false, defaultValue="ALL") QueryMode queryMode) {
+        return startEditMetadata(MetadataEdit.removeAlbum(new Album(album.trim())), fileNames, query, queryMode);
+    }
+
+    /**
+     * Sets the description of the selected media files.
+     * 
+     * @see #startAddAlbum(String, List, String, QueryMode)
+     */
+    @CrossOrigin
+    @PostMapping("/rest/batch/start/set-description")
+    public Map<String, String> startSetDescription(
+                    @RequestParam("description") String description,
+                    @RequestParam(name="fileName", required=false) List<String> fileNames,
+                    @RequestParam(name="q", required=false) String query,
+                    @RequestParam(name="mode", required=false, defaultValue="ALL") QueryMode queryMode) {
+        return startEditMetadata(MetadataEdit.setDescription(description), fileNames, query, queryMode);
+    }
+
+    /**
+     * Applies the edit to the selected media files in one batch.
+     * 
+     * The files are processed by the batch workers, files whose metadata does not change are not written at all.
+     * The exiftool writes themselves are serialized by the ExifDataService.
+     * The result is reported per file on the console. The changed files are re-indexed at the end with a single commit.
+     */
+    private Map<String, String> startEditMetadata(MetadataEdit edit, List<String> fileNames, String query, QueryMode queryMode) {
+
+        List<String> selectedFileNames = selectFileNames(fileNames, query, queryMode);
+
+        Console console = consoles.create(String.format("Edit metadata: %s", edit));
+
+        Queue<File> changedFiles = new ConcurrentLinkedQueue<>();
+        AtomicInteger numberOfUnchangedFiles = new AtomicInteger(0);
+        AtomicInteger numberOfFailedFiles = new AtomicInteger(0);
+
+        batchExecutor.submit(console, selectedFileNames, fileName -> {
+            try {
+                if (!MediaFileName.isValid(fileName)) {
+                    throw new IllegalArgumentException("The file name is not valid.");
+                }
+                File archiveFile = MediaFileName.of(fileName).archiveFile(archiveFolder);
+                if (archiveMetadataService.edit(archiveFile, edit)) {
+                    changedFiles.add(archiveFile);
+                    console.println(String.format("File '%s' -> [CHANGED]", fileName));
+                } else {
+                    numberOfUnchangedFiles.incrementAndGet();
+                    console.println(String.format("File '%s' -> [UNCHANGED]", fileName));
+                }
+            } catch (RuntimeException e) {
+                numberOfFailedFiles.incrementAndGet();
+                console.println(String.format("ERROR in file '%s': %s", fileName, e.getMessage()));
+            }
+        }, () -> {
+            int numberOfIndexedFiles = changedFiles.isEmpty() ? 0 : indexingService.reIndex(changedFiles);
+            console.println(String.format("%n%nChanged files #: %d, unchanged files #: %d, failed files #: %d, indexed files #: %d%n",
+                            changedFiles.size(), numberOfUnchangedFiles.get(), numberOfFailedFiles.get(), numberOfIndexedFiles));
+        });
+
+        return toRest(console);
+    }
+
+    private List<String> selectFileNames(List<String> fileNames, String query, QueryMode queryMode) {
+        if (fileNames != null && !fileNames.isEmpty()) {
+            return fileNames.stream().map(StringUtils::trim).distinct().collect(Collectors.toList());
+        }
+        if (StringUtils.isNotBlank(query)) {
+            return searchService.findAllByDescription(query, queryMode).map(MediaFile::getFileName).collect(Collectors.toList());
+        }
+        throw new IllegalArgumentException("Either file names or a search query must be given.");
+    }
+
     private Map<String, String> toRest(Console console) {
         Map<String, String> result = new HashMap<>();
         result.put("title", console.getTitle());
         result.put("startTime", console.getStartTime().toString());
         result.put("closed", Boolean.toString(console.isClosed()));
+        result.put("state", batchExecutor.getJob(console).map(job -> job.getState().name()).orElse(console.isClosed() ? BatchJob.State.FINISHED.name() : ""));
+        result.put("done", Long.toString(console.getDone()));
+        result.put("total", Long.toString(console.getTotal()));
+        result.put("itemsPerSecond", String.format(Locale.ROOT, "%.1f", console.getItemsPerSecond()));
+        result.put("eta", console.getEta().map(Duration::toString).orElse(""));
         return result;
     }
     
@@ -2,6 +2,7 @@ package de.zaunkoenigweg.biography.web.rest;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -11,9 +12,15 @@ import java.util.Optional;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
+import javax.servlet.http.HttpServletRequest;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
@@ -24,6 +31,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import de.zaunkoenigweg.biography.core.archiveimport.BulkImportService;
 import de.zaunkoenigweg.biography.core.archiveimport.BulkImportJob;
+import de.zaunkoenigweg.biography.core.archiveimport.ChunkedUpload;
 import de.zaunkoenigweg.biography.core.archiveimport.ImportFile;
 
 @RestController
@@ -44,6 +52,8 @@ public class ImportRestController {
     /**
      * Process upload of files.
      * 
+     * The parts are streamed into the import folder (multipart parts are buffered on disk, not in memory).
+     * 
      * @param files uploaded files
      * @return
      */
@@ -53,16 +63,126 @@ public class ImportRestController {
 
         Arrays.stream(files).forEach(uploadFile -> {
             
-            try {
-                this.archiveBulkImportService.upload(uploadFile.getOriginalFilename(), uploadFile.getBytes());
+            try (InputStream content = uploadFile.getInputStream()) {
+                this.archiveBulkImportService.upload(uploadFile.getOriginalFilename(), content);
             } catch (IOException e) {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
+                LOG.error(String.format("Uploaded file '%s' could not be read.", uploadFile.getOriginalFilename()), e);
             }
         });
         return "OK";
     }
 
+    /**
+     * Process upload of a single file, sent as request body.
+     * 
+     * The request body is streamed straight into the import folder.
+     * 
+     * @param fileName original name of the file
+     * @return
+     */
+    @CrossOrigin
+    @PostMapping("/rest/import/upload/{fileName:.+}")
+    public ResponseEntity<String> handleFileUpload(@PathVariable("fileName") String fileName, HttpServletRequest request) throws IOException {
+        try (InputStream content = request.getInputStream()) {
+            if(!this.archiveBulkImportService.upload(fileName, content)) {
+                return new ResponseEntity<>("FAILED", HttpStatus.UNPROCESSABLE_ENTITY);
+            }
+        }
+        return ResponseEntity.ok("OK");
+    }
+
+    /**
+     * Starts a resumable upload of a (large) file, which is sent in chunks.
+     * 
+     * @param fileName original name of the file
+     * @param size size of the file in bytes
+     * @return state of the upload, containing its id
+     */
+    @CrossOrigin
+    @PostMapping("/rest/import/uploads/")
+    public ResponseEntity<Map<String,Object>> initiateUpload(@RequestParam("fileName") String fileName, @RequestParam("size") long size) {
+        return this.archiveBulkImportService.initiateUpload(fileName, size)
+                .map(upload -> ResponseEntity.ok(uploadState(upload)))
+                .orElse(ResponseEntity.unprocessableEntity().build());
+    }
+
+    /**
+     * State of a resumable upload. After an interruption, the client sends the chunks missing in the received ranges.
+     */
+    @CrossOrigin
+    @GetMapping("/rest/import/uploads/{id}")
+    public ResponseEntity<Map<String,Object>> getUpload(@PathVariable("id") UUID id) {
+        return this.archiveBulkImportService.getChunkedUpload(id)
+                .map(upload -> ResponseEntity.ok(uploadState(upload)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Receives a chunk of a resumable upload, sent as request body.
+     * 
+     * @param id id of the upload
+     * @param offset position of the chunk in the file
+     * @param sha1 SHA-1 of the chunk (hex)
+     * @return
+     */
+    @CrossOrigin
+    @PutMapping("/rest/import/uploads/{id}")
+    public ResponseEntity<String> uploadChunk(
+                    @PathVariable("id") UUID id,
+                    @RequestParam("offset") long offset,
+                    @RequestParam("sha1") String sha1,
+                    HttpServletRequest request) throws IOException {
+        Optional<ChunkedUpload> upload = this.archiveBulkImportService.getChunkedUpload(id);
+        if(!upload.isPresent()) {
+            return ResponseEntity.notFound().build();
+        }
+        try (InputStream content = request.getInputStream()) {
+            this.archiveBulkImportService.uploadChunk(upload.get(), offset, content, sha1);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        return ResponseEntity.ok("OK");
+    }
+
+    /**
+     * Completes a resumable upload, the file is added to the import job.
+     */
+    @CrossOrigin
+    @PostMapping("/rest/import/uploads/{id}/complete")
+    public ResponseEntity<String> completeUpload(@PathVariable("id") UUID id) {
+        Optional<ChunkedUpload> upload = this.archiveBulkImportService.getChunkedUpload(id);
+        if(!upload.isPresent()) {
+            return ResponseEntity.notFound().build();
+        }
+        if(!this.archiveBulkImportService.completeUpload(upload.get())) {
+            return new ResponseEntity<>("INCOMPLETE", HttpStatus.CONFLICT);
+        }
+        return ResponseEntity.ok("OK");
+    }
+
+    @CrossOrigin
+    @DeleteMapping("/rest/import/uploads/{id}")
+    public ResponseEntity<String> abortUpload(@PathVariable("id") UUID id) {
+        Optional<ChunkedUpload> upload = this.archiveBulkImportService.getChunkedUpload(id);
+        if(!upload.isPresent()) {
+            return ResponseEntity.notFound().build();
+        }
+        this.archiveBulkImportService.abortUpload(upload.get());
+        return ResponseEntity.ok("OK");
+    }
+
+    private static Map<String,Object> uploadState(ChunkedUpload upload) {
+        Map<String,Object> map = new HashMap<>();
+        map.put("id", upload.getId().toString());
+        map.put("fileName", upload.getOriginalFileName());
+        map.put("size", upload.getSize());
+        map.put("received", upload.getReceivedRanges().stream()
+                .map(range -> Arrays.asList(range.lowerEndpoint(), range.upperEndpoint()))
+                .collect(Collectors.toList()));
+        map.put("complete", upload.isComplete());
+        return map;
+    }
+
     @CrossOrigin
     @PostMapping("/rest/import/clear/")
     public String clearImportJob() {
@@ -9,13 +9,18 @@ import java.time.YearMonth;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.ui.Model;
@@ -31,24 +36,39 @@ import org.springframework.web.bind.annotation.RestController;
 
 import de.zaunkoenigweg.biography.core.MediaFileName;
 import de.zaunkoenigweg.biography.core.MediaFileType;
+import de.zaunkoenigweg.biography.core.archiveimport.ThumbnailSizes;
 import de.zaunkoenigweg.biography.core.archivemetadata.ArchiveMetadataService;
-import de.zaunkoenigweg.biography.core.index.IndexingService;
+import de.zaunkoenigweg.biography.core.index.IndexUpdateQueue;
 import de.zaunkoenigweg.biography.core.index.MediaFile;
+import de.zaunkoenigweg.biography.core.index.MediaFilePage;
 import de.zaunkoenigweg.biography.core.index.SearchService;
+import de.zaunkoenigweg.biography.core.index.TimelineKey;
 import de.zaunkoenigweg.biography.metadata.Album;
+import de.zaunkoenigweg.biography.web.file.ThumbnailCache;
 
 @RestController
 public class MediaFileRestController {
 
+	/**
+	 * max time in milliseconds a request waits until its change is visible in the index
+	 */
+	private static final long INDEX_WAIT_TIMEOUT = 10000;
+
 	private SearchService searchService;
 	private ArchiveMetadataService archiveMetadataService;
-	private IndexingService indexingService;
+	private IndexUpdateQueue indexUpdateQueue;
 	private File archiveFolder;
+	private ThumbnailCache thumbnailCache;
+	private Integer searchPageSize;
+	private ThumbnailSizes thumbnailSizes;
 
-	public MediaFileRestController(SearchService searchService, ArchiveMetadataService archiveMetadataService, IndexingService indexingService, File archiveFolder) {
+	public MediaFileRestController(SearchService searchService, ArchiveMetadataService archiveMetadataService, IndexUpdateQueue indexUpdateQueue, File archiveFolder, ThumbnailCache thumbnailCache, Integer searchPageSize, ThumbnailSizes thumbnailSizes) {
 		this.searchService = searchService;
+		this.thumbnailSizes = thumbnailSizes;
+		this.searchPageSize = searchPageSize;
+		this.thumbnailCache = thumbnailCache;
 		this.archiveMetadataService = archiveMetadataService;
-		this.indexingService = indexingService;
+		this.indexUpdateQueue = indexUpdateQueue;
 		this.archiveFolder = archiveFolder;
 	}
 
@@ -81,59 +101,201 @@ public class MediaFileRestController {
 	@GetMapping("/rest/mediafiles/{year}/{month}")
 	public List<Map<String, Object>> get(@PathVariable("year") Year year, @PathVariable("month") int month) {
         YearMonth yearMonth = yearMonth(year, month);
-        return searchService.getDayCounts(yearMonth).map(this::dayCountToRestObject).collect(Collectors.toList());
+        List<Pair<LocalDate, Long>> dayCounts = searchService.getDayCounts(yearMonth).collect(Collectors.toList());
+        // only the first page of each day, as shown when the day is opened
+        thumbnailCache.prefetch(() -> dayCounts.stream()
+                .flatMap(dayCount -> searchService.findByDate(dayCount.getLeft(), null, searchPageSize).getMediaFiles().stream())
+                .map(MediaFile::getFileName));
+        return dayCounts.stream().map(this::dayCountToRestObject).collect(Collectors.toList());
+	}
+	
+	/**
+	 * Gets the media file counts of all years, months and days at once.
+	 * 
+	 * The ETag is the version of the counts, so clients can revalidate the tree with a conditional request
+	 * (If-None-Match), which is answered with 304 as long as the index is unchanged.
+	 */
+	@CrossOrigin
+	@GetMapping("/rest/calendar/")
+	public ResponseEntity<Map<String, Object>> getCalendar() {
+		// the version must be read before the counts
+		String version = searchService.getCalendarVersion();
+		List<Pair<Year, Long>> yearCounts = searchService.getYearCounts().collect(Collectors.toList());
+		Map<String, Object> restObject = new HashMap<>();
+		restObject.put("count", yearCounts.stream().mapToLong(Pair::getRight).sum());
+		restObject.put("mostRecentYearMonth", searchService.getMostRecentYearMonth().map(YearMonth::toString).orElse(""));
+		restObject.put("years", yearCounts.stream().map(yearCount -> {
+			Map<String, Object> yearRestObject = yearCountToRestObject(yearCount);
+			yearRestObject.put("months", monthTree(yearCount.getLeft()));
+			return yearRestObject;
+		}).collect(Collectors.toList()));
+		return calendarResponse(version, restObject);
+	}
+
+	/**
+	 * Gets the media file counts of the months and days of the given year, see {@link #getCalendar()}.
+	 */
+	@CrossOrigin
+	@GetMapping("/rest/calendar/{year}/")
+	public ResponseEntity<Map<String, Object>> getCalendar(@PathVariable("year") Year year) {
+		String version = searchService.getCalendarVersion();
+		List<Map<String, Object>> months = monthTree(year);
+		Map<String, Object> restObject = new HashMap<>();
+		restObject.put("year", year);
+		restObject.put("count", months.stream().mapToLong(month -> (Long) month.get("count")).sum());
+		restObject.put("months", months);
+		return calendarResponse(version, restObject);
+	}
+
+	/**
+	 * Gets the media file counts of the days of the given month, see {@link #getCalendar()}.
+	 */
+	@CrossOrigin
+	@GetMapping("/rest/calendar/{year}/{month}/")
+	public ResponseEntity<Map<String, Object>> getCalendar(@PathVariable("year") Year year, @PathVariable("month") int month) {
+		String version = searchService.getCalendarVersion();
+		YearMonth yearMonth = yearMonth(year, month);
+		List<Pair<LocalDate, Long>> dayCounts = searchService.getDayCounts(yearMonth).collect(Collectors.toList());
+		Map<String, Object> restObject = new HashMap<>();
+		restObject.put("yearMonth", yearMonth);
+		restObject.put("count", dayCounts.stream().mapToLong(Pair::getRight).sum());
+		restObject.put("days", dayCounts.stream().map(this::dayCountToRestObject).collect(Collectors.toList()));
+		return calendarResponse(version, restObject);
+	}
+
+	private List<Map<String, Object>> monthTree(Year year) {
+		return searchService.getMonthCounts(year).map(monthCount -> {
+			Map<String, Object> restObject = monthCountToRestObject(monthCount);
+			restObject.put("days", searchService.getDayCounts(monthCount.getLeft()).map(this::dayCountToRestObject).collect(Collectors.toList()));
+			return restObject;
+		}).collect(Collectors.toList());
+	}
+
+	/**
+	 * Conditional requests are handled by Spring.
+	 */
+	private ResponseEntity<Map<String, Object>> calendarResponse(String version, Map<String, Object> restObject) {
+		return ResponseEntity.ok()
+				.eTag(String.format("\"calendar-%s\"", version))
+				.cacheControl(CacheControl.noCache())
+				.body(restObject);
 	}
 	
 	@CrossOrigin
 	@GetMapping("/rest/mediafiles/{year}/{month}/{day}/")
-	public Map<String,Object> get(@PathVariable("year") Year year, @PathVariable("month") int month, @PathVariable("day") int day) {
+	public Map<String,Object> get(@PathVariable("year") Year year, @PathVariable("month") int month, @PathVariable("day") int day,
+			@RequestParam(name="cursor", required=false) String cursor,
+			@RequestParam(name="size", required=false) Integer size) {
 		LocalDate localDate = localDate(year, month, day);
 		Map<String, Object> restObject = new HashMap<>();
-		List<Map<String, Object>> mediaFiles = searchService.findByDate(localDate).map(this::mediaFileToRestObject).collect(Collectors.toList());
+		MediaFilePage page = searchService.findByDate(localDate, StringUtils.trimToNull(cursor), size != null ? size : searchPageSize);
+		thumbnailCache.prefetch(() -> page.getMediaFiles().stream().map(MediaFile::getFileName));
+		List<Map<String, Object>> mediaFiles = page.getMediaFiles().stream().map(this::mediaFileToRestObject).collect(Collectors.toList());
 		restObject.put("mediaFiles", mediaFiles);
 		restObject.put("count", mediaFiles.size());
+		restObject.put("nextCursor", page.getNextCursor().orElse(""));
+		return restObject;
+	}
+	
+	/**
+	 * Gets a page of the timeline of all media files, ordered by datetime/original and file name.
+	 * 
+	 * The page follows the media file "after", precedes the media file "before", starts with the day "date" or,
+	 * without any of them, contains the most recent media files. "before" and "after" of the response are the positions
+	 * of the adjacent pages, empty if the timeline is known to end there.
+	 */
+	@CrossOrigin
+	@GetMapping("/rest/timeline/")
+	public Map<String, Object> getTimeline(
+			@RequestParam(name="after", required=false) String after,
+			@RequestParam(name="before", required=false) String before,
+			@RequestParam(name="date", required=false) @DateTimeFormat(iso = ISO.DATE) LocalDate date,
+			@RequestParam(name="size", required=false) Integer size) {
+		after = StringUtils.trimToNull(after);
+		before = StringUtils.trimToNull(before);
+		if (Stream.of(after, before, date).filter(Objects::nonNull).count() > 1) {
+			throw new IllegalArgumentException("Only one of 'after', 'before' and 'date' can be given.");
+		}
+		boolean forward = before == null && (after != null || date != null);
+		TimelineKey key;
+		if (after != null) {
+			key = TimelineKey.of(after);
+		} else if (before != null) {
+			key = TimelineKey.of(before);
+		} else if (date != null) {
+			key = TimelineKey.startOf(date);
+		} else {
+			key = TimelineKey.end();
+		}
+		MediaFilePage page = searchService.findTimeline(key, forward, size != null ? size : searchPageSize);
+		List<MediaFile> mediaFilesOfPage = page.getMediaFiles();
+		thumbnailCache.prefetch(() -> mediaFilesOfPage.stream().map(MediaFile::getFileName));
+		String first = mediaFilesOfPage.isEmpty() ? "" : mediaFilesOfPage.get(0).getFileName();
+		String last = mediaFilesOfPage.isEmpty() || key == TimelineKey.end() ? "" : mediaFilesOfPage.get(mediaFilesOfPage.size() - 1).getFileName();
+		Map<String, Object> restObject = new HashMap<>();
+		List<Map<String, Object>> mediaFiles = mediaFilesOfPage.stream().map(this::mediaFileToRestObject).collect(Collectors.toList());
+		restObject.put("mediaFiles", mediaFiles);
+		restObject.put("count", mediaFiles.size());
+		restObject.put("before", forward ? first : page.getNextCursor().orElse(""));
+		restObject.put("after", forward ? page.getNextCursor().orElse("") : last);
 		return restObject;
 	}
 	
 	@CrossOrigin
     @PutMapping("/rest/file/{file}")
-    public ResponseEntity<Void> putFileAttributes(HttpSession session, Model model, @PathVariable("file")String filename, @RequestParam("description") String newDescription) {
+    public ResponseEntity<Void> putFileAttributes(HttpSession session, Model model, @PathVariable("file")String filename, @RequestParam("description") String newDescription,
+    		@RequestParam(name="waitForIndex", required=false, defaultValue="false") boolean waitForIndex) {
 		MediaFileName mediaFileName = mediaFileName(filename);
         File archiveFile = mediaFileName.archiveFile(archiveFolder);
         if(!archiveFile.exists()) {
         	return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
         archiveMetadataService.setDescription(archiveFile, newDescription);
-        indexingService.reIndex(archiveFile);
-        return new ResponseEntity<>(HttpStatus.OK);
+        return reIndex(archiveFile, waitForIndex);
     }
     
 	@CrossOrigin
     @PostMapping("/rest/file/{file}/albums/{album}/")
-    public ResponseEntity<Void> postAlbum(HttpSession session, Model model, @PathVariable("file")String filename, @PathVariable("album")String album) {
+    public ResponseEntity<Void> postAlbum(HttpSession session, Model model, @PathVariable("file")String filename, @PathVariable("album")String album,
+    		@RequestParam(name="waitForIndex", required=false, defaultValue="false") boolean waitForIndex) {
 		MediaFileName mediaFileName = mediaFileName(filename);
         File archiveFile = mediaFileName.archiveFile(archiveFolder);
         if(!archiveFile.exists()) {
         	return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
         archiveMetadataService.addAlbum(archiveFile, new Album(album.trim()));
-        indexingService.reIndex(archiveFile);
-        return new ResponseEntity<>(HttpStatus.OK);
+        return reIndex(archiveFile, waitForIndex);
     }
     
 	@CrossOrigin
     @DeleteMapping("/rest/file/{file}/albums/{album}/")
-    public ResponseEntity<Void> deleteAlbum(HttpSession session, Model model, @PathVariable("file")String filename, @PathVariable("album")String album) {
+    public ResponseEntity<Void> deleteAlbum(HttpSession session, Model model, @PathVariable("file")String filename, @PathVariable("album")String album,
+    		@RequestParam(name="waitForIndex", required=false, defaultValue="false") boolean waitForIndex) {
 		MediaFileName mediaFileName = mediaFileName(filename);
         File archiveFile = mediaFileName.archiveFile(archiveFolder);
         if(!archiveFile.exists()) {
         	return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
         archiveMetadataService.removeAlbum(archiveFile, new Album(album.trim()));
-        indexingService.reIndex(archiveFile);
-        return new ResponseEntity<>(HttpStatus.OK);
+        return reIndex(archiveFile, waitForIndex);
     }
     
+    /**
+     * Queues the changed file for the index.
+     * 
+     * The change becomes visible for searches within the flush interval of the index update queue. If the client
+     * needs to read its own write, it can wait for the index. If the index is not updated in time, the response
+     * is 202 (Accepted) instead of 200 (OK).
+     */
+    private ResponseEntity<Void> reIndex(File archiveFile, boolean waitForIndex) {
+        if(!waitForIndex) {
+            indexUpdateQueue.enqueue(archiveFile);
+            return new ResponseEntity<>(HttpStatus.OK);
+        }
+        boolean visible = indexUpdateQueue.enqueueAndWait(archiveFile, INDEX_WAIT_TIMEOUT);
+        return new ResponseEntity<>(visible ? HttpStatus.OK : HttpStatus.ACCEPTED);
+    }
+
     private Map<String, Object> yearCountToRestObject(Pair<Year, Long> yearCount) {
 		Map<String, Object> restObject = new HashMap<>();
 		restObject.put("year", yearCount.getLeft());
@@ -161,6 +323,7 @@ public class MediaFileRestController {
 		Map<String, Object> restObject = new HashMap<>();
 		restObject.put("fileName", mediaFile.getFileName());
 		restObject.put("thumbnailFileName", thumbnailFileName);
+		restObject.put("thumbnailSize", thumbnailSizes.getGallerySize());
 		restObject.put("kind", mediaFileType.getKind());
 		restObject.put("description", mediaFile.getDescription());
 		restObject.put("albums", mediaFile.getAlbums());
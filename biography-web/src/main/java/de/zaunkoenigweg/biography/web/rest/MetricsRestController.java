@@ -0,0 +1,113 @@
+package de.zaunkoenigweg.biography.web.rest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import de.zaunkoenigweg.biography.core.index.IndexUpdateQueue;
+import de.zaunkoenigweg.biography.core.index.QueryResultCache;
+import de.zaunkoenigweg.biography.core.index.SearchService;
+import de.zaunkoenigweg.biography.core.index.SolrConnection;
+import de.zaunkoenigweg.biography.metadata.exif.ExifDataCache;
+import de.zaunkoenigweg.biography.web.file.ThumbnailCache;
+
+/**
+ * Runtime metrics of the Biography components, used to size pools and caches.
+ */
+@RestController
+public class MetricsRestController {
+
+    private final static Log LOG = LogFactory.getLog(MetricsRestController.class);
+
+    private SolrConnection solrConnection;
+    private ExifDataCache exifDataCache;
+    private ThumbnailCache thumbnailCache;
+    private IndexUpdateQueue indexUpdateQueue;
+    private SearchService searchService;
+
+    public MetricsRestController(SolrConnection solrConnection, ExifDataCache exifDataCache, ThumbnailCache thumbnailCache, IndexUpdateQueue indexUpdateQueue, SearchService searchService) {
+        this.solrConnection = solrConnection;
+        this.exifDataCache = exifDataCache;
+        this.thumbnailCache = thumbnailCache;
+        this.indexUpdateQueue = indexUpdateQueue;
+        this.searchService = searchService;
+        LOG.info("MetricsRestController started.");
+    }
+
+    @CrossOrigin
+    @GetMapping("/rest/metrics/solr-client/")
+    public Map<String, Object> getSolrClientMetrics() {
+        SolrConnection.Statistics statistics = solrConnection.getStatistics();
+        Map<String, Object> restObject = new HashMap<>();
+        restObject.put("leased", statistics.getLeased());
+        restObject.put("idle", statistics.getIdle());
+        restObject.put("pending", statistics.getPending());
+        restObject.put("max", statistics.getMax());
+        return restObject;
+    }
+
+    @CrossOrigin
+    @GetMapping("/rest/metrics/exif-cache/")
+    public Map<String, Object> getExifCacheMetrics() {
+        ExifDataCache.Statistics statistics = exifDataCache.getStatistics();
+        Map<String, Object> restObject = new HashMap<>();
+        restObject.put("memoryHits", statistics.getMemoryHits());
+        restObject.put("diskHits", statistics.getDiskHits());
+        restObject.put("misses", statistics.getMisses());
+        restObject.put("invalidations", statistics.getInvalidations());
+        restObject.put("memoryEntries", statistics.getMemoryEntries());
+        return restObject;
+    }
+
+    @CrossOrigin
+    @GetMapping("/rest/metrics/thumbnail-cache/")
+    public Map<String, Object> getThumbnailCacheMetrics() {
+        ThumbnailCache.Statistics statistics = thumbnailCache.getStatistics();
+        Map<String, Object> restObject = new HashMap<>();
+        restObject.put("hits", statistics.getHits());
+        restObject.put("misses", statistics.getMisses());
+        restObject.put("hitRatio", statistics.getHitRatio());
+        restObject.put("prefetched", statistics.getPrefetched());
+        restObject.put("bytesHeld", statistics.getBytesHeld());
+        restObject.put("entries", statistics.getEntries());
+        return restObject;
+    }
+
+    @CrossOrigin
+    @GetMapping("/rest/metrics/index-queue/")
+    public Map<String, Object> getIndexQueueMetrics() {
+        IndexUpdateQueue.Statistics statistics = indexUpdateQueue.getStatistics();
+        Map<String, Object> restObject = new HashMap<>();
+        restObject.put("queueDepth", statistics.getQueueDepth());
+        restObject.put("enqueued", statistics.getEnqueued());
+        restObject.put("coalesced", statistics.getCoalesced());
+        restObject.put("flushes", statistics.getFlushes());
+        restObject.put("failedFlushes", statistics.getFailedFlushes());
+        restObject.put("flushedDocuments", statistics.getFlushedDocuments());
+        restObject.put("averageFlushMillis", statistics.getAverageFlushMillis());
+        restObject.put("maxFlushMillis", statistics.getMaxFlushMillis());
+        restObject.put("commits", statistics.getCommits());
+        return restObject;
+    }
+
+    @CrossOrigin
+    @GetMapping("/rest/metrics/query-cache/")
+    public Map<String, Object> getQueryCacheMetrics() {
+        QueryResultCache.Statistics statistics = searchService.getQueryCacheStatistics();
+        Map<String, Object> restObject = new HashMap<>();
+        restObject.put("hits", statistics.getHits());
+        restObject.put("misses", statistics.getMisses());
+        restObject.put("hitRatio", statistics.getHitRatio());
+        restObject.put("evictions", statistics.getEvictions());
+        restObject.put("invalidations", statistics.getInvalidations());
+        restObject.put("bytesHeld", statistics.getBytesHeld());
+        restObject.put("entries", statistics.getEntries());
+        restObject.put("generation", statistics.getGeneration());
+        return restObject;
+    }
+}
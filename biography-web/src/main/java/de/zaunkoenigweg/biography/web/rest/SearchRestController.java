@@ -1,19 +1,26 @@
 package de.zaunkoenigweg.biography.web.rest;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import javax.servlet.http.HttpServletResponse;
+
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import de.zaunkoenigweg.biography.core.MediaFileName;
 import de.zaunkoenigweg.biography.core.MediaFileType;
+import de.zaunkoenigweg.biography.core.archiveimport.ThumbnailSizes;
 import de.zaunkoenigweg.biography.core.index.MediaFile;
+import de.zaunkoenigweg.biography.core.index.MediaFilePage;
 import de.zaunkoenigweg.biography.core.index.SearchService;
 import de.zaunkoenigweg.biography.core.index.SearchService.QueryMode;
 
@@ -21,20 +28,39 @@ import de.zaunkoenigweg.biography.core.index.SearchService.QueryMode;
 public class SearchRestController {
 
 	private SearchService searchService;
+	private Integer searchPageSize;
+	private ThumbnailSizes thumbnailSizes;
 	
-	public SearchRestController(SearchService searchService) {
+	public SearchRestController(SearchService searchService, Integer searchPageSize, ThumbnailSizes thumbnailSizes) {
 		this.searchService = searchService;
+		this.searchPageSize = searchPageSize;
+		this.thumbnailSizes = thumbnailSizes;
+	}
+
+	@ExceptionHandler(IllegalArgumentException.class)
+	public void errorBadRequest(HttpServletResponse response) throws IOException {
+		response.sendError(HttpStatus.BAD_REQUEST.value());
 	}
 
+	/**
+	 * Searches the descriptions of the media files. The result is delivered in pages, ordered by datetime/original.
+	 * 
+	 * @param cursor "nextCursor" of the previous page, empty for the first page
+	 * @param size page size, default is the configured search page size
+	 */
 	@CrossOrigin
 	@RequestMapping("/rest/search/")
 	public Map<String,Object> search(@RequestParam(name="q", required=true) String query, 
-			@RequestParam(name="mode", required=false, defaultValue="ALL") QueryMode queryMode) {
+			@RequestParam(name="mode", required=false, defaultValue="ALL") QueryMode queryMode,
+			@RequestParam(name="cursor", required=false) String cursor,
+			@RequestParam(name="size", required=false) Integer size) {
 
 		Map<String, Object> restObject = new HashMap<>();
-		List<Map<String, Object>> mediaFiles = searchService.findByDescription(query, queryMode).map(this::mediaFileToRestObject).collect(Collectors.toList());
+		MediaFilePage page = searchService.findByDescription(query, queryMode, StringUtils.trimToNull(cursor), size != null ? size : searchPageSize);
+		List<Map<String, Object>> mediaFiles = page.getMediaFiles().stream().map(this::mediaFileToRestObject).collect(Collectors.toList());
 		restObject.put("mediaFiles", mediaFiles);
 		restObject.put("count", mediaFiles.size());
+		restObject.put("nextCursor", page.getNextCursor().orElse(""));
 		return restObject;
 	}
 
@@ -45,6 +71,7 @@ public class SearchRestController {
 		Map<String, Object> restObject = new HashMap<>();
 		restObject.put("fileName", mediaFile.getFileName());
 		restObject.put("thumbnailFileName", thumbnailFileName);
+		restObject.put("thumbnailSize", thumbnailSizes.getGallerySize());
 		restObject.put("kind", mediaFileType.getKind());
 		restObject.put("description", mediaFile.getDescription());
 		restObject.put("albums", mediaFile.getAlbums());
@@ -0,0 +1,96 @@
+package de.zaunkoenigweg.biography.web.rest;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import de.zaunkoenigweg.biography.core.archivemetadata.ArchiveValidationService.ValidationResult;
+import de.zaunkoenigweg.biography.core.archivemetadata.ValidationResultStore;
+import de.zaunkoenigweg.biography.core.archivemetadata.ValidationResultStore.StoredResult;
+
+/**
+ * Stored results of the archive validation, see batch "inspect-archive".
+ */
+@RestController
+public class ValidationRestController {
+
+    private final static Log LOG = LogFactory.getLog(ValidationRestController.class);
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private ValidationResultStore validationResultStore;
+
+    public ValidationRestController(ValidationResultStore validationResultStore) {
+        this.validationResultStore = validationResultStore;
+        LOG.info("ValidationRestController started.");
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public void errorBadRequest(HttpServletResponse response) throws IOException {
+        response.sendError(HttpStatus.BAD_REQUEST.value());
+    }
+
+    /**
+     * @return number of validated files per validation result
+     */
+    @CrossOrigin
+    @GetMapping("/rest/validation/")
+    public Map<String, Object> getSummary() {
+        Map<ValidationResult, Long> counts = validationResultStore.countByResult();
+        Map<String, Object> restObject = new HashMap<>();
+        restObject.put("counts", counts.entrySet().stream().collect(Collectors.toMap(count -> count.getKey().name(), Map.Entry::getValue)));
+        restObject.put("total", counts.values().stream().mapToLong(Long::longValue).sum());
+        restObject.put("failures", counts.entrySet().stream().filter(count -> count.getKey() != ValidationResult.OK).mapToLong(Map.Entry::getValue).sum());
+        return restObject;
+    }
+
+    /**
+     * @param page page number, starting with 0
+     * @param size page size
+     * @return page of the files that are not valid, ordered by path
+     */
+    @CrossOrigin
+    @GetMapping("/rest/validation/failures/")
+    public Map<String, Object> getFailures(
+                    @RequestParam(name="page", required=false, defaultValue="0") int page,
+                    @RequestParam(name="size", required=false, defaultValue="100") int size) {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException(String.format("Invalid page %d of size %d.", page, size));
+        }
+        List<StoredResult> failures = validationResultStore.failures();
+        Map<String, Object> restObject = new HashMap<>();
+        restObject.put("page", page);
+        restObject.put("size", size);
+        restObject.put("total", failures.size());
+        restObject.put("failures", failures.stream()
+                .skip((long) page * size)
+                .limit(size)
+                .map(this::failureToRestObject)
+                .collect(Collectors.toList()));
+        return restObject;
+    }
+
+    private Map<String, Object> failureToRestObject(StoredResult failure) {
+        Map<String, Object> restObject = new HashMap<>();
+        restObject.put("fileName", failure.getFileName());
+        restObject.put("path", failure.getPath());
+        restObject.put("result", failure.getResult().name());
+        restObject.put("message", failure.getResult().getMessage());
+        restObject.put("lastModified", failure.getLastModified().toString());
+        restObject.put("validatedAt", failure.getValidatedAt().toString());
+        return restObject;
+    }
+}
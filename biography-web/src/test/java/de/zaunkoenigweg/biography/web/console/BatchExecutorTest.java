@@ -0,0 +1,163 @@
+package de.zaunkoenigweg.biography.web.console;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BatchExecutorTest {
+
+    private BatchExecutor sut;
+
+    @After
+    public void tearDown() {
+        sut.destroy();
+    }
+
+    @Test
+    public void testJobsAreProcessedInTurn() throws InterruptedException {
+        sut = new BatchExecutor(1);
+        List<String> processed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch secondJobSubmitted = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(2);
+
+        sut.submit(new Console("long"), Arrays.asList("A0", "A1", "A2", "A3", "A4", "A5"), item -> {
+            // the single worker is blocked, until both jobs are active
+            if (item.equals("A0")) {
+                await(secondJobSubmitted);
+            }
+            processed.add(item);
+        }, finished::countDown);
+        sut.submit(new Console("short"), Arrays.asList("B0", "B1", "B2"), processed::add, finished::countDown);
+        secondJobSubmitted.countDown();
+
+        await(finished);
+        assertEquals(Arrays.asList("A0", "A1", "B0", "A2", "B1", "A3", "B2", "A4", "A5"), processed);
+    }
+
+    @Test
+    public void testCancelWithItemsInFlight() throws InterruptedException {
+        sut = new BatchExecutor(2);
+        AtomicInteger processed = new AtomicInteger();
+        AtomicInteger finishCalls = new AtomicInteger();
+        CountDownLatch inFlight = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        Console console = new Console("cancelled");
+
+        BatchJob<Integer> job = sut.submit(console, Arrays.asList(1, 2, 3, 4, 5, 6), item -> {
+            inFlight.countDown();
+            await(release);
+            processed.incrementAndGet();
+        }, finishCalls::incrementAndGet);
+        await(inFlight);
+
+        assertTrue(sut.cancel(job));
+        assertEquals(BatchJob.State.CANCELLED, job.getState());
+        // the items in flight are finished before the job
+        assertEquals(0, finishCalls.get());
+        assertFalse(console.isClosed());
+
+        release.countDown();
+        awaitClosed(console);
+        assertEquals(2, processed.get());
+        assertEquals(1, finishCalls.get());
+        assertEquals(BatchJob.State.FINISHED, job.getState());
+        assertTrue(console.getContent().contains("Cancelled."));
+        assertFalse(sut.cancel(job));
+        assertFalse(sut.getJob(console).isPresent());
+    }
+
+    @Test
+    public void testPauseAndResume() throws InterruptedException {
+        sut = new BatchExecutor(1);
+        AtomicInteger processed = new AtomicInteger();
+        CountDownLatch firstItem = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Console console = new Console("paused");
+
+        BatchJob<Integer> job = sut.submit(console, Arrays.asList(1, 2, 3, 4, 5), item -> {
+            if (item == 1) {
+                firstItem.countDown();
+                await(release);
+            }
+            processed.incrementAndGet();
+        }, () -> {});
+        await(firstItem);
+
+        assertTrue(sut.pause(job));
+        assertFalse(sut.pause(job));
+        release.countDown();
+        // the item in flight is finished, no further item is taken
+        Thread.sleep(200);
+        assertEquals(1, processed.get());
+        assertEquals(BatchJob.State.PAUSED, job.getState());
+        assertFalse(console.isClosed());
+
+        assertTrue(sut.resume(job));
+        awaitClosed(console);
+        assertEquals(5, processed.get());
+        assertEquals(5, console.getDone());
+    }
+
+    @Test
+    public void testWorkerSurvivesFailingTaskAndFinishCallback() throws InterruptedException {
+        sut = new BatchExecutor(1);
+        Console failing = new Console("failing");
+        sut.submit(failing, Arrays.asList(1, 2, 3), item -> {
+            if (item == 2) {
+                throw new IllegalStateException("broken item");
+            }
+        }, () -> {
+            throw new IllegalStateException("broken summary");
+        });
+        awaitClosed(failing);
+        assertTrue(failing.getContent().contains("ERROR: broken item"));
+        assertEquals(3, failing.getDone());
+        assertFalse(sut.getJob(failing).isPresent());
+
+        // the worker is still alive
+        Console next = new Console("next");
+        AtomicInteger processed = new AtomicInteger();
+        sut.submit(next, Arrays.asList(1, 2), item -> processed.incrementAndGet(), () -> next.println("done"));
+        awaitClosed(next);
+        assertEquals(2, processed.get());
+        assertTrue(next.getContent().contains("done"));
+    }
+
+    @Test
+    public void testEmptyJobIsFinishedRightAway() {
+        sut = new BatchExecutor(1);
+        Console console = new Console("empty");
+        BatchJob<Integer> job = sut.submit(console, Collections.emptyList(), item -> {}, () -> console.println("nothing to do"));
+        assertEquals(BatchJob.State.FINISHED, job.getState());
+        assertTrue(console.isClosed());
+        assertFalse(sut.getJob(console).isPresent());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void awaitClosed(Console console) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!console.isClosed() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(console.isClosed());
+    }
+}
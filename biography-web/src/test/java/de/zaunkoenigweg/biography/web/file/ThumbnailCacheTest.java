@@ -0,0 +1,163 @@
+package de.zaunkoenigweg.biography.web.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import de.zaunkoenigweg.biography.core.MediaFileName;
+import de.zaunkoenigweg.biography.core.archive.Archive;
+import de.zaunkoenigweg.biography.core.archiveimport.ThumbnailService;
+import de.zaunkoenigweg.biography.core.archiveimport.ThumbnailSizes;
+
+public class ThumbnailCacheTest {
+
+    private static final long CACHE_MAX_BYTES = 64 * 1024;
+    private static final int THUMBNAIL_BYTES = 2 * 1024;
+
+    private File thumbnailFolder;
+    private Map<String, File> thumbnails = new HashMap<>();
+    private ThumbnailCache sut;
+
+    @Before
+    public void setUp() throws IOException {
+        thumbnailFolder = Files.createTempDirectory("biographyThumbnails").toFile();
+        thumbnailFolder.deleteOnExit();
+        ThumbnailService thumbnailService = new ThumbnailService(new Archive(thumbnailFolder), thumbnailFolder, new ThumbnailSizes(new int[] { 300 }, new int[] { 300 }, 300)) {
+            @Override
+            public Optional<File> thumbnail(MediaFileName mediaFileName, int size) {
+                return Optional.ofNullable(thumbnails.get(mediaFileName.getFilename()));
+            }
+        };
+        sut = new ThumbnailCache(thumbnailService, CACHE_MAX_BYTES);
+    }
+
+    @After
+    public void tearDown() {
+        sut.destroy();
+    }
+
+    @Test
+    public void testHitAndMiss() throws IOException {
+        File thumbnail = thumbnail("thumbnail.jpg", THUMBNAIL_BYTES, 1);
+
+        assertEquals(Arrays.toString(content(THUMBNAIL_BYTES, 1)), Arrays.toString(read(sut.get(thumbnail, attributes(thumbnail)))));
+        assertEquals(Arrays.toString(content(THUMBNAIL_BYTES, 1)), Arrays.toString(read(sut.get(thumbnail, attributes(thumbnail)))));
+
+        ThumbnailCache.Statistics statistics = sut.getStatistics();
+        assertEquals(1, statistics.getHits());
+        assertEquals(1, statistics.getMisses());
+        assertEquals(1, statistics.getEntries());
+        assertEquals(THUMBNAIL_BYTES, statistics.getBytesHeld());
+    }
+
+    @Test
+    public void testChangedThumbnailIsReloaded() throws IOException {
+        File thumbnail = thumbnail("thumbnail.jpg", THUMBNAIL_BYTES, 1);
+        sut.get(thumbnail, attributes(thumbnail));
+
+        // same size, only the modification time changes
+        Files.write(thumbnail.toPath(), content(THUMBNAIL_BYTES, 2));
+        thumbnail.setLastModified(thumbnail.lastModified() + 60000L);
+
+        assertEquals(Arrays.toString(content(THUMBNAIL_BYTES, 2)), Arrays.toString(read(sut.get(thumbnail, attributes(thumbnail)))));
+        assertEquals(0, sut.getStatistics().getHits());
+        assertEquals(2, sut.getStatistics().getMisses());
+        assertEquals(THUMBNAIL_BYTES, sut.getStatistics().getBytesHeld());
+    }
+
+    @Test
+    public void testLargeThumbnailIsNotCached() throws IOException {
+        int size = (int) (CACHE_MAX_BYTES / 16) + 1;
+        File thumbnail = thumbnail("large.jpg", size, 3);
+
+        Resource resource = sut.get(thumbnail, attributes(thumbnail));
+
+        assertTrue(resource instanceof FileSystemResource);
+        assertEquals(Arrays.toString(content(size, 3)), Arrays.toString(read(resource)));
+        assertEquals(0, sut.getStatistics().getEntries());
+        assertEquals(0, sut.getStatistics().getBytesHeld());
+    }
+
+    @Test
+    public void testSizeIsBounded() throws IOException {
+        int size = (int) (CACHE_MAX_BYTES / 16);
+        for (int i = 0; i < 40; i++) {
+            File thumbnail = thumbnail(String.format("thumbnail%02d.jpg", i), size, i);
+            sut.get(thumbnail, attributes(thumbnail));
+        }
+
+        ThumbnailCache.Statistics statistics = sut.getStatistics();
+        assertTrue(statistics.getBytesHeld() <= CACHE_MAX_BYTES);
+        assertEquals(statistics.getEntries() * size, statistics.getBytesHeld());
+        assertTrue(statistics.getEntries() < 40);
+    }
+
+    @Test
+    public void testPrefetchIsBounded() throws IOException, InterruptedException {
+        List<String> mediaFileNames = IntStream.range(0, 20)
+                .mapToObj(i -> String.format("2018-03-17--12-00-%02d---%040d.jpg", i, i))
+                .collect(Collectors.toList());
+        for (int i = 0; i < mediaFileNames.size(); i++) {
+            thumbnails.put(mediaFileNames.get(i), thumbnail(String.format("thumbnail%02d.jpg", i), THUMBNAIL_BYTES, i));
+        }
+
+        sut.prefetch(() -> mediaFileNames.stream());
+
+        // a quarter of the cache is prefetched, the rest of the media files is not even looked at
+        long expected = CACHE_MAX_BYTES / 4 / THUMBNAIL_BYTES;
+        for (int i = 0; i < 500 && sut.getStatistics().getPrefetched() < expected; i++) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        assertEquals(expected, sut.getStatistics().getPrefetched());
+        File first = thumbnails.get(mediaFileNames.get(0));
+        sut.get(first, attributes(first));
+        assertEquals(1, sut.getStatistics().getHits());
+        File last = thumbnails.get(mediaFileNames.get(19));
+        sut.get(last, attributes(last));
+        assertEquals(1, sut.getStatistics().getMisses());
+    }
+
+    private File thumbnail(String name, int size, int seed) throws IOException {
+        File thumbnail = new File(thumbnailFolder, name);
+        Files.write(thumbnail.toPath(), content(size, seed));
+        return thumbnail;
+    }
+
+    private static byte[] content(int size, int seed) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (i * 31 + seed);
+        }
+        return content;
+    }
+
+    private static BasicFileAttributes attributes(File file) throws IOException {
+        return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+    }
+
+    private static byte[] read(Resource resource) throws IOException {
+        try (InputStream in = resource.getInputStream()) {
+            return IOUtils.toByteArray(in);
+        }
+    }
+}